@@ -0,0 +1,53 @@
+package com.btasdemir.gitversioning.benchmark;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.btasdemir.gitversioning.versioner.GitVersioner;
+
+/**
+ * Benchmarks opening an existing repository, including loading and catching
+ * up the path history index
+ * 
+ * @author bahadir.tasdemir@hotmail.com.tr
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 20)
+@Fork(1)
+public class InitBenchmark {
+
+	@Param({ "1000", "10000", "100000" })
+	public int commits;
+
+	protected File localPath;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		localPath = SyntheticRepository.getOrCreate(commits, 256);
+	}
+
+	@Benchmark
+	public GitVersioner init() throws Exception {
+		GitVersioner gitVersioner = new GitVersioner(localPath.getPath(), "", "", "", false);
+		gitVersioner.init();
+		gitVersioner.close();
+		return gitVersioner;
+	}
+
+}
@@ -0,0 +1,88 @@
+package com.btasdemir.gitversioning.benchmark;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.btasdemir.gitversioning.model.VersionList;
+import com.btasdemir.gitversioning.model.VersionQuery;
+import com.btasdemir.gitversioning.versioner.GitVersioner;
+import com.btasdemir.gitversioning.versioner.VersionIterator;
+
+/**
+ * Benchmarks listing versions of files in histories of different lengths,
+ * with and without the path history index
+ * 
+ * @author bahadir.tasdemir@hotmail.com.tr
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ListVersionsBenchmark {
+
+	@Param({ "1000", "10000", "100000" })
+	public int commits;
+
+	@Param({ "true", "false" })
+	public boolean pathIndex;
+
+	protected GitVersioner gitVersioner;
+	protected List<String> directoryFiles;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		File localPath = SyntheticRepository.getOrCreate(commits, 256);
+		gitVersioner = new GitVersioner(localPath.getPath(), "", "", "", false);
+		gitVersioner.init();
+		gitVersioner.setPathIndexEnabled(pathIndex);
+		directoryFiles = new ArrayList<String>();
+		for (int file = 0; file < SyntheticRepository.FILE_COUNT; file += SyntheticRepository.DIRECTORY_COUNT) {
+			directoryFiles.add(SyntheticRepository.fileName(file));
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		gitVersioner.close();
+	}
+
+	@Benchmark
+	public VersionList listVersions() throws Exception {
+		return gitVersioner.listVersions(SyntheticRepository.HOT_FILE);
+	}
+
+	@Benchmark
+	public void listFirstPage(Blackhole blackhole) throws Exception {
+		VersionIterator versionIterator = gitVersioner.listVersions(SyntheticRepository.HOT_FILE,
+				new VersionQuery(20));
+		while (versionIterator.hasNext()) {
+			blackhole.consume(versionIterator.next());
+		}
+	}
+
+	@Benchmark
+	public Map<String, VersionList> listVersionsOfManyFiles() throws Exception {
+		return gitVersioner.listVersions(directoryFiles);
+	}
+
+}
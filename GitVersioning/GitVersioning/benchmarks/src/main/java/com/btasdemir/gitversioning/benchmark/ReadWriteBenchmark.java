@@ -0,0 +1,94 @@
+package com.btasdemir.gitversioning.benchmark;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.btasdemir.gitversioning.model.VersionList;
+import com.btasdemir.gitversioning.versioner.GitVersioner;
+
+/**
+ * Benchmarks readers listing and reading versions while a writer commits to
+ * the same versioner
+ * 
+ * @author bahadir.tasdemir@hotmail.com.tr
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReadWriteBenchmark {
+
+	protected File localPath;
+	protected GitVersioner gitVersioner;
+	protected String revId;
+	protected int counter;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		localPath = new File(System.getProperty("java.io.tmpdir"), "gitversioning-benchmark-mixed-" + System.nanoTime());
+		SyntheticRepository.create(localPath, 10000, 256);
+		gitVersioner = new GitVersioner(localPath.getPath(), "", "", "", false);
+		gitVersioner.init();
+		revId = gitVersioner.listVersions(SyntheticRepository.HOT_FILE).getCommitId(0);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		gitVersioner.close();
+		SyntheticRepository.delete(localPath);
+	}
+
+	@Benchmark
+	@Group("mixed")
+	@GroupThreads(3)
+	public VersionList listVersions() throws Exception {
+		return gitVersioner.listVersions(SyntheticRepository.fileName(1));
+	}
+
+	@Benchmark
+	@Group("mixed")
+	@GroupThreads(3)
+	public byte[] readRevision() throws Exception {
+		return gitVersioner.readRevision(revId, SyntheticRepository.HOT_FILE);
+	}
+
+	@Benchmark
+	@Group("mixed")
+	@GroupThreads(1)
+	public RevCommit versionFile() throws Exception {
+		int version;
+		synchronized (this) {
+			version = counter++;
+		}
+		File file = new File(localPath, SyntheticRepository.HOT_FILE);
+		FileOutputStream outputStream = new FileOutputStream(file, false);
+		try {
+			outputStream.write(("version " + version).getBytes("UTF-8"));
+		} finally {
+			outputStream.close();
+		}
+		return gitVersioner.commitFiles(Collections.singleton(SyntheticRepository.HOT_FILE), "Benchmark " + version,
+				false);
+	}
+
+}
@@ -0,0 +1,68 @@
+package com.btasdemir.gitversioning.benchmark;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.btasdemir.gitversioning.model.VersionList;
+import com.btasdemir.gitversioning.versioner.GitVersioner;
+
+/**
+ * Benchmarks reading an old revision of files of different sizes
+ * 
+ * @author bahadir.tasdemir@hotmail.com.tr
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RevisionBenchmark {
+
+	@Param({ "1024", "65536", "1048576" })
+	public int fileSize;
+
+	protected GitVersioner gitVersioner;
+	protected String revId;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		// A short history keeps the repository of the largest files small
+		File localPath = SyntheticRepository.getOrCreate(100, fileSize);
+		gitVersioner = new GitVersioner(localPath.getPath(), "", "", "", false);
+		gitVersioner.init();
+		// A version from the middle of the history, its blob lives in the pack
+		VersionList versions = gitVersioner.listVersions(SyntheticRepository.HOT_FILE);
+		revId = versions.getCommitId(versions.size() / 2);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		gitVersioner.close();
+	}
+
+	@Benchmark
+	public File getRevisionFileById() throws Exception {
+		return gitVersioner.getRevisionFileById(revId, SyntheticRepository.HOT_FILE);
+	}
+
+	@Benchmark
+	public byte[] readRevision() throws Exception {
+		return gitVersioner.readRevision(revId, SyntheticRepository.HOT_FILE);
+	}
+
+}
@@ -0,0 +1,214 @@
+package com.btasdemir.gitversioning.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.ParseException;
+import java.util.Date;
+import java.util.Random;
+import java.util.TimeZone;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.ResetCommand.ResetType;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.dircache.DirCache;
+import org.eclipse.jgit.dircache.DirCacheEditor;
+import org.eclipse.jgit.dircache.DirCacheEditor.PathEdit;
+import org.eclipse.jgit.dircache.DirCacheEntry;
+import org.eclipse.jgit.internal.storage.file.FileRepository;
+import org.eclipse.jgit.internal.storage.file.GC;
+import org.eclipse.jgit.lib.CommitBuilder;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.NullProgressMonitor;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.lib.Repository;
+
+/**
+ * Builds synthetic repositories for the benchmarks.
+ * 
+ * The history is generated from a fixed seed and fixed commit times, so the
+ * same parameters always produce the same commits and the same numbers can
+ * be compared between runs. Objects are written directly with an object
+ * inserter and packed at the end, which keeps building a 100k commit
+ * history fast. Read only repositories are cached in the temporary folder
+ * and reused by later forks and runs.
+ * 
+ * @author bahadir.tasdemir@hotmail.com.tr
+ */
+public class SyntheticRepository {
+
+	public static final long SEED = 20151028L;
+	public static final int FILE_COUNT = 100;
+	public static final int DIRECTORY_COUNT = 10;
+	public static final String HOT_FILE = fileName(0);
+	protected static final long BASE_TIME = 1445990400000L;
+	protected static final String CACHE_DIRECTORY = "gitversioning-benchmark";
+	protected static final String READY_FILE = ".ready";
+
+	private SyntheticRepository() {
+	}
+
+	/**
+	 * Get a cached read only repository, building it on first use
+	 * 
+	 * @param commits
+	 *            Number of commits in the history
+	 * @param fileSize
+	 *            Size of each file version in bytes
+	 * @return Working folder of the repository
+	 * @throws IOException
+	 *             Throws if an IO exception occurs
+	 * @throws GitAPIException
+	 *             Throws if a GIT API exception occurs
+	 */
+	public static File getOrCreate(int commits, int fileSize) throws IOException, GitAPIException {
+		File directory = new File(new File(System.getProperty("java.io.tmpdir"), CACHE_DIRECTORY),
+				"repo-" + commits + "-" + fileSize);
+		if (!new File(directory, READY_FILE).exists()) {
+			delete(directory);
+			create(directory, commits, fileSize);
+			new File(directory, READY_FILE).createNewFile();
+		}
+		return directory;
+	}
+
+	/**
+	 * Build a repository with a checked out working tree
+	 * 
+	 * @param directory
+	 *            Working folder to create
+	 * @param commits
+	 *            Number of commits in the history, the first one adds all
+	 *            files and every other one changes a single file
+	 * @param fileSize
+	 *            Size of each file version in bytes
+	 * @throws IOException
+	 *             Throws if an IO exception occurs
+	 * @throws GitAPIException
+	 *             Throws if a GIT API exception occurs
+	 */
+	public static void create(File directory, int commits, int fileSize) throws IOException, GitAPIException {
+		Random random = new Random(SEED);
+		Git git = Git.init().setDirectory(directory).call();
+		Repository repository = git.getRepository();
+		ObjectInserter inserter = repository.newObjectInserter();
+		try {
+			DirCache dirCache = DirCache.newInCore();
+			ObjectId parentId = null;
+			for (int i = 0; i < commits; i++) {
+				DirCacheEditor editor = dirCache.editor();
+				if (i == 0) {
+					for (int file = 0; file < FILE_COUNT; file++) {
+						editor.add(new BlobEdit(fileName(file), insertContent(inserter, random, fileSize)));
+					}
+				} else {
+					// Every tenth commit changes the hot file, others a random one
+					int file = i % 10 == 0 ? 0 : random.nextInt(FILE_COUNT);
+					editor.add(new BlobEdit(fileName(file), insertContent(inserter, random, fileSize)));
+				}
+				editor.finish();
+				PersonIdent personIdent = new PersonIdent("benchmark", "benchmark@localhost",
+						new Date(BASE_TIME + i * 1000L), TimeZone.getTimeZone("UTC"));
+				CommitBuilder commitBuilder = new CommitBuilder();
+				commitBuilder.setTreeId(dirCache.writeTree(inserter));
+				if (parentId != null) {
+					commitBuilder.setParentId(parentId);
+				}
+				commitBuilder.setAuthor(personIdent);
+				commitBuilder.setCommitter(personIdent);
+				commitBuilder.setMessage("Commit " + i);
+				parentId = inserter.insert(commitBuilder);
+			}
+			inserter.flush();
+			RefUpdate refUpdate = repository.updateRef(Constants.R_HEADS + Constants.MASTER);
+			refUpdate.setNewObjectId(parentId);
+			refUpdate.forceUpdate();
+		} finally {
+			inserter.close();
+		}
+		GC gc = new GC((FileRepository) repository);
+		gc.setProgressMonitor(NullProgressMonitor.INSTANCE);
+		try {
+			gc.gc();
+		} catch (ParseException e) {
+			throw new IOException(e);
+		}
+		// Fill the index and the working tree from HEAD
+		git.reset().setMode(ResetType.HARD).call();
+		git.close();
+	}
+
+	/**
+	 * Get path of a generated file
+	 * 
+	 * @param file
+	 *            Number of the file
+	 * @return Path inside of the repository
+	 */
+	public static String fileName(int file) {
+		return "dir" + (file % DIRECTORY_COUNT) + "/file" + file + ".txt";
+	}
+
+	/**
+	 * Delete a folder and its content
+	 * 
+	 * @param file
+	 *            Folder or file to delete
+	 */
+	public static void delete(File file) {
+		File[] children = file.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+
+	/**
+	 * Insert a blob of random printable content
+	 * 
+	 * @param inserter
+	 *            Inserter of the repository
+	 * @param random
+	 *            Seeded random source
+	 * @param fileSize
+	 *            Size of the content in bytes
+	 * @return Id of the blob
+	 * @throws IOException
+	 *             Throws if an IO exception occurs
+	 */
+	protected static ObjectId insertContent(ObjectInserter inserter, Random random, int fileSize)
+			throws IOException {
+		byte[] content = new byte[fileSize];
+		// Printable text compresses like real files do
+		for (int i = 0; i < fileSize; i++) {
+			content[i] = (byte) ('a' + random.nextInt(26));
+		}
+		return inserter.insert(Constants.OBJ_BLOB, content);
+	}
+
+	/**
+	 * Index edit that points a path to a blob
+	 */
+	protected static class BlobEdit extends PathEdit {
+
+		protected final ObjectId blobId;
+
+		protected BlobEdit(String path, ObjectId blobId) {
+			super(path);
+			this.blobId = blobId;
+		}
+
+		@Override
+		public void apply(DirCacheEntry entry) {
+			entry.setFileMode(FileMode.REGULAR_FILE);
+			entry.setObjectId(blobId);
+		}
+
+	}
+
+}
@@ -0,0 +1,82 @@
+package com.btasdemir.gitversioning.benchmark;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.btasdemir.gitversioning.versioner.GitVersioner;
+
+/**
+ * Benchmarks versioning a single changed file, the path taken by
+ * versionFile, with and without pushing to a local bare remote
+ * 
+ * @author bahadir.tasdemir@hotmail.com.tr
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class VersionFileBenchmark {
+
+	@Param({ "false", "true" })
+	public boolean push;
+
+	protected File directory;
+	protected GitVersioner gitVersioner;
+	protected File file;
+	protected int counter;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		directory = new File(System.getProperty("java.io.tmpdir"), "gitversioning-benchmark-write-" + System.nanoTime());
+		File localPath = new File(directory, "local");
+		File remotePath = new File(directory, "remote.git");
+		SyntheticRepository.create(localPath, 1000, 256);
+		Git.init().setBare(true).setDirectory(remotePath).call().close();
+		gitVersioner = new GitVersioner(localPath.getPath(), remotePath.toURI().toString(), "", "", false);
+		gitVersioner.init();
+		if (push) {
+			// Start from a remote that has the whole history
+			gitVersioner.push();
+		}
+		file = new File(localPath, SyntheticRepository.HOT_FILE);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		gitVersioner.close();
+		SyntheticRepository.delete(directory);
+	}
+
+	@Benchmark
+	public RevCommit versionFile() throws Exception {
+		FileOutputStream outputStream = new FileOutputStream(file, false);
+		try {
+			outputStream.write(("version " + counter++).getBytes("UTF-8"));
+		} finally {
+			outputStream.close();
+		}
+		return gitVersioner.commitFiles(Collections.singleton(SyntheticRepository.HOT_FILE), "Benchmark " + counter,
+				push);
+	}
+
+}
@@ -0,0 +1,124 @@
+package com.btasdemir.gitversioning.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.eclipse.jgit.diff.EditList;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.ObjectId;
+
+import com.btasdemir.gitversioning.constant.CommonConstants;
+
+/**
+ * Size bounded, least recently used cache of computed diffs.
+ * 
+ * Entries are keyed by the pair of blob ids, so the same change is computed
+ * once no matter which revisions or paths it is reached through. Blobs never
+ * change, so entries are only evicted and never invalidated. Cached edit
+ * lists are shared and must not be modified.
+ * 
+ * All methods are thread safe.
+ * 
+ * @author bahadir.tasdemir@hotmail.com.tr
+ */
+public class DiffCache {
+
+	protected final LinkedHashMap<BlobPair, EditList> editLists;
+	protected long hitCount;
+	protected long missCount;
+
+	/**
+	 * Create a cache
+	 * 
+	 * @param maxEntries
+	 *            Upper limit of cached edit lists
+	 */
+	public DiffCache(final int maxEntries) {
+		if (maxEntries <= 0) {
+			throw new IllegalArgumentException(CommonConstants.ERROR_EMPTY_ARGUMENT);
+		}
+		this.editLists = new LinkedHashMap<BlobPair, EditList>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<BlobPair, EditList> eldest) {
+				return size() > maxEntries;
+			}
+		};
+	}
+
+	/**
+	 * Get the edit list between two blobs
+	 * 
+	 * @param oldBlobId
+	 *            Id of the old blob, null for no content
+	 * @param newBlobId
+	 *            Id of the new blob, null for no content
+	 * @return Edit list, null if not cached
+	 */
+	public synchronized EditList get(AnyObjectId oldBlobId, AnyObjectId newBlobId) {
+		EditList editList = editLists.get(new BlobPair(oldBlobId, newBlobId));
+		if (editList == null) {
+			missCount++;
+		} else {
+			hitCount++;
+		}
+		return editList;
+	}
+
+	/**
+	 * Remember the edit list between two blobs
+	 * 
+	 * @param oldBlobId
+	 *            Id of the old blob, null for no content
+	 * @param newBlobId
+	 *            Id of the new blob, null for no content
+	 * @param editList
+	 *            Computed edit list
+	 */
+	public synchronized void put(AnyObjectId oldBlobId, AnyObjectId newBlobId, EditList editList) {
+		editLists.put(new BlobPair(oldBlobId, newBlobId), editList);
+	}
+
+	public synchronized long getHitCount() {
+		return hitCount;
+	}
+
+	public synchronized long getMissCount() {
+		return missCount;
+	}
+
+	public synchronized int getEntryCount() {
+		return editLists.size();
+	}
+
+	/**
+	 * Ordered pair of blob ids
+	 */
+	protected static class BlobPair {
+
+		protected final ObjectId oldBlobId;
+		protected final ObjectId newBlobId;
+
+		protected BlobPair(AnyObjectId oldBlobId, AnyObjectId newBlobId) {
+			this.oldBlobId = oldBlobId == null ? ObjectId.zeroId() : oldBlobId.copy();
+			this.newBlobId = newBlobId == null ? ObjectId.zeroId() : newBlobId.copy();
+		}
+
+		@Override
+		public int hashCode() {
+			return oldBlobId.hashCode() * 31 + newBlobId.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof BlobPair)) {
+				return false;
+			}
+			BlobPair other = (BlobPair) obj;
+			return oldBlobId.equals(other.oldBlobId) && newBlobId.equals(other.newBlobId);
+		}
+
+	}
+
+}
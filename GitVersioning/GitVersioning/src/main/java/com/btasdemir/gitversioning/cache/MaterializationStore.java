@@ -0,0 +1,282 @@
+package com.btasdemir.gitversioning.cache;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.ObjectLoader;
+
+import com.btasdemir.gitversioning.constant.CommonConstants;
+import com.btasdemir.gitversioning.constant.MessageConstants;
+
+/**
+ * Content addressed store of materialized blobs on disc.
+ * 
+ * Each blob is written once, to a temporary file that is renamed to its id,
+ * so readers never see a partial file. Revision files are hard links to the
+ * stored blob, which makes revisions sharing content share the disc space
+ * and a repeated lookup cost a few stats. Stored files are read only, since
+ * writing through a link would change every revision sharing the blob. If
+ * the file system cannot link, the stored blob is copied instead.
+ * 
+ * The total size of the stored blobs is kept under a limit by deleting the
+ * least recently used ones. Sizes and the order of use are tracked in
+ * memory, the folder is listed only when the store is opened, and the
+ * modification time of a blob is never touched since revision files share
+ * it. Revision files linked to a deleted blob stay valid, only their
+ * sharing ends.
+ * 
+ * All methods are thread safe.
+ * 
+ * @author bahadir.tasdemir@hotmail.com.tr
+ */
+public class MaterializationStore {
+
+	protected final File directory;
+	protected final long maxBytes;
+	// Sizes of the stored blobs, least recently used first
+	protected final LinkedHashMap<File, Long> sizes = new LinkedHashMap<File, Long>(16, 0.75f, true);
+	protected long currentBytes;
+	protected long hitCount;
+	protected long missCount;
+	protected long evictionCount;
+	protected static final Logger logger = LogManager.getLogger(MaterializationStore.class);
+
+	/**
+	 * Open a store, the blobs already in the folder are reused
+	 * 
+	 * @param directory
+	 *            Folder of the stored blobs
+	 * @param maxBytes
+	 *            Upper limit of the total size of the stored blobs
+	 * @throws IOException
+	 *             Throws if the folder cannot be created
+	 */
+	public MaterializationStore(File directory, long maxBytes) throws IOException {
+		if (maxBytes <= 0) {
+			throw new IllegalArgumentException(CommonConstants.ERROR_EMPTY_ARGUMENT);
+		}
+		this.directory = directory;
+		this.maxBytes = maxBytes;
+		Files.createDirectories(directory.toPath());
+		// Blobs of earlier runs start in the order they were stored
+		List<File> files = this.listBlobFiles();
+		Collections.sort(files, new Comparator<File>() {
+			public int compare(File file1, File file2) {
+				long lastModified1 = file1.lastModified();
+				long lastModified2 = file2.lastModified();
+				return lastModified1 < lastModified2 ? -1 : (lastModified1 == lastModified2 ? 0 : 1);
+			}
+		});
+		for (File file : files) {
+			long length = file.length();
+			sizes.put(file, length);
+			currentBytes += length;
+		}
+	}
+
+	/**
+	 * Get the stored file of a blob and mark it as recently used
+	 * 
+	 * @param blobId
+	 *            Id of the blob
+	 * @return Stored file, null if the blob is not stored
+	 */
+	public synchronized File get(AnyObjectId blobId) {
+		File file = this.getBlobFile(blobId);
+		if (!file.isFile()) {
+			// Deleted from outside of the store
+			Long length = sizes.remove(file);
+			if (length != null) {
+				currentBytes -= length;
+			}
+			missCount++;
+			return null;
+		}
+		hitCount++;
+		if (sizes.get(file) == null) {
+			this.add(file);
+		}
+		return file;
+	}
+
+	/**
+	 * Store a blob. The content is written to a temporary file first and
+	 * renamed to the id of the blob when complete.
+	 * 
+	 * @param blobId
+	 *            Id of the blob
+	 * @param loader
+	 *            Loader of the blob content
+	 * @return Stored file
+	 * @throws IOException
+	 *             Throws if an IO exception occurs
+	 */
+	public File put(AnyObjectId blobId, ObjectLoader loader) throws IOException {
+		File file = this.getBlobFile(blobId);
+		File tempFile = File.createTempFile(blobId.getName(), CommonConstants.TEMP_FILE_SUFFIX, directory);
+		try {
+			FileOutputStream out = new FileOutputStream(tempFile);
+			try {
+				loader.copyTo(out);
+			} finally {
+				out.close();
+			}
+			tempFile.setReadOnly();
+			synchronized (this) {
+				if (!file.isFile()) {
+					Files.createDirectories(file.getParentFile().toPath());
+					Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+					this.add(file);
+				}
+			}
+		} finally {
+			if (tempFile.exists()) {
+				this.delete(tempFile);
+			}
+		}
+		return file;
+	}
+
+	/**
+	 * Make a file show the content of a stored blob. Nothing is done if the
+	 * file already is a link to the stored blob.
+	 * 
+	 * @param storedFile
+	 *            Stored file returned by get or put
+	 * @param target
+	 *            File to create or replace
+	 * @throws IOException
+	 *             Throws if an IO exception occurs
+	 */
+	public void link(File storedFile, File target) throws IOException {
+		Path targetPath = target.toPath();
+		if (target.isFile() && Files.isSameFile(storedFile.toPath(), targetPath)) {
+			return;
+		}
+		Files.createDirectories(targetPath.getParent());
+		// Link next to the target and rename, so the target is never missing
+		Path tempPath = targetPath.resolveSibling(target.getName() + CommonConstants.DOT
+				+ Thread.currentThread().getId() + CommonConstants.TEMP_FILE_SUFFIX);
+		Files.deleteIfExists(tempPath);
+		try {
+			Files.createLink(tempPath, storedFile.toPath());
+		} catch (UnsupportedOperationException e) {
+			Files.copy(storedFile.toPath(), tempPath);
+		} catch (FileSystemException e) {
+			// Different file systems or no link support
+			Files.copy(storedFile.toPath(), tempPath);
+		}
+		Files.move(tempPath, targetPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	public synchronized long getCurrentBytes() {
+		return currentBytes;
+	}
+
+	public synchronized long getHitCount() {
+		return hitCount;
+	}
+
+	public synchronized long getMissCount() {
+		return missCount;
+	}
+
+	public synchronized long getEvictionCount() {
+		return evictionCount;
+	}
+
+	public long getMaxBytes() {
+		return maxBytes;
+	}
+
+	public File getDirectory() {
+		return directory;
+	}
+
+	/**
+	 * Get the file of a blob, blobs are spread over folders by the first two
+	 * characters of their id like the loose objects of GIT
+	 * 
+	 * @param blobId
+	 *            Id of the blob
+	 * @return File of the blob, may not exist
+	 */
+	protected File getBlobFile(AnyObjectId blobId) {
+		String name = blobId.getName();
+		return new File(new File(directory, name.substring(0, 2)), name.substring(2));
+	}
+
+	/**
+	 * Track a stored blob as the most recently used one and make room for it
+	 * 
+	 * @param file
+	 *            Stored blob
+	 */
+	protected void add(File file) {
+		long length = file.length();
+		sizes.put(file, length);
+		currentBytes += length;
+		this.evict(file);
+	}
+
+	/**
+	 * Delete least recently used blobs until the size limit is met
+	 * 
+	 * @param keep
+	 *            Blob that has just been stored and must not be deleted
+	 */
+	protected void evict(File keep) {
+		Iterator<Map.Entry<File, Long>> iterator = sizes.entrySet().iterator();
+		while (currentBytes > maxBytes && iterator.hasNext()) {
+			Map.Entry<File, Long> entry = iterator.next();
+			File file = entry.getKey();
+			// A blob deleted from outside of the store is only forgotten
+			if (!file.equals(keep) && (!file.isFile() || this.delete(file))) {
+				iterator.remove();
+				currentBytes -= entry.getValue();
+				evictionCount++;
+			}
+		}
+	}
+
+	protected List<File> listBlobFiles() {
+		List<File> files = new ArrayList<File>();
+		File[] folders = directory.listFiles();
+		if (folders != null) {
+			for (File folder : folders) {
+				File[] children = folder.listFiles();
+				if (children != null) {
+					Collections.addAll(files, children);
+				}
+			}
+		}
+		return files;
+	}
+
+	protected boolean delete(File file) {
+		// Read only files cannot be deleted on some platforms
+		file.setWritable(true);
+		boolean deleted = file.delete();
+		if (!deleted) {
+			logger.warn(MessageFormat.format(MessageConstants.WARNING_BLOB_NOT_DELETED, file.getPath()));
+		}
+		return deleted;
+	}
+
+}
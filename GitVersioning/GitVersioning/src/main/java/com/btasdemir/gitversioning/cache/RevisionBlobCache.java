@@ -0,0 +1,241 @@
+package com.btasdemir.gitversioning.cache;
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.ObjectId;
+
+import com.btasdemir.gitversioning.constant.CommonConstants;
+
+/**
+ * Size bounded, least recently used cache of committed file revisions.
+ * 
+ * Lookups go in two steps: (commit id, path) resolves to the blob id of the
+ * file, then the blob id resolves to the content. Committed objects never
+ * change, so entries are only evicted and never invalidated. Content can be
+ * kept on the heap or in direct (off-heap) buffers.
+ * 
+ * All methods are thread safe.
+ * 
+ * @author bahadir.tasdemir@hotmail.com.tr
+ */
+public class RevisionBlobCache {
+
+	protected final long maxBytes;
+	protected final long maxEntryBytes;
+	protected final boolean offHeap;
+	protected final LinkedHashMap<RevisionKey, ObjectId> blobIds;
+	protected final LinkedHashMap<ObjectId, ByteBuffer> contents;
+	protected long currentBytes;
+	protected long hitCount;
+	protected long missCount;
+	protected long evictionCount;
+
+	/**
+	 * Create a cache
+	 * 
+	 * @param maxBytes
+	 *            Upper limit of the total cached content size
+	 * @param maxEntryBytes
+	 *            Files larger than this are never cached
+	 * @param maxPathEntries
+	 *            Upper limit of cached (commit id, path) to blob id mappings
+	 * @param offHeap
+	 *            Set true to keep the content in direct buffers
+	 */
+	public RevisionBlobCache(long maxBytes, long maxEntryBytes, final int maxPathEntries, boolean offHeap) {
+		if (maxBytes <= 0 || maxEntryBytes <= 0 || maxEntryBytes > Integer.MAX_VALUE || maxPathEntries <= 0) {
+			throw new IllegalArgumentException(CommonConstants.ERROR_EMPTY_ARGUMENT);
+		}
+		this.maxBytes = maxBytes;
+		this.maxEntryBytes = Math.min(maxEntryBytes, maxBytes);
+		this.offHeap = offHeap;
+		this.blobIds = new LinkedHashMap<RevisionKey, ObjectId>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<RevisionKey, ObjectId> eldest) {
+				return size() > maxPathEntries;
+			}
+		};
+		this.contents = new LinkedHashMap<ObjectId, ByteBuffer>(16, 0.75f, true);
+	}
+
+	public RevisionBlobCache(long maxBytes, long maxEntryBytes, boolean offHeap) {
+		this(maxBytes, maxEntryBytes, CommonConstants.DEFAULT_CACHE_PATH_ENTRIES, offHeap);
+	}
+
+	/**
+	 * Get the blob id of a file in a commit
+	 * 
+	 * @param commitId
+	 *            Resolved id of the commit
+	 * @param path
+	 *            Path of the file
+	 * @return Blob id, null if not cached
+	 */
+	public synchronized ObjectId getBlobId(AnyObjectId commitId, String path) {
+		return blobIds.get(new RevisionKey(commitId, path));
+	}
+
+	/**
+	 * Remember the blob id of a file in a commit
+	 * 
+	 * @param commitId
+	 *            Resolved id of the commit
+	 * @param path
+	 *            Path of the file
+	 * @param blobId
+	 *            Id of the blob of the file
+	 */
+	public synchronized void putBlobId(AnyObjectId commitId, String path, AnyObjectId blobId) {
+		blobIds.put(new RevisionKey(commitId, path), blobId.copy());
+	}
+
+	/**
+	 * Get the content of a blob
+	 * 
+	 * @param blobId
+	 *            Id of the blob
+	 * @return Read only buffer positioned at the start of the content, null
+	 *         if not cached
+	 */
+	public synchronized ByteBuffer getContent(AnyObjectId blobId) {
+		ByteBuffer content = contents.get(blobId);
+		if (content == null) {
+			missCount++;
+			return null;
+		}
+		hitCount++;
+		return content.asReadOnlyBuffer();
+	}
+
+	/**
+	 * Cache the content of a blob if it fits into the limits
+	 * 
+	 * @param blobId
+	 *            Id of the blob
+	 * @param bytes
+	 *            Content of the blob, copied into the cache
+	 * @return Read only buffer of the cached content, null if it is too large
+	 *         to cache
+	 */
+	public synchronized ByteBuffer putContent(AnyObjectId blobId, byte[] bytes) {
+		if (!this.accepts(bytes.length)) {
+			return null;
+		}
+		ByteBuffer content = contents.get(blobId);
+		if (content == null) {
+			content = offHeap ? ByteBuffer.allocateDirect(bytes.length) : ByteBuffer.allocate(bytes.length);
+			content.put(bytes);
+			content.flip();
+			contents.put(blobId.copy(), content);
+			currentBytes += bytes.length;
+			this.evict();
+		}
+		return content.asReadOnlyBuffer();
+	}
+
+	/**
+	 * Check if content of the given size can be cached
+	 * 
+	 * @param size
+	 *            Size of the content
+	 * @return True if the size is within the entry limit
+	 */
+	public boolean accepts(long size) {
+		return size <= maxEntryBytes;
+	}
+
+	/**
+	 * Drop every entry of the cache, the statistics are kept
+	 */
+	public synchronized void clear() {
+		blobIds.clear();
+		contents.clear();
+		currentBytes = 0;
+	}
+
+	public synchronized long getHitCount() {
+		return hitCount;
+	}
+
+	public synchronized long getMissCount() {
+		return missCount;
+	}
+
+	public synchronized long getEvictionCount() {
+		return evictionCount;
+	}
+
+	public synchronized long getCurrentBytes() {
+		return currentBytes;
+	}
+
+	public synchronized int getEntryCount() {
+		return contents.size();
+	}
+
+	public long getMaxBytes() {
+		return maxBytes;
+	}
+
+	public long getMaxEntryBytes() {
+		return maxEntryBytes;
+	}
+
+	public boolean isOffHeap() {
+		return offHeap;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "RevisionBlobCache[entries=" + contents.size() + ", bytes=" + currentBytes + ", hits=" + hitCount
+				+ ", misses=" + missCount + ", evictions=" + evictionCount + "]";
+	}
+
+	/**
+	 * Remove least recently used contents until the size limit is met
+	 */
+	protected void evict() {
+		Iterator<Map.Entry<ObjectId, ByteBuffer>> iterator = contents.entrySet().iterator();
+		while (currentBytes > maxBytes && iterator.hasNext()) {
+			currentBytes -= iterator.next().getValue().capacity();
+			iterator.remove();
+			evictionCount++;
+		}
+	}
+
+	/**
+	 * Key of a file in a commit
+	 */
+	protected static class RevisionKey {
+
+		protected final ObjectId commitId;
+		protected final String path;
+
+		protected RevisionKey(AnyObjectId commitId, String path) {
+			this.commitId = commitId.copy();
+			this.path = path;
+		}
+
+		@Override
+		public int hashCode() {
+			return commitId.hashCode() * 31 + path.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof RevisionKey)) {
+				return false;
+			}
+			RevisionKey other = (RevisionKey) obj;
+			return commitId.equals(other.commitId) && path.equals(other.path);
+		}
+
+	}
+
+}
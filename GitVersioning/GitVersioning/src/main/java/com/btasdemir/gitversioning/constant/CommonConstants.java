@@ -15,9 +15,58 @@ public class CommonConstants {
 	public static final String GIT_TERM_REMOTE = "remote";
 	public static final String GIT_TERM_ORIGIN = "origin";
 	public static final String GIT_TERM_HEAD = "HEAD";
+	public static final String GIT_TERM_FETCH = "fetch";
 	public static final String TERM_URL = "url";
 	public static final String DATE_TIME_PATTERN = "yyyy-MM-dd HH:mm:ss";
 	public static final char DOT = '.';
 	public static final String REGEX_FILE_EXTENSION = "\\..+";
+	public static final String TEMP_BRANCH_NAME = "gitversioning-rollback";
+	public static final String GROUP_COMMITTER_THREAD_NAME = "gitversioning-group-committer";
+	public static final long GROUP_COMMIT_IDLE_POLL_MILLIS = 100L;
+	public static final String PUSH_SCHEDULER_THREAD_NAME = "gitversioning-push-scheduler";
+	public static final long PUSH_SCHEDULER_CLOSE_TIMEOUT_MILLIS = 5000L;
+	public static final int DEFAULT_CACHE_PATH_ENTRIES = 10000;
+	public static final String GITVERSIONING_DIRECTORY = "gitversioning";
+	public static final String MATERIALIZED_DIRECTORY = "materialized";
+	public static final String PATH_INDEX_ENTRY_FILE = "path-index";
+	public static final String PATH_INDEX_HEAD_FILE = "path-index-head";
+	public static final String PATH_INDEX_LOCK_FILE = "path-index.lock";
+	public static final int PATH_INDEX_MAX_SNAPSHOT_DEPTH = 16;
+	public static final String TEMP_FILE_SUFFIX = ".tmp";
+	public static final String METRICS_DOMAIN = "com.btasdemir.gitversioning";
+	public static final String METRICS_OBJECT_STORE = "objectStore";
+	public static final String REGISTRY_EVICTOR_THREAD_NAME = "gitversioning-registry-evictor";
+	public static final String AUTO_VERSIONER_THREAD_NAME = "gitversioning-auto-versioner";
+	public static final long AUTO_VERSIONER_CLOSE_TIMEOUT_MILLIS = 5000L;
+	public static final String MAINTENANCE_THREAD_NAME = "gitversioning-maintenance";
+	public static final long MAINTENANCE_CLOSE_TIMEOUT_MILLIS = 5000L;
+	// Unreferenced loose objects younger than this are never pruned
+	public static final long MAINTENANCE_PRUNE_EXPIRE_MILLIS = 2L * 60L * 60L * 1000L;
+	public static final int EXPORT_BATCH_SIZE = 16;
+	public static final String REMOTE_SYNC_THREAD_NAME = "gitversioning-remote-sync";
+	public static final long REMOTE_SYNC_CLOSE_TIMEOUT_MILLIS = 5000L;
+	public static final String PACK_DIRECTORY = "pack";
+	public static final int CAS_MAX_ATTEMPTS = 32;
+	public static final long CAS_BACKOFF_MILLIS = 5L;
+	public static final String PACK_FILE_SUFFIX = ".pack";
+	public static final String STARTUP_THREAD_NAME = "gitversioning-startup";
+	public static final String STARTUP_PHASE_OPEN = "open";
+	public static final String STARTUP_PHASE_CLONE = "clone";
+	public static final String STARTUP_PHASE_PULL = "pull";
+	public static final String STARTUP_PHASE_INDEX = "index";
+	public static final String LARGE_FILE_DIRECTORY = "large-files";
+	public static final String LARGE_FILE_TEMP_PREFIX = "large";
+	public static final String LARGE_FILE_HASH_ALGORITHM = "SHA-256";
+	public static final int LARGE_FILE_BUFFER_SIZE = 64 * 1024;
+	public static final int LARGE_FILE_MAX_POINTER_SIZE = 1024;
+	public static final String LARGE_FILE_POINTER_VERSION = "version https://git-lfs.github.com/spec/v1";
+	public static final String LARGE_FILE_POINTER_OID = "oid sha256:";
+	public static final String LARGE_FILE_POINTER_SIZE = "size ";
+	public static final String REGEX_LARGE_FILE_OID = "[0-9a-f]{64}";
+	public static final int DEFAULT_DIFF_CACHE_ENTRIES = 1000;
+	public static final String DIFF_OLD_PREFIX = "a/";
+	public static final String DIFF_NEW_PREFIX = "b/";
+	public static final String DIFF_HEADER_LINES = "--- {0}\n+++ {1}\n";
+	public static final String DIFF_BINARY_LINE = "Binary files {0} and {1} differ\n";
 
 }
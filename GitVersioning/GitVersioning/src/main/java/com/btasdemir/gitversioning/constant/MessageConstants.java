@@ -17,6 +17,40 @@ public class MessageConstants {
 	public static final String INFO_PULL = "Remote is pulled";
 	public static final String INFO_FILE_ADD = "File: {0} is added to the versioning";
 	public static final String INFO_REMOVED_FROM_INDEX = "File: {0} is removed. From just index? : {1}";
+	public static final String INFO_FILES_ADD = "{0} files are added to the versioning";
+	public static final String WARNING_BATCH_ROLLED_BACK = "Batch of {0} files is rolled back";
+	public static final String ERROR_TRANSACTION_FINISHED = "Transaction is already finished";
+	public static final String INFO_GROUP_COMMIT = "{0} changes are committed as one group";
+	public static final String GROUP_COMMIT_MESSAGE = "Group commit of {0} changes";
+	public static final String ERROR_GROUP_COMMITTER_CLOSED = "Group committer is closed";
+	public static final String WARNING_PUSH_RETRY = "Push failed: {0}, retrying in {1} ms";
+	public static final String ERROR_PUSH_SCHEDULER_CLOSED = "Push scheduler is closed";
+	public static final String INFO_PATH_INDEX_UPDATED = "Path index is updated with {0} commits";
+	public static final String WARNING_PATH_INDEX_REBUILD = "Path index does not match the repository, rebuilding";
+	public static final String INFO_REPOSITORY_EVICTED = "Repository {0} is closed by the registry";
+	public static final String ERROR_REGISTRY_CLOSED = "Versioner registry is closed";
+	public static final String ERROR_REF_UPDATE_REJECTED = "Update of {0} is rejected: {1}";
+	public static final String ERROR_IN_MEMORY_NO_REMOTE = "In-memory repository {0} has no remote";
+	public static final String INFO_SNAPSHOT = "In-memory repository {0} is saved to {1}";
+	public static final String AUTO_VERSION_MESSAGE = "Automatic versioning of {0} changed files";
+	public static final String INFO_GC_COMPLETED = "Garbage collection of {0} is completed in {1} ms";
+	public static final String WARNING_BLOB_NOT_DELETED = "Stored blob {0} cannot be deleted";
+	public static final String EXPORT_TASK_TITLE = "Exporting versions";
+	public static final String ERROR_EXPORT_CANCELED = "Export of versions is canceled";
+	public static final String INFO_STARTUP_PHASE = "Startup phase {0} of {1} took {2} ms";
+	public static final String WARNING_NOT_READY = "Versioner is not ready after {0} ms";
+	public static final String INFO_REMOTE_SYNCED = "Remote changes of {0} are synced, {1} bytes are fetched";
+	public static final String WARNING_REMOTE_SYNC_FAILED = "Remote sync failed: {0}, next check in {1} ms";
+	public static final String INFO_COMMIT_RETRIED = "HEAD moved during commit attempt {0}, retrying on the new HEAD";
+	public static final String ERROR_CONCURRENT_CHANGE = "Path {0} is changed by a concurrent commit";
+	public static final String WARNING_INDEX_NOT_UPDATED = "Index entry of {0} is not updated: {1}";
+	public static final String ERROR_LARGE_FILE_MISSING = "Large file {0} is not in the large file store";
+	public static final String INFO_LARGE_FILE_STORED = "File: {0} is stored in the large file store as {1}";
 	public static final String ERROR_REVISION_NOT_FOUND = "The version {0} of the file {1} cannot be found";
+	public static final String ERROR_UNKNOWN_CURSOR = "Cursor {0} is not a known version";
+	public static final String ERROR_OBJECT_STORE = "Object store of {0} cannot be updated: {1}";
+	public static final String WARNING_HEAD_NOT_RESTORED = "HEAD is moved by another writer, commit {0} is kept: {1}";
+	public static final String ERROR_REMOTE_DIVERGED = "Branch {0} diverged from {1}, only fast forwards are synced";
+	public static final String ERROR_FAST_FORWARD_FAILED = "Fast forward of {0} to {1} failed: {2}";
 
 }
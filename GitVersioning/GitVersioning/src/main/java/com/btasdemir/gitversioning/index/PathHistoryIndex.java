@@ -0,0 +1,756 @@
+package com.btasdemir.gitversioning.index;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevSort;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+
+import com.btasdemir.gitversioning.constant.CommonConstants;
+import com.btasdemir.gitversioning.constant.MessageConstants;
+
+/**
+ * Persistent index from file paths to the commits that changed them.
+ * 
+ * The index lives inside the GIT directory as an append-only entry file and
+ * a head file that records the last indexed commit and the valid length of
+ * the entry file. New commits are indexed incrementally by diffing each of
+ * them against its parents once, so answering the history of a path costs
+ * time proportional to the result instead of the whole history.
+ * 
+ * A commit is indexed for a path when the path differs from every parent of
+ * the commit, so merges that take the path from one side are not listed.
+ * 
+ * Updates build a new immutable snapshot of the index and publish it at
+ * once, so reading the history never waits for an update and never sees a
+ * half indexed commit. All methods are thread safe.
+ * 
+ * Several processes may share the index files. Loading and updating hold a
+ * lock on a lock file next to them, and an update first reloads the files
+ * if another process changed them since this one read or wrote them. Files
+ * that cannot be parsed are dropped and the index is built again.
+ * 
+ * @author bahadir.tasdemir@hotmail.com.tr
+ */
+public class PathHistoryIndex {
+
+	protected static final Charset CHARSET = Charset.forName("UTF-8");
+	protected static final Logger logger = LogManager.getLogger(PathHistoryIndex.class);
+
+	protected static final Map<String, ReentrantLock> PROCESS_LOCKS = new HashMap<String, ReentrantLock>();
+
+	protected final File entryFile;
+	protected final File headFile;
+	protected final File lockFile;
+	protected final ReentrantLock processLock;
+	protected volatile Snapshot snapshot = new Snapshot(null, new TreeMap<String, List<Entry>>());
+	protected long indexedLength;
+	protected int nextSequence;
+
+	/**
+	 * Create an index stored in the given directory
+	 * 
+	 * @param directory
+	 *            Directory of the index files, created if missing
+	 */
+	public PathHistoryIndex(File directory) {
+		this.entryFile = new File(directory, CommonConstants.PATH_INDEX_ENTRY_FILE);
+		this.headFile = new File(directory, CommonConstants.PATH_INDEX_HEAD_FILE);
+		this.lockFile = new File(directory, CommonConstants.PATH_INDEX_LOCK_FILE);
+		this.processLock = getProcessLock(lockFile);
+	}
+
+	/**
+	 * Load the index from disc. A missing or inconsistent index is dropped and
+	 * built again by the next catch up.
+	 * 
+	 * @throws IOException
+	 *             Throws if an IO exception occurs
+	 */
+	public synchronized void load() throws IOException {
+		entryFile.getParentFile().mkdirs();
+		FileLock fileLock = this.lock();
+		try {
+			this.read();
+		} finally {
+			this.unlock(fileLock);
+		}
+	}
+
+	/**
+	 * Read the index files, called while holding the file lock. Files that
+	 * cannot be parsed are dropped, so the next catch up builds the index
+	 * again.
+	 * 
+	 * @throws IOException
+	 *             Throws if an IO exception occurs
+	 */
+	protected void read() throws IOException {
+		this.reset();
+		if (!headFile.isFile() || !entryFile.isFile()) {
+			// Entries left without a head would be appended to again
+			this.truncate(0);
+			this.writeHead(null, 0);
+			return;
+		}
+		try {
+			this.parse();
+		} catch (RuntimeException e) {
+			// Malformed ids, numbers or lines all mean a corrupt index
+			logger.warn(MessageConstants.WARNING_PATH_INDEX_REBUILD);
+			this.reset();
+			this.truncate(0);
+			this.writeHead(null, 0);
+		}
+	}
+
+	/**
+	 * Parse the head file and the entry file into a snapshot
+	 * 
+	 * @throws IOException
+	 *             Throws if an IO exception occurs
+	 */
+	protected void parse() throws IOException {
+		String[] head = this.readHead();
+		long length = head.length == 2 ? Long.parseLong(head[1]) : -1;
+		if (length < 0 || entryFile.length() < length || !ObjectId.isId(head[0])) {
+			logger.warn(MessageConstants.WARNING_PATH_INDEX_REBUILD);
+			this.truncate(0);
+			this.writeHead(null, 0);
+			return;
+		}
+		// Drop entries appended by an update that did not finish
+		if (entryFile.length() > length) {
+			this.truncate(length);
+		}
+		TreeMap<String, List<Entry>> entries = new TreeMap<String, List<Entry>>();
+		BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(entryFile), CHARSET));
+		try {
+			Entry entry = null;
+			for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+				String[] fields = line.split(" ", 3);
+				ObjectId commitId = ObjectId.fromString(fields[0]);
+				// Lines of a commit are consecutive, they share one entry
+				if (entry == null || !entry.commitId.equals(commitId)) {
+					entry = new Entry(commitId, Integer.parseInt(fields[1]), nextSequence++);
+				}
+				this.addEntry(entries, null, fields[2], entry);
+			}
+		} finally {
+			reader.close();
+		}
+		indexedLength = length;
+		snapshot = new Snapshot(ObjectId.zeroId().name().equals(head[0]) ? null : ObjectId.fromString(head[0]),
+				entries);
+	}
+
+	/**
+	 * Index every commit between the last indexed commit and HEAD of the
+	 * repository
+	 * 
+	 * @param repository
+	 *            Repository to index
+	 * @throws IOException
+	 *             Throws if an IO exception occurs
+	 */
+	public synchronized void catchUp(Repository repository) throws IOException {
+		ObjectId head = repository.resolve(CommonConstants.GIT_TERM_HEAD);
+		if (head == null || head.equals(snapshot.head)) {
+			return;
+		}
+		FileLock fileLock = this.lock();
+		try {
+			// Another process may have updated the files meanwhile
+			if (!this.isCurrent()) {
+				this.read();
+			}
+			this.update(repository, repository.resolve(CommonConstants.GIT_TERM_HEAD));
+		} finally {
+			this.unlock(fileLock);
+		}
+	}
+
+	/**
+	 * Index the commits up to the given head, called while holding the file
+	 * lock
+	 * 
+	 * @param repository
+	 *            Repository to index
+	 * @param head
+	 *            Current HEAD of the repository
+	 * @throws IOException
+	 *             Throws if an IO exception occurs
+	 */
+	protected void update(Repository repository, ObjectId head) throws IOException {
+		ObjectId indexedHead = snapshot.head;
+		if (head == null || head.equals(indexedHead)) {
+			return;
+		}
+		RevWalk revWalk = new RevWalk(repository);
+		try {
+			RevCommit headCommit = revWalk.parseCommit(head);
+			RevCommit indexedCommit = null;
+			if (indexedHead != null) {
+				indexedCommit = repository.hasObject(indexedHead) ? revWalk.parseCommit(indexedHead) : null;
+				if (indexedCommit != null && !revWalk.isMergedInto(indexedCommit, headCommit)) {
+					if (revWalk.isMergedInto(headCommit, indexedCommit)) {
+						// HEAD moved back, drop the commits that are not reachable
+						this.dropCommits(revWalk, indexedCommit, headCommit);
+						return;
+					}
+					indexedCommit = null;
+				}
+				if (indexedCommit == null) {
+					logger.warn(MessageConstants.WARNING_PATH_INDEX_REBUILD);
+					nextSequence = 0;
+					this.truncate(0);
+				}
+			}
+			// Readers keep the current snapshot. The new one holds only the
+			// paths changed by the new commits and falls back to the current
+			// one for the rest, the chain is merged once it gets too long.
+			Snapshot base = null;
+			TreeMap<String, List<Entry>> entries;
+			if (indexedCommit == null) {
+				entries = new TreeMap<String, List<Entry>>();
+			} else if (snapshot.depth < CommonConstants.PATH_INDEX_MAX_SNAPSHOT_DEPTH) {
+				base = snapshot;
+				entries = new TreeMap<String, List<Entry>>();
+			} else {
+				entries = snapshot.flatten();
+			}
+			revWalk.reset();
+			// Index parents before children so that the sequence follows history
+			revWalk.sort(RevSort.TOPO);
+			revWalk.sort(RevSort.REVERSE, true);
+			revWalk.markStart(headCommit);
+			if (indexedCommit != null) {
+				revWalk.markUninteresting(indexedCommit);
+			}
+			StringBuilder lines = new StringBuilder();
+			int commitCount = 0;
+			for (RevCommit revCommit = revWalk.next(); revCommit != null; revCommit = revWalk.next()) {
+				this.indexCommit(repository, revWalk, revCommit, entries, base, lines);
+				commitCount++;
+			}
+			this.append(lines.toString());
+			this.writeHead(head, indexedLength);
+			snapshot = new Snapshot(head.copy(), entries, base);
+			logger.info(MessageFormat.format(MessageConstants.INFO_PATH_INDEX_UPDATED, commitCount));
+		} finally {
+			revWalk.close();
+		}
+	}
+
+	/**
+	 * Get the commits that changed the given path, or any file under it if the
+	 * path is a directory, newest first
+	 * 
+	 * @param path
+	 *            Path of a file or directory
+	 * @return Commits that changed the path
+	 */
+	public List<Entry> getHistory(String path) {
+		return snapshot.getHistory(path);
+	}
+
+	/**
+	 * Get the last indexed commit
+	 * 
+	 * @return Id of the commit, null if nothing is indexed
+	 */
+	public ObjectId getIndexedHead() {
+		return snapshot.head;
+	}
+
+	/**
+	 * Get the current state of the index, which is not changed by later
+	 * updates
+	 * 
+	 * @return Snapshot of the index
+	 */
+	public Snapshot getSnapshot() {
+		return snapshot;
+	}
+
+	/**
+	 * Find the paths changed by a commit and add them to the index
+	 * 
+	 * @param repository
+	 *            Repository of the commit
+	 * @param revWalk
+	 *            Walk used to parse the parents
+	 * @param revCommit
+	 *            Commit to index
+	 * @param entries
+	 *            Entries of the new snapshot to add to
+	 * @param base
+	 *            Snapshot the new one falls back to, null if none
+	 * @param lines
+	 *            Buffer that collects the entry lines to append
+	 * @throws IOException
+	 *             Throws if an IO exception occurs
+	 */
+	protected void indexCommit(Repository repository, RevWalk revWalk, RevCommit revCommit,
+			TreeMap<String, List<Entry>> entries, Snapshot base, StringBuilder lines) throws IOException {
+		TreeWalk treeWalk = new TreeWalk(repository);
+		try {
+			treeWalk.setRecursive(true);
+			treeWalk.setFilter(TreeFilter.ANY_DIFF);
+			treeWalk.addTree(revCommit.getTree());
+			int parentCount = revCommit.getParentCount();
+			for (int i = 0; i < parentCount; i++) {
+				treeWalk.addTree(revWalk.parseCommit(revCommit.getParent(i)).getTree());
+			}
+			Entry entry = new Entry(revCommit.copy(), revCommit.getCommitTime(), nextSequence++);
+			while (treeWalk.next()) {
+				if (this.differsFromAllParents(treeWalk, parentCount)) {
+					String path = treeWalk.getPathString();
+					this.addEntry(entries, base, path, entry);
+					lines.append(entry.commitId.name()).append(' ').append(entry.commitTime).append(' ').append(path)
+							.append('\n');
+				}
+			}
+		} finally {
+			treeWalk.close();
+		}
+	}
+
+	/**
+	 * Check if the current entry of a tree walk differs from every parent tree
+	 * 
+	 * @param treeWalk
+	 *            Walk positioned at the entry, the first tree is the commit
+	 * @param parentCount
+	 *            Number of parent trees
+	 * @return True if the entry differs from all parents
+	 */
+	protected boolean differsFromAllParents(TreeWalk treeWalk, int parentCount) {
+		for (int i = 1; i <= parentCount; i++) {
+			if (treeWalk.idEqual(0, i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Drop commits that are reachable from the indexed head but not from the
+	 * new head, then rewrite the entry file
+	 * 
+	 * @param revWalk
+	 *            Walk to use
+	 * @param indexedCommit
+	 *            Last indexed commit
+	 * @param headCommit
+	 *            New HEAD, an ancestor of the indexed commit
+	 * @throws IOException
+	 *             Throws if an IO exception occurs
+	 */
+	protected void dropCommits(RevWalk revWalk, RevCommit indexedCommit, RevCommit headCommit) throws IOException {
+		revWalk.reset();
+		revWalk.markStart(indexedCommit);
+		revWalk.markUninteresting(headCommit);
+		Set<ObjectId> dropped = new HashSet<ObjectId>();
+		for (RevCommit revCommit = revWalk.next(); revCommit != null; revCommit = revWalk.next()) {
+			dropped.add(revCommit.copy());
+		}
+		TreeMap<String, List<Entry>> entries = new TreeMap<String, List<Entry>>();
+		Map<Entry, List<String>> kept = new TreeMap<Entry, List<String>>(Entry.OLDEST_FIRST);
+		for (Map.Entry<String, List<Entry>> pathEntries : snapshot.flatten().entrySet()) {
+			for (Entry entry : pathEntries.getValue()) {
+				if (!dropped.contains(entry.commitId)) {
+					this.addEntry(entries, null, pathEntries.getKey(), entry);
+					List<String> paths = kept.get(entry);
+					if (paths == null) {
+						paths = new ArrayList<String>();
+						kept.put(entry, paths);
+					}
+					paths.add(pathEntries.getKey());
+				}
+			}
+		}
+		// Rewrite the lines of each commit together, in sequence order
+		StringBuilder lines = new StringBuilder();
+		for (Map.Entry<Entry, List<String>> commitPaths : kept.entrySet()) {
+			Entry entry = commitPaths.getKey();
+			for (String path : commitPaths.getValue()) {
+				lines.append(entry.commitId.name()).append(' ').append(entry.commitTime).append(' ').append(path)
+						.append('\n');
+			}
+		}
+		this.truncate(0);
+		this.append(lines.toString());
+		this.writeHead(headCommit, indexedLength);
+		snapshot = new Snapshot(headCommit.copy(), entries);
+	}
+
+	/**
+	 * Add an entry to the entries of a new snapshot. The entry list of the
+	 * path is copied, since it may be shared with the published snapshot.
+	 * 
+	 * @param entries
+	 *            Entries of the new snapshot
+	 * @param base
+	 *            Snapshot the new one falls back to, null if none
+	 * @param path
+	 *            Path of the file
+	 * @param entry
+	 *            Commit that changed the file
+	 */
+	protected void addEntry(TreeMap<String, List<Entry>> entries, Snapshot base, String path, Entry entry) {
+		List<Entry> pathEntries = entries.get(path);
+		if (pathEntries == null && base != null) {
+			pathEntries = base.getEntries(path);
+		}
+		List<Entry> newEntries = new ArrayList<Entry>(pathEntries == null ? 2 : pathEntries.size() + 1);
+		if (pathEntries != null) {
+			newEntries.addAll(pathEntries);
+		}
+		newEntries.add(entry);
+		entries.put(path, newEntries);
+	}
+
+	/**
+	 * Clear the in memory index
+	 */
+	protected void reset() {
+		snapshot = new Snapshot(null, new TreeMap<String, List<Entry>>());
+		indexedLength = 0;
+		nextSequence = 0;
+	}
+
+	/**
+	 * Check if the files still hold what this index last read or wrote
+	 * 
+	 * @return True if the head file records the indexed commit and length
+	 * @throws IOException
+	 *             Throws if an IO exception occurs
+	 */
+	protected boolean isCurrent() throws IOException {
+		if (!headFile.isFile()) {
+			return false;
+		}
+		String[] head = this.readHead();
+		ObjectId indexedHead = snapshot.head;
+		return head.length == 2 && (indexedHead == null ? ObjectId.zeroId() : indexedHead).name().equals(head[0])
+				&& String.valueOf(indexedLength).equals(head[1]);
+	}
+
+	/**
+	 * Read the fields of the head file
+	 * 
+	 * @return Id of the indexed commit and valid length of the entry file
+	 * @throws IOException
+	 *             Throws if an IO exception occurs
+	 */
+	protected String[] readHead() throws IOException {
+		return new String(Files.readAllBytes(headFile.toPath()), CHARSET).trim().split(" ");
+	}
+
+	/**
+	 * Lock the index files against other processes and other indexes of the
+	 * same files in this process
+	 * 
+	 * @return Lock of the lock file
+	 * @throws IOException
+	 *             Throws if an IO exception occurs
+	 */
+	protected FileLock lock() throws IOException {
+		// File locks are held by the process, threads are kept apart first
+		processLock.lock();
+		FileChannel channel = null;
+		try {
+			channel = new RandomAccessFile(lockFile, "rw").getChannel();
+			return channel.lock();
+		} catch (IOException e) {
+			if (channel != null) {
+				channel.close();
+			}
+			processLock.unlock();
+			throw e;
+		}
+	}
+
+	/**
+	 * Release a lock taken by lock
+	 * 
+	 * @param fileLock
+	 *            Lock of the lock file
+	 * @throws IOException
+	 *             Throws if an IO exception occurs
+	 */
+	protected void unlock(FileLock fileLock) throws IOException {
+		try {
+			fileLock.channel().close();
+		} finally {
+			processLock.unlock();
+		}
+	}
+
+	/**
+	 * Get the lock shared by all indexes of a lock file in this process
+	 * 
+	 * @param lockFile
+	 *            Lock file of the index
+	 * @return Lock of the file
+	 */
+	protected static ReentrantLock getProcessLock(File lockFile) {
+		String key = lockFile.getAbsolutePath();
+		synchronized (PROCESS_LOCKS) {
+			ReentrantLock lock = PROCESS_LOCKS.get(key);
+			if (lock == null) {
+				lock = new ReentrantLock();
+				PROCESS_LOCKS.put(key, lock);
+			}
+			return lock;
+		}
+	}
+
+	/**
+	 * Append lines to the entry file
+	 * 
+	 * @param lines
+	 *            Lines to append
+	 * @throws IOException
+	 *             Throws if an IO exception occurs
+	 */
+	protected void append(String lines) throws IOException {
+		if (lines.isEmpty()) {
+			return;
+		}
+		byte[] bytes = lines.getBytes(CHARSET);
+		Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(entryFile, true), CHARSET));
+		try {
+			writer.write(lines);
+		} finally {
+			writer.close();
+		}
+		indexedLength += bytes.length;
+	}
+
+	/**
+	 * Truncate the entry file to the given length
+	 * 
+	 * @param length
+	 *            Length to keep
+	 * @throws IOException
+	 *             Throws if an IO exception occurs
+	 */
+	protected void truncate(long length) throws IOException {
+		RandomAccessFile file = new RandomAccessFile(entryFile, "rw");
+		try {
+			file.setLength(length);
+		} finally {
+			file.close();
+		}
+		indexedLength = length;
+	}
+
+	/**
+	 * Atomically replace the head file
+	 * 
+	 * @param head
+	 *            Last indexed commit, null if nothing is indexed
+	 * @param length
+	 *            Valid length of the entry file
+	 * @throws IOException
+	 *             Throws if an IO exception occurs
+	 */
+	protected void writeHead(ObjectId head, long length) throws IOException {
+		if (!entryFile.exists()) {
+			entryFile.createNewFile();
+		}
+		File tempFile = new File(headFile.getPath() + CommonConstants.TEMP_FILE_SUFFIX);
+		String content = (head == null ? ObjectId.zeroId() : head).name() + ' ' + length + '\n';
+		Files.write(tempFile.toPath(), content.getBytes(CHARSET));
+		Files.move(tempFile.toPath(), headFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Immutable state of the index at an indexed commit. A snapshot holds the
+	 * entries of the paths changed since its base snapshot and falls back to
+	 * the base for the other paths.
+	 */
+	public static class Snapshot {
+
+		protected final ObjectId head;
+		protected final TreeMap<String, List<Entry>> entries;
+		protected final Snapshot base;
+		protected final int depth;
+
+		protected Snapshot(ObjectId head, TreeMap<String, List<Entry>> entries) {
+			this(head, entries, null);
+		}
+
+		protected Snapshot(ObjectId head, TreeMap<String, List<Entry>> entries, Snapshot base) {
+			this.head = head;
+			this.entries = entries;
+			this.base = base;
+			this.depth = base == null ? 0 : base.depth + 1;
+		}
+
+		/**
+		 * Get the entries of exactly the given path
+		 * 
+		 * @param path
+		 *            Path of a file
+		 * @return Commits that changed the file oldest first, null if none
+		 */
+		protected List<Entry> getEntries(String path) {
+			for (Snapshot snapshot = this; snapshot != null; snapshot = snapshot.base) {
+				List<Entry> pathEntries = snapshot.entries.get(path);
+				if (pathEntries != null) {
+					return pathEntries;
+				}
+			}
+			return null;
+		}
+
+		/**
+		 * Collect the entries of a range of paths, newer snapshots overriding
+		 * their bases
+		 * 
+		 * @param target
+		 *            Map to put the entries to
+		 * @param from
+		 *            First path of the range, null for all paths
+		 * @param to
+		 *            Path after the range
+		 */
+		protected void collect(Map<String, List<Entry>> target, String from, String to) {
+			if (base != null) {
+				base.collect(target, from, to);
+			}
+			target.putAll(from == null ? entries : entries.subMap(from, to));
+		}
+
+		/**
+		 * Merge the snapshot with its bases
+		 * 
+		 * @return Entries of all paths
+		 */
+		protected TreeMap<String, List<Entry>> flatten() {
+			TreeMap<String, List<Entry>> all = new TreeMap<String, List<Entry>>();
+			this.collect(all, null, null);
+			return all;
+		}
+
+		/**
+		 * Get the commits that changed the given path, or any file under it if
+		 * the path is a directory, newest first
+		 * 
+		 * @param path
+		 *            Path of a file or directory
+		 * @return Commits that changed the path
+		 */
+		public List<Entry> getHistory(String path) {
+			List<Entry> history = new ArrayList<Entry>();
+			List<Entry> exact = this.getEntries(path);
+			if (exact != null) {
+				history.addAll(exact);
+			}
+			Map<String, List<Entry>> children = new TreeMap<String, List<Entry>>();
+			this.collect(children, path + '/', path + (char) ('/' + 1));
+			if (!children.isEmpty()) {
+				Set<ObjectId> seen = new HashSet<ObjectId>();
+				for (Entry entry : history) {
+					seen.add(entry.commitId);
+				}
+				for (List<Entry> childEntries : children.values()) {
+					for (Entry entry : childEntries) {
+						if (seen.add(entry.commitId)) {
+							history.add(entry);
+						}
+					}
+				}
+			}
+			Collections.sort(history, Entry.NEWEST_FIRST);
+			return history;
+		}
+
+		/**
+		 * Get the commit the snapshot is indexed up to
+		 * 
+		 * @return Id of the commit, null if nothing is indexed
+		 */
+		public ObjectId getHead() {
+			return head;
+		}
+
+	}
+
+	/**
+	 * A commit that changed a path. Commits with the same time are ordered by
+	 * their sequence, which grows from parents to children.
+	 */
+	public static class Entry {
+
+		protected static final Comparator<Entry> NEWEST_FIRST = new Comparator<Entry>() {
+			public int compare(Entry first, Entry second) {
+				if (first.commitTime != second.commitTime) {
+					return first.commitTime < second.commitTime ? 1 : -1;
+				}
+				return first.sequence < second.sequence ? 1 : (first.sequence == second.sequence ? 0 : -1);
+			}
+		};
+
+		protected static final Comparator<Entry> OLDEST_FIRST = new Comparator<Entry>() {
+			public int compare(Entry first, Entry second) {
+				return first.sequence < second.sequence ? -1 : (first.sequence == second.sequence ? 0 : 1);
+			}
+		};
+
+		protected final ObjectId commitId;
+		protected final int commitTime;
+		protected final int sequence;
+
+		public Entry(ObjectId commitId, int commitTime, int sequence) {
+			this.commitId = commitId;
+			this.commitTime = commitTime;
+			this.sequence = sequence;
+		}
+
+		public ObjectId getCommitId() {
+			return commitId;
+		}
+
+		public int getCommitTime() {
+			return commitTime;
+		}
+
+	}
+
+}
@@ -0,0 +1,126 @@
+package com.btasdemir.gitversioning.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.btasdemir.gitversioning.constant.CommonConstants;
+
+/**
+ * Default metrics of a versioner, kept in memory and exposed through JMX.
+ * 
+ * Each operation gets an OperationStatistics MBean named
+ * com.btasdemir.gitversioning:type=GitVersioner,name=[name],operation=[operation]
+ * and the object store counters are exposed by this class itself under
+ * type=GitVersioner,name=[name],operation=objectStore once registerMBeans is
+ * called.
+ * 
+ * @author bahadir.tasdemir@hotmail.com.tr
+ */
+public class DefaultVersionerMetrics implements VersionerMetrics, DefaultVersionerMetricsMBean {
+
+	protected final Map<Operation, OperationStatistics> statistics = new EnumMap<Operation, OperationStatistics>(
+			Operation.class);
+	protected final AtomicLong bytesRead = new AtomicLong();
+	protected final AtomicLong objectsInserted = new AtomicLong();
+	protected final List<ObjectName> registeredNames = new ArrayList<ObjectName>();
+	protected static final Logger logger = LogManager.getLogger(DefaultVersionerMetrics.class);
+
+	public DefaultVersionerMetrics() {
+		for (Operation operation : Operation.values()) {
+			statistics.put(operation, new OperationStatistics());
+		}
+	}
+
+	public void started(Operation operation) {
+		statistics.get(operation).started();
+	}
+
+	public void completed(Operation operation, long elapsedNanos, boolean failed) {
+		statistics.get(operation).completed(elapsedNanos, failed);
+	}
+
+	public void bytesRead(long bytes) {
+		bytesRead.addAndGet(bytes);
+	}
+
+	public void objectsInserted(long objects) {
+		objectsInserted.addAndGet(objects);
+	}
+
+	/**
+	 * Get statistics of an operation
+	 * 
+	 * @param operation
+	 *            Demanded operation
+	 * @return Statistics of the operation
+	 */
+	public OperationStatistics getStatistics(Operation operation) {
+		return statistics.get(operation);
+	}
+
+	public long getBytesRead() {
+		return bytesRead.get();
+	}
+
+	public long getObjectsInserted() {
+		return objectsInserted.get();
+	}
+
+	/**
+	 * Register the MBeans to the platform MBean server. Registering again
+	 * replaces the earlier registration.
+	 * 
+	 * @param name
+	 *            Name of the versioner in the object names, e.g. the local path
+	 * @throws JMException
+	 *             Throws if the MBeans cannot be registered
+	 */
+	public synchronized void registerMBeans(String name) throws JMException {
+		this.unregisterMBeans();
+		MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+		for (Map.Entry<Operation, OperationStatistics> entry : statistics.entrySet()) {
+			this.register(mBeanServer, this.toObjectName(name, entry.getKey().getMetricName()), entry.getValue());
+		}
+		this.register(mBeanServer, this.toObjectName(name, CommonConstants.METRICS_OBJECT_STORE), this);
+	}
+
+	/**
+	 * Remove the registered MBeans from the platform MBean server
+	 */
+	public synchronized void unregisterMBeans() {
+		MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+		for (ObjectName objectName : registeredNames) {
+			try {
+				mBeanServer.unregisterMBean(objectName);
+			} catch (JMException e) {
+				logger.error(e.getMessage());
+			}
+		}
+		registeredNames.clear();
+	}
+
+	protected void register(MBeanServer mBeanServer, ObjectName objectName, Object mBean) throws JMException {
+		if (mBeanServer.isRegistered(objectName)) {
+			mBeanServer.unregisterMBean(objectName);
+		}
+		mBeanServer.registerMBean(mBean, objectName);
+		registeredNames.add(objectName);
+	}
+
+	protected ObjectName toObjectName(String name, String operation) throws JMException {
+		return new ObjectName(CommonConstants.METRICS_DOMAIN + ":type=GitVersioner,name=" + ObjectName.quote(name)
+				+ ",operation=" + operation);
+	}
+
+}
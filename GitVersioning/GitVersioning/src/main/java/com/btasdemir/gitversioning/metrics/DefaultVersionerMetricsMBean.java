@@ -0,0 +1,14 @@
+package com.btasdemir.gitversioning.metrics;
+
+/**
+ * JMX view of the object store statistics of a versioner
+ * 
+ * @author bahadir.tasdemir@hotmail.com.tr
+ */
+public interface DefaultVersionerMetricsMBean {
+
+	long getBytesRead();
+
+	long getObjectsInserted();
+
+}
@@ -0,0 +1,106 @@
+package com.btasdemir.gitversioning.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock free histogram of latencies in microseconds.
+ * 
+ * Values below 16 have their own buckets, larger values are grouped into 8
+ * buckets per power of two, so a percentile is accurate within 12.5% while
+ * the histogram has a fixed size of a few kilobytes.
+ * 
+ * @author bahadir.tasdemir@hotmail.com.tr
+ */
+public class LatencyHistogram {
+
+	protected static final int LINEAR_BUCKETS = 16;
+	protected static final int SUB_BUCKET_BITS = 3;
+	protected static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	protected static final int FIRST_EXPONENT = 4;
+	protected static final int BUCKET_COUNT = LINEAR_BUCKETS + (64 - FIRST_EXPONENT) * SUB_BUCKETS;
+
+	protected final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+	protected final AtomicLong count = new AtomicLong();
+	protected final AtomicLong sum = new AtomicLong();
+	protected final AtomicLong max = new AtomicLong();
+
+	/**
+	 * Record a latency
+	 * 
+	 * @param micros
+	 *            Latency in microseconds
+	 */
+	public void record(long micros) {
+		long value = Math.max(micros, 0L);
+		counts.incrementAndGet(bucketOf(value));
+		count.incrementAndGet();
+		sum.addAndGet(value);
+		long currentMax = max.get();
+		while (value > currentMax && !max.compareAndSet(currentMax, value)) {
+			currentMax = max.get();
+		}
+	}
+
+	/**
+	 * Get the latency that the given share of the recorded latencies do not
+	 * exceed
+	 * 
+	 * @param percentile
+	 *            Percentile between 0 and 100
+	 * @return Latency in microseconds, 0 if nothing is recorded
+	 */
+	public long getPercentile(double percentile) {
+		long total = count.get();
+		if (total == 0) {
+			return 0L;
+		}
+		long rank = Math.max((long) Math.ceil(total * percentile / 100d), 1L);
+		long seen = 0L;
+		for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+			seen += counts.get(bucket);
+			if (seen >= rank) {
+				return Math.min(upperBoundOf(bucket), max.get());
+			}
+		}
+		return max.get();
+	}
+
+	public long getCount() {
+		return count.get();
+	}
+
+	public long getMax() {
+		return max.get();
+	}
+
+	/**
+	 * Get average of the recorded latencies
+	 * 
+	 * @return Mean latency in microseconds
+	 */
+	public long getMean() {
+		long total = count.get();
+		return total == 0 ? 0L : sum.get() / total;
+	}
+
+	protected static int bucketOf(long value) {
+		if (value < LINEAR_BUCKETS) {
+			return (int) value;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+		return LINEAR_BUCKETS + (exponent - FIRST_EXPONENT) * SUB_BUCKETS + subBucket;
+	}
+
+	protected static long upperBoundOf(int bucket) {
+		if (bucket < LINEAR_BUCKETS) {
+			return bucket;
+		}
+		int exponent = (bucket - LINEAR_BUCKETS) / SUB_BUCKETS + FIRST_EXPONENT;
+		int subBucket = (bucket - LINEAR_BUCKETS) % SUB_BUCKETS;
+		long width = 1L << (exponent - SUB_BUCKET_BITS);
+		return (SUB_BUCKETS + subBucket) * width + width - 1;
+	}
+
+}
@@ -0,0 +1,39 @@
+package com.btasdemir.gitversioning.metrics;
+
+import java.util.Locale;
+
+/**
+ * Operations of the GIT versioner that are measured
+ * 
+ * @author bahadir.tasdemir@hotmail.com.tr
+ */
+public enum Operation {
+
+	ADD(true), REMOVE(true), COMMIT(true), VERSION_CONTENT(true), PUSH(false), PULL(true),
+	LIST_VERSIONS(false), GET_REVISION_FILE(false), DIFF(false), EXPORT(false);
+
+	private final boolean write;
+
+	private Operation(boolean write) {
+		this.write = write;
+	}
+
+	/**
+	 * Check if the operation changes the local repository
+	 * 
+	 * @return True for operations that write objects, the index or the branch
+	 */
+	public boolean isWrite() {
+		return write;
+	}
+
+	/**
+	 * Get the name of the operation as used in JMX object names
+	 * 
+	 * @return Lower case name
+	 */
+	public String getMetricName() {
+		return this.name().toLowerCase(Locale.ROOT);
+	}
+
+}
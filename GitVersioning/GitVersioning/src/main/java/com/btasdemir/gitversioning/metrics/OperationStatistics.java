@@ -0,0 +1,68 @@
+package com.btasdemir.gitversioning.metrics;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters, in flight gauge and latency histogram of one versioner operation
+ * 
+ * @author bahadir.tasdemir@hotmail.com.tr
+ */
+public class OperationStatistics implements OperationStatisticsMBean {
+
+	protected final LatencyHistogram latencyHistogram = new LatencyHistogram();
+	protected final AtomicLong errorCount = new AtomicLong();
+	protected final AtomicInteger inFlight = new AtomicInteger();
+
+	/**
+	 * Mark an operation as started
+	 */
+	public void started() {
+		inFlight.incrementAndGet();
+	}
+
+	/**
+	 * Record an ended operation
+	 * 
+	 * @param elapsedNanos
+	 *            Duration of the operation
+	 * @param failed
+	 *            True if the operation failed
+	 */
+	public void completed(long elapsedNanos, boolean failed) {
+		inFlight.decrementAndGet();
+		latencyHistogram.record(elapsedNanos / 1000L);
+		if (failed) {
+			errorCount.incrementAndGet();
+		}
+	}
+
+	public long getCount() {
+		return latencyHistogram.getCount();
+	}
+
+	public long getErrorCount() {
+		return errorCount.get();
+	}
+
+	public int getInFlight() {
+		return inFlight.get();
+	}
+
+	public long getMeanMicros() {
+		return latencyHistogram.getMean();
+	}
+
+	public long getP50Micros() {
+		return latencyHistogram.getPercentile(50d);
+	}
+
+	public long getP99Micros() {
+		return latencyHistogram.getPercentile(99d);
+	}
+
+	public long getMaxMicros() {
+		return latencyHistogram.getMax();
+	}
+
+}
@@ -0,0 +1,24 @@
+package com.btasdemir.gitversioning.metrics;
+
+/**
+ * JMX view of the statistics of one versioner operation
+ * 
+ * @author bahadir.tasdemir@hotmail.com.tr
+ */
+public interface OperationStatisticsMBean {
+
+	long getCount();
+
+	long getErrorCount();
+
+	int getInFlight();
+
+	long getMeanMicros();
+
+	long getP50Micros();
+
+	long getP99Micros();
+
+	long getMaxMicros();
+
+}
@@ -0,0 +1,52 @@
+package com.btasdemir.gitversioning.metrics;
+
+/**
+ * Receives measurements of the GIT versioner operations.
+ * 
+ * Implementations are called on the threads that run the operations, so they
+ * must be thread safe and cheap. The default implementation is
+ * DefaultVersionerMetrics, other monitoring systems can be plugged in by
+ * setting another implementation to the versioner.
+ * 
+ * @author bahadir.tasdemir@hotmail.com.tr
+ */
+public interface VersionerMetrics {
+
+	/**
+	 * Called when an operation starts
+	 * 
+	 * @param operation
+	 *            Started operation
+	 */
+	void started(Operation operation);
+
+	/**
+	 * Called when an operation ends
+	 * 
+	 * @param operation
+	 *            Ended operation
+	 * @param elapsedNanos
+	 *            Duration of the operation
+	 * @param failed
+	 *            True if the operation threw an exception
+	 */
+	void completed(Operation operation, long elapsedNanos, boolean failed);
+
+	/**
+	 * Called when content is read from the object store
+	 * 
+	 * @param bytes
+	 *            Number of bytes read
+	 */
+	void bytesRead(long bytes);
+
+	/**
+	 * Called when objects are written to the object store: a blob for each
+	 * staged file and one object for each commit
+	 * 
+	 * @param objects
+	 *            Number of objects written
+	 */
+	void objectsInserted(long objects);
+
+}
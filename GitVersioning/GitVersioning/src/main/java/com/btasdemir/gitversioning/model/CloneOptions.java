@@ -0,0 +1,58 @@
+package com.btasdemir.gitversioning.model;
+
+/**
+ * Options of cloning the local repository from the remote.
+ * 
+ * A single branch clone fetches only the history of one branch, now and on
+ * later pulls. A clone without checkout leaves the working tree empty and
+ * fills the index from the tree of HEAD, so commits keep the files that are
+ * not written back; revisions are then read from the object store.
+ * 
+ * @author bahadir.tasdemir@hotmail.com.tr
+ */
+public class CloneOptions {
+
+	protected String branch;
+	protected boolean singleBranch;
+	protected boolean noCheckout;
+
+	public CloneOptions() {
+	}
+
+	public CloneOptions(String branch, boolean singleBranch, boolean noCheckout) {
+		this.branch = branch;
+		this.singleBranch = singleBranch;
+		this.noCheckout = noCheckout;
+	}
+
+	/**
+	 * Get the branch to clone and check out
+	 * 
+	 * @return Short name of the branch, null for the default branch of the
+	 *         remote
+	 */
+	public String getBranch() {
+		return this.branch;
+	}
+
+	public void setBranch(String branch) {
+		this.branch = branch;
+	}
+
+	public boolean isSingleBranch() {
+		return this.singleBranch;
+	}
+
+	public void setSingleBranch(boolean singleBranch) {
+		this.singleBranch = singleBranch;
+	}
+
+	public boolean isNoCheckout() {
+		return this.noCheckout;
+	}
+
+	public void setNoCheckout(boolean noCheckout) {
+		this.noCheckout = noCheckout;
+	}
+
+}
@@ -0,0 +1,110 @@
+package com.btasdemir.gitversioning.model;
+
+/**
+ * Object store statistics of a local repository together with the state of
+ * its background maintenance.
+ * 
+ * @author bahadir.tasdemir@hotmail.com.tr
+ */
+public class RepositoryStatistics {
+
+	protected long looseObjectCount;
+	protected long looseObjectSize;
+	protected long packFileCount;
+	protected long packedObjectCount;
+	protected long packedObjectSize;
+	protected long looseRefCount;
+	protected long packedRefCount;
+	protected long gcCount;
+	protected long lastGcTime;
+	protected long lastGcDurationMillis;
+
+	public RepositoryStatistics() {
+	}
+
+	public long getLooseObjectCount() {
+		return this.looseObjectCount;
+	}
+
+	public void setLooseObjectCount(long looseObjectCount) {
+		this.looseObjectCount = looseObjectCount;
+	}
+
+	public long getLooseObjectSize() {
+		return this.looseObjectSize;
+	}
+
+	public void setLooseObjectSize(long looseObjectSize) {
+		this.looseObjectSize = looseObjectSize;
+	}
+
+	public long getPackFileCount() {
+		return this.packFileCount;
+	}
+
+	public void setPackFileCount(long packFileCount) {
+		this.packFileCount = packFileCount;
+	}
+
+	public long getPackedObjectCount() {
+		return this.packedObjectCount;
+	}
+
+	public void setPackedObjectCount(long packedObjectCount) {
+		this.packedObjectCount = packedObjectCount;
+	}
+
+	public long getPackedObjectSize() {
+		return this.packedObjectSize;
+	}
+
+	public void setPackedObjectSize(long packedObjectSize) {
+		this.packedObjectSize = packedObjectSize;
+	}
+
+	public long getLooseRefCount() {
+		return this.looseRefCount;
+	}
+
+	public void setLooseRefCount(long looseRefCount) {
+		this.looseRefCount = looseRefCount;
+	}
+
+	public long getPackedRefCount() {
+		return this.packedRefCount;
+	}
+
+	public void setPackedRefCount(long packedRefCount) {
+		this.packedRefCount = packedRefCount;
+	}
+
+	public long getGcCount() {
+		return this.gcCount;
+	}
+
+	public void setGcCount(long gcCount) {
+		this.gcCount = gcCount;
+	}
+
+	/**
+	 * Get the time the last garbage collection ended
+	 * 
+	 * @return Time in milliseconds, zero if never collected
+	 */
+	public long getLastGcTime() {
+		return this.lastGcTime;
+	}
+
+	public void setLastGcTime(long lastGcTime) {
+		this.lastGcTime = lastGcTime;
+	}
+
+	public long getLastGcDurationMillis() {
+		return this.lastGcDurationMillis;
+	}
+
+	public void setLastGcDurationMillis(long lastGcDurationMillis) {
+		this.lastGcDurationMillis = lastGcDurationMillis;
+	}
+
+}
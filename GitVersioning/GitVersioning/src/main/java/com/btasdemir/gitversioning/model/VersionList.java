@@ -0,0 +1,183 @@
+package com.btasdemir.gitversioning.model;
+
+import java.text.SimpleDateFormat;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+
+import com.btasdemir.gitversioning.constant.CommonConstants;
+
+/**
+ * Compact list of versions of a file.
+ * 
+ * Versions are kept in columns of primitive arrays: commit times as epoch
+ * seconds, commit ids as raw 20 byte values and committer names as indexes
+ * into a pool of distinct names. Strings are only created when they are
+ * asked for, so a long history costs a few bytes per version instead of
+ * several objects. The list can still be used as a list of Version models,
+ * each get creates a new Version view of the stored values.
+ * 
+ * @author bahadir.tasdemir@hotmail.com.tr
+ */
+public class VersionList extends AbstractList<Version> {
+
+	protected static final int DEFAULT_CAPACITY = 16;
+	protected static final ThreadLocal<SimpleDateFormat> DATE_FORMAT = new ThreadLocal<SimpleDateFormat>() {
+		@Override
+		protected SimpleDateFormat initialValue() {
+			return new SimpleDateFormat(CommonConstants.DATE_TIME_PATTERN);
+		}
+	};
+
+	protected int size;
+	protected long[] commitTimes;
+	protected byte[] commitIds;
+	protected int[] commiterIndexes;
+	protected final List<String> commiterNames = new ArrayList<String>();
+	protected final Map<String, Integer> commiterPositions = new HashMap<String, Integer>();
+
+	public VersionList() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	public VersionList(int capacity) {
+		capacity = Math.max(capacity, 1);
+		this.commitTimes = new long[capacity];
+		this.commitIds = new byte[capacity * Constants.OBJECT_ID_LENGTH];
+		this.commiterIndexes = new int[capacity];
+	}
+
+	/**
+	 * Append a version
+	 * 
+	 * @param commiterName
+	 *            Name of the committer, stored once per distinct name
+	 * @param commitTime
+	 *            Commit time in seconds since the epoch
+	 * @param commitId
+	 *            Id of the commit
+	 */
+	public void add(String commiterName, long commitTime, AnyObjectId commitId) {
+		if (size == commitTimes.length) {
+			int capacity = size * 2;
+			commitTimes = Arrays.copyOf(commitTimes, capacity);
+			commitIds = Arrays.copyOf(commitIds, capacity * Constants.OBJECT_ID_LENGTH);
+			commiterIndexes = Arrays.copyOf(commiterIndexes, capacity);
+		}
+		Integer position = commiterPositions.get(commiterName);
+		if (position == null) {
+			position = commiterNames.size();
+			commiterNames.add(commiterName);
+			commiterPositions.put(commiterName, position);
+		}
+		commitTimes[size] = commitTime;
+		commitId.copyRawTo(commitIds, size * Constants.OBJECT_ID_LENGTH);
+		commiterIndexes[size] = position;
+		modCount++;
+		size++;
+	}
+
+	@Override
+	public boolean add(Version version) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public Version get(int index) {
+		this.checkIndex(index);
+		return new Version(this.getCommiterName(index), this.getCommitDate(index), this.getCommitId(index));
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Get name of the committer of a version
+	 * 
+	 * @param index
+	 *            Position of the version
+	 * @return Shared committer name
+	 */
+	public String getCommiterName(int index) {
+		this.checkIndex(index);
+		return commiterNames.get(commiterIndexes[index]);
+	}
+
+	/**
+	 * Get commit time of a version
+	 * 
+	 * @param index
+	 *            Position of the version
+	 * @return Commit time in seconds since the epoch
+	 */
+	public long getCommitTime(int index) {
+		this.checkIndex(index);
+		return commitTimes[index];
+	}
+
+	/**
+	 * Get formatted commit date of a version
+	 * 
+	 * @param index
+	 *            Position of the version
+	 * @return Commit date in the date time pattern of the system
+	 */
+	public String getCommitDate(int index) {
+		return DATE_FORMAT.get().format(new Date(this.getCommitTime(index) * 1000L));
+	}
+
+	/**
+	 * Get commit id of a version
+	 * 
+	 * @param index
+	 *            Position of the version
+	 * @return Commit id
+	 */
+	public ObjectId getObjectId(int index) {
+		this.checkIndex(index);
+		return ObjectId.fromRaw(commitIds, index * Constants.OBJECT_ID_LENGTH);
+	}
+
+	/**
+	 * Get commit id of a version as hexadecimal text
+	 * 
+	 * @param index
+	 *            Position of the version
+	 * @return Commit id
+	 */
+	public String getCommitId(int index) {
+		return this.getObjectId(index).name();
+	}
+
+	/**
+	 * Get number of distinct committers of the listed versions
+	 * 
+	 * @return Number of distinct committer names
+	 */
+	public int getCommiterCount() {
+		return commiterNames.size();
+	}
+
+	/**
+	 * Check if a position is inside of the list
+	 * 
+	 * @param index
+	 *            Position to check
+	 */
+	protected void checkIndex(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException(String.valueOf(index));
+		}
+	}
+
+}
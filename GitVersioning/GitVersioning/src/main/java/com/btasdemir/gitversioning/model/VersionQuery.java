@@ -0,0 +1,94 @@
+package com.btasdemir.gitversioning.model;
+
+import java.util.Date;
+
+/**
+ * Query to list a page of versions of a file.
+ * 
+ * Versions are listed from newest to oldest. A page can be addressed either
+ * by an offset or by a cursor, which is the commit id of the last version of
+ * the previous page.
+ * 
+ * @author bahadir.tasdemir@hotmail.com.tr
+ */
+public class VersionQuery {
+
+	protected int limit = -1;
+	protected int offset;
+	protected String cursor;
+	protected Date since;
+	protected Date until;
+
+	public VersionQuery() {
+	}
+
+	public VersionQuery(int limit) {
+		this.limit = limit;
+	}
+
+	/**
+	 * Get maximum number of versions to list
+	 * 
+	 * @return Maximum number of versions, negative if unlimited
+	 */
+	public int getLimit() {
+		return this.limit;
+	}
+
+	public void setLimit(int limit) {
+		this.limit = limit;
+	}
+
+	/**
+	 * Get number of matching versions to skip before listing
+	 * 
+	 * @return Number of versions to skip
+	 */
+	public int getOffset() {
+		return this.offset;
+	}
+
+	public void setOffset(int offset) {
+		this.offset = offset;
+	}
+
+	/**
+	 * Get commit id of the version that the listing continues after
+	 * 
+	 * @return Commit id, null to start from the newest version
+	 */
+	public String getCursor() {
+		return this.cursor;
+	}
+
+	public void setCursor(String cursor) {
+		this.cursor = cursor;
+	}
+
+	/**
+	 * Get the oldest commit time to list, inclusive
+	 * 
+	 * @return Lower time bound, null if unbounded
+	 */
+	public Date getSince() {
+		return this.since;
+	}
+
+	public void setSince(Date since) {
+		this.since = since;
+	}
+
+	/**
+	 * Get the newest commit time to list, inclusive
+	 * 
+	 * @return Upper time bound, null if unbounded
+	 */
+	public Date getUntil() {
+		return this.until;
+	}
+
+	public void setUntil(Date until) {
+		this.until = until;
+	}
+
+}
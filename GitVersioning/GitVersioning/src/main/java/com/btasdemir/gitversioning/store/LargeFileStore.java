@@ -0,0 +1,284 @@
+package com.btasdemir.gitversioning.store;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.MessageFormat;
+
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.util.RawParseUtils;
+
+import com.btasdemir.gitversioning.constant.CommonConstants;
+import com.btasdemir.gitversioning.constant.MessageConstants;
+
+/**
+ * Content addressed store of large files outside the object database.
+ * 
+ * A large file is streamed into the store once, named by the SHA-256 of its
+ * content, and a small pointer in the format of GIT LFS is versioned in its
+ * place. Packs, version listings and garbage collection then only handle the
+ * pointers. Stored files are never changed, a new version of a file is a new
+ * stored file.
+ * 
+ * @author bahadir.tasdemir@hotmail.com.tr
+ */
+public class LargeFileStore {
+
+	protected final File directory;
+	protected final long thresholdBytes;
+
+	/**
+	 * Open a store
+	 * 
+	 * @param directory
+	 *            Folder of the stored files, created if missing
+	 * @param thresholdBytes
+	 *            Files of this size or larger are stored here
+	 * @throws IOException
+	 *             Throws if the folder cannot be created
+	 */
+	public LargeFileStore(File directory, long thresholdBytes) throws IOException {
+		if (thresholdBytes <= 0) {
+			throw new IllegalArgumentException(CommonConstants.ERROR_EMPTY_ARGUMENT);
+		}
+		this.directory = directory;
+		this.thresholdBytes = thresholdBytes;
+		Files.createDirectories(directory.toPath());
+	}
+
+	/**
+	 * Check if content of the given size belongs to the store
+	 * 
+	 * @param size
+	 *            Size of the content
+	 * @return True if the content must be stored here
+	 */
+	public boolean isLarge(long size) {
+		return size >= thresholdBytes;
+	}
+
+	/**
+	 * Store a file
+	 * 
+	 * @param file
+	 *            File to store
+	 * @return Pointer to the stored content
+	 * @throws IOException
+	 *             Throws if an IO exception occurs
+	 */
+	public Pointer store(File file) throws IOException {
+		InputStream in = new FileInputStream(file);
+		try {
+			return this.store(in, file.length());
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Stream content into the store. The content is hashed while it is
+	 * written to a temporary file, which is renamed to the hash when
+	 * complete.
+	 * 
+	 * @param content
+	 *            Stream of the content, not closed by this method
+	 * @param length
+	 *            Exact number of bytes to read from the stream
+	 * @return Pointer to the stored content
+	 * @throws IOException
+	 *             Throws if an IO exception occurs
+	 */
+	public Pointer store(InputStream content, long length) throws IOException {
+		MessageDigest digest = this.newDigest();
+		File tempFile = File.createTempFile(CommonConstants.LARGE_FILE_TEMP_PREFIX, CommonConstants.TEMP_FILE_SUFFIX,
+				directory);
+		try {
+			OutputStream out = new FileOutputStream(tempFile);
+			try {
+				byte[] buffer = new byte[CommonConstants.LARGE_FILE_BUFFER_SIZE];
+				for (long remaining = length; remaining > 0;) {
+					int read = content.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+					if (read < 0) {
+						throw new EOFException();
+					}
+					digest.update(buffer, 0, read);
+					out.write(buffer, 0, read);
+					remaining -= read;
+				}
+			} finally {
+				out.close();
+			}
+			Pointer pointer = new Pointer(this.toHex(digest.digest()), length);
+			File file = this.getFile(pointer.getOid());
+			synchronized (this) {
+				if (!file.isFile()) {
+					Files.createDirectories(file.getParentFile().toPath());
+					tempFile.setReadOnly();
+					Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+				}
+			}
+			return pointer;
+		} finally {
+			if (tempFile.exists()) {
+				tempFile.setWritable(true);
+				tempFile.delete();
+			}
+		}
+	}
+
+	/**
+	 * Compute the pointer that storing a file would version, without storing
+	 * the file
+	 * 
+	 * @param file
+	 *            File to hash
+	 * @return Pointer to the content of the file
+	 * @throws IOException
+	 *             Throws if an IO exception occurs
+	 */
+	public Pointer pointerFor(File file) throws IOException {
+		MessageDigest digest = this.newDigest();
+		long size = 0;
+		InputStream in = new FileInputStream(file);
+		try {
+			byte[] buffer = new byte[CommonConstants.LARGE_FILE_BUFFER_SIZE];
+			for (int read = in.read(buffer); read >= 0; read = in.read(buffer)) {
+				digest.update(buffer, 0, read);
+				size += read;
+			}
+		} finally {
+			in.close();
+		}
+		return new Pointer(this.toHex(digest.digest()), size);
+	}
+
+	/**
+	 * Get the stored file of a pointer
+	 * 
+	 * @param pointer
+	 *            Pointer to the content
+	 * @return Stored file
+	 * @throws IOException
+	 *             Throws if the content is not in the store
+	 */
+	public File find(Pointer pointer) throws IOException {
+		File file = this.getFile(pointer.getOid());
+		if (!file.isFile()) {
+			throw new IOException(MessageFormat.format(MessageConstants.ERROR_LARGE_FILE_MISSING, pointer.getOid()));
+		}
+		return file;
+	}
+
+	public long getThresholdBytes() {
+		return thresholdBytes;
+	}
+
+	public File getDirectory() {
+		return directory;
+	}
+
+	/**
+	 * Get the file of a content hash, spread over two folder levels like the
+	 * local store of GIT LFS
+	 * 
+	 * @param oid
+	 *            SHA-256 of the content in hex
+	 * @return File of the content, may not exist
+	 */
+	protected File getFile(String oid) {
+		return new File(new File(new File(directory, oid.substring(0, 2)), oid.substring(2, 4)), oid);
+	}
+
+	protected MessageDigest newDigest() throws IOException {
+		try {
+			return MessageDigest.getInstance(CommonConstants.LARGE_FILE_HASH_ALGORITHM);
+		} catch (NoSuchAlgorithmException e) {
+			throw new IOException(e);
+		}
+	}
+
+	protected String toHex(byte[] hash) {
+		StringBuilder hex = new StringBuilder(hash.length * 2);
+		for (byte b : hash) {
+			hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+		}
+		return hex.toString();
+	}
+
+	/**
+	 * Pointer to a stored file, versioned in place of the file
+	 */
+	public static class Pointer {
+
+		protected final String oid;
+		protected final long size;
+
+		public Pointer(String oid, long size) {
+			this.oid = oid;
+			this.size = size;
+		}
+
+		/**
+		 * Parse the content of a blob as a pointer
+		 * 
+		 * @param content
+		 *            Content of the blob
+		 * @return Pointer, null if the content is not a pointer
+		 */
+		public static Pointer parse(byte[] content) {
+			if (content.length > CommonConstants.LARGE_FILE_MAX_POINTER_SIZE) {
+				return null;
+			}
+			String text = RawParseUtils.decode(content);
+			if (!text.startsWith(CommonConstants.LARGE_FILE_POINTER_VERSION + '\n')) {
+				return null;
+			}
+			String oid = null;
+			long size = -1;
+			for (String line : text.split("\n")) {
+				if (line.startsWith(CommonConstants.LARGE_FILE_POINTER_OID)) {
+					oid = line.substring(CommonConstants.LARGE_FILE_POINTER_OID.length());
+				} else if (line.startsWith(CommonConstants.LARGE_FILE_POINTER_SIZE)) {
+					try {
+						size = Long.parseLong(line.substring(CommonConstants.LARGE_FILE_POINTER_SIZE.length()));
+					} catch (NumberFormatException e) {
+						return null;
+					}
+				}
+			}
+			if (oid == null || !oid.matches(CommonConstants.REGEX_LARGE_FILE_OID) || size < 0) {
+				return null;
+			}
+			return new Pointer(oid, size);
+		}
+
+		/**
+		 * Format the pointer as the content of its blob
+		 * 
+		 * @return Pointer content
+		 */
+		public byte[] toBytes() {
+			return Constants.encode(CommonConstants.LARGE_FILE_POINTER_VERSION + '\n'
+					+ CommonConstants.LARGE_FILE_POINTER_OID + oid + '\n'
+					+ CommonConstants.LARGE_FILE_POINTER_SIZE + size + '\n');
+		}
+
+		public String getOid() {
+			return oid;
+		}
+
+		public long getSize() {
+			return size;
+		}
+
+	}
+
+}
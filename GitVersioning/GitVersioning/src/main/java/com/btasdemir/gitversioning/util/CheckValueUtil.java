@@ -1,5 +1,7 @@
 package com.btasdemir.gitversioning.util;
 
+import java.util.Collection;
+
 import org.eclipse.jgit.util.StringUtils;
 
 import com.btasdemir.gitversioning.constant.CommonConstants;
@@ -43,4 +45,17 @@ public class CheckValueUtil {
 		}
 	}
 
+	/**
+	 * Check if given collection is null or empty, throws
+	 * IllegalArgumentException if so
+	 * 
+	 * @param vals
+	 *            Collection to be checked
+	 */
+	public static void checkCollectionVal(Collection<?> vals) throws IllegalArgumentException {
+		if (vals == null || vals.isEmpty()) {
+			throw new IllegalArgumentException(CommonConstants.ERROR_EMPTY_ARGUMENT);
+		}
+	}
+
 }
@@ -0,0 +1,408 @@
+package com.btasdemir.gitversioning.versioner;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.PathFilterGroup;
+
+import com.btasdemir.gitversioning.constant.CommonConstants;
+import com.btasdemir.gitversioning.constant.MessageConstants;
+import com.btasdemir.gitversioning.store.LargeFileStore;
+
+/**
+ * Versions the files of the local folder automatically when they change.
+ * 
+ * A background thread listens to the file system through a WatchService
+ * instead of polling. Events are collected until the folder stays quiet for
+ * the debounce delay, so a burst of writes to a file becomes one change.
+ * Files whose content hashes to the blob already committed at HEAD are
+ * skipped, and the remaining ones are versioned in batches of one commit
+ * each. Deleted files are not versioned, removing them is left to the
+ * caller. Revision copies written by getRevisionFileById are ignored.
+ * 
+ * @author bahadir.tasdemir@hotmail.com.tr
+ */
+public class AutoVersioner {
+
+	protected final GitVersionerWrapper gitVersionerWrapper;
+	protected final Path rootPath;
+	protected final long debounceMillis;
+	protected final int maxBatchSize;
+	protected final WatchService watchService;
+	protected final Map<WatchKey, Path> watchedDirectories = new HashMap<WatchKey, Path>();
+	protected final Set<String> pendingFiles = new LinkedHashSet<String>();
+	protected final Thread watcherThread;
+	protected volatile boolean closed;
+	protected long lastEventTime;
+	protected long commitCount;
+	protected long versionedCount;
+	protected long skippedCount;
+	protected static final Logger logger = LogManager.getLogger(AutoVersioner.class);
+
+	/**
+	 * Start watching the local folder of the versioner
+	 * 
+	 * @param gitVersionerWrapper
+	 *            Wrapper that versions the changed files
+	 * @param debounceMillis
+	 *            Quiet time after the last event before changes are versioned
+	 * @param maxBatchSize
+	 *            Maximum number of files in one commit
+	 * @throws IOException
+	 *             Throws if the folder cannot be watched
+	 */
+	public AutoVersioner(GitVersionerWrapper gitVersionerWrapper, long debounceMillis, int maxBatchSize)
+			throws IOException {
+		if (debounceMillis < 0 || maxBatchSize <= 0) {
+			throw new IllegalArgumentException(CommonConstants.ERROR_EMPTY_ARGUMENT);
+		}
+		this.gitVersionerWrapper = gitVersionerWrapper;
+		this.rootPath = new File(gitVersionerWrapper.gitVersioner.getLocalPath()).toPath().toAbsolutePath();
+		this.debounceMillis = debounceMillis;
+		this.maxBatchSize = maxBatchSize;
+		this.watchService = FileSystems.getDefault().newWatchService();
+		this.registerTree(rootPath, false);
+		this.watcherThread = new Thread(new Runnable() {
+			public void run() {
+				watch();
+			}
+		}, CommonConstants.AUTO_VERSIONER_THREAD_NAME);
+		this.watcherThread.setDaemon(true);
+		this.watcherThread.start();
+	}
+
+	/**
+	 * Get how many commits are made
+	 * 
+	 * @return Commit count
+	 */
+	public synchronized long getCommitCount() {
+		return commitCount;
+	}
+
+	/**
+	 * Get how many file changes are versioned
+	 * 
+	 * @return Versioned file count
+	 */
+	public synchronized long getVersionedCount() {
+		return versionedCount;
+	}
+
+	/**
+	 * Get how many changed files are skipped since their content equals the
+	 * committed one
+	 * 
+	 * @return Skipped file count
+	 */
+	public synchronized long getSkippedCount() {
+		return skippedCount;
+	}
+
+	/**
+	 * Stop watching. Changes collected so far are versioned before returning.
+	 */
+	public void close() {
+		closed = true;
+		try {
+			watchService.close();
+		} catch (IOException e) {
+			logger.error(e.getMessage());
+		}
+		try {
+			watcherThread.join(CommonConstants.AUTO_VERSIONER_CLOSE_TIMEOUT_MILLIS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		this.flush();
+	}
+
+	/**
+	 * Collect events until the watch service is closed, versioning the
+	 * collected changes whenever the folder stays quiet for the debounce delay
+	 */
+	protected void watch() {
+		try {
+			while (!closed) {
+				WatchKey watchKey;
+				long quietMillis = this.getRemainingQuietMillis();
+				if (quietMillis < 0) {
+					watchKey = watchService.take();
+				} else if (quietMillis == 0) {
+					this.flush();
+					continue;
+				} else {
+					watchKey = watchService.poll(quietMillis, TimeUnit.MILLISECONDS);
+				}
+				if (watchKey != null) {
+					this.collect(watchKey);
+				}
+			}
+		} catch (ClosedWatchServiceException e) {
+			// Closed by close, pending changes are versioned there
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Get the time left until the collected changes are versioned
+	 * 
+	 * @return Milliseconds to wait, negative if there is nothing to version
+	 */
+	protected synchronized long getRemainingQuietMillis() {
+		if (pendingFiles.isEmpty()) {
+			return -1L;
+		}
+		return Math.max(0L, lastEventTime + debounceMillis - System.currentTimeMillis());
+	}
+
+	/**
+	 * Collect the changed files of a watch key
+	 * 
+	 * @param watchKey
+	 *            Signalled key
+	 */
+	protected void collect(WatchKey watchKey) {
+		Path directory = watchedDirectories.get(watchKey);
+		for (WatchEvent<?> watchEvent : watchKey.pollEvents()) {
+			if (watchEvent.kind() == StandardWatchEventKinds.OVERFLOW) {
+				// Events are lost, the whole folder is checked by content
+				this.collectTree(rootPath);
+				continue;
+			}
+			if (directory == null) {
+				continue;
+			}
+			Path path = directory.resolve((Path) watchEvent.context());
+			if (Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+				if (watchEvent.kind() == StandardWatchEventKinds.ENTRY_CREATE) {
+					// Files may be written into the new folder before it is watched
+					this.collectTree(path);
+				}
+			} else if (Files.isRegularFile(path, LinkOption.NOFOLLOW_LINKS)) {
+				this.addPending(path);
+			}
+		}
+		if (!watchKey.reset()) {
+			watchedDirectories.remove(watchKey);
+		}
+	}
+
+	/**
+	 * Watch a folder tree and collect its files as changed
+	 * 
+	 * @param start
+	 *            Root of the tree
+	 */
+	protected void collectTree(Path start) {
+		try {
+			this.registerTree(start, true);
+		} catch (IOException e) {
+			logger.error(e.getMessage());
+		}
+	}
+
+	/**
+	 * Watch every folder of a tree that is not watched yet
+	 * 
+	 * @param start
+	 *            Root of the tree
+	 * @param collectFiles
+	 *            Set true to collect the files found in the tree
+	 * @throws IOException
+	 *             Throws if a folder cannot be watched
+	 */
+	protected void registerTree(Path start, final boolean collectFiles) throws IOException {
+		Files.walkFileTree(start, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult preVisitDirectory(Path directory, BasicFileAttributes attributes)
+					throws IOException {
+				if (isIgnored(toRepositoryPath(directory))) {
+					return FileVisitResult.SKIP_SUBTREE;
+				}
+				if (!watchedDirectories.containsValue(directory)) {
+					watchedDirectories.put(directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+							StandardWatchEventKinds.ENTRY_MODIFY), directory);
+				}
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+				if (collectFiles && attributes.isRegularFile()) {
+					addPending(file);
+				}
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+
+	protected synchronized void addPending(Path path) {
+		String fileName = this.toRepositoryPath(path);
+		if (!this.isIgnored(fileName)) {
+			pendingFiles.add(fileName);
+			lastEventTime = System.currentTimeMillis();
+		}
+	}
+
+	/**
+	 * Check if a path must not be versioned automatically: the GIT folder and
+	 * revision copies, which are named by the commit id
+	 * 
+	 * @param fileName
+	 *            Path inside of the repository
+	 * @return True if the path is ignored
+	 */
+	protected boolean isIgnored(String fileName) {
+		if (fileName.equals(Constants.DOT_GIT) || fileName.startsWith(Constants.DOT_GIT + "/")) {
+			return true;
+		}
+		String name = fileName.substring(fileName.lastIndexOf('/') + 1);
+		int i = name.indexOf(CommonConstants.DOT);
+		return ObjectId.isId(i < 0 ? name : name.substring(0, i));
+	}
+
+	protected String toRepositoryPath(Path path) {
+		return rootPath.relativize(path.toAbsolutePath()).toString().replace(File.separatorChar, '/');
+	}
+
+	/**
+	 * Version the collected files that really changed, in batches
+	 */
+	protected void flush() {
+		List<String> fileNames;
+		synchronized (this) {
+			fileNames = new ArrayList<String>(pendingFiles);
+			pendingFiles.clear();
+		}
+		if (fileNames.isEmpty()) {
+			return;
+		}
+		List<String> changedFiles;
+		try {
+			changedFiles = this.findChangedFiles(fileNames);
+		} catch (IOException e) {
+			logger.error(e.getMessage());
+			return;
+		}
+		synchronized (this) {
+			skippedCount += fileNames.size() - changedFiles.size();
+		}
+		for (int from = 0; from < changedFiles.size(); from += maxBatchSize) {
+			List<String> batch = changedFiles.subList(from, Math.min(from + maxBatchSize, changedFiles.size()));
+			if (gitVersionerWrapper.versionFiles(batch,
+					MessageFormat.format(MessageConstants.AUTO_VERSION_MESSAGE, batch.size()))) {
+				synchronized (this) {
+					commitCount++;
+					versionedCount += batch.size();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Filter the files whose content differs from the blob committed at HEAD.
+	 * Files that the large file store takes are compared by the pointer that
+	 * would be versioned for them.
+	 * 
+	 * @param fileNames
+	 *            Collected files
+	 * @return Files that still exist and have new content
+	 * @throws IOException
+	 *             Throws if an IO exception occurs
+	 */
+	protected List<String> findChangedFiles(List<String> fileNames) throws IOException {
+		GitVersioner gitVersioner = gitVersionerWrapper.gitVersioner;
+		gitVersioner.checkGit();
+		Repository repository = gitVersioner.localRepo;
+		Map<String, ObjectId> committedBlobs = new HashMap<String, ObjectId>();
+		ObjectId head = repository.resolve(CommonConstants.GIT_TERM_HEAD);
+		if (head != null) {
+			RevWalk revWalk = new RevWalk(repository);
+			TreeWalk treeWalk = new TreeWalk(repository);
+			try {
+				treeWalk.addTree(revWalk.parseCommit(head).getTree());
+				treeWalk.setRecursive(true);
+				treeWalk.setFilter(PathFilterGroup.createFromStrings(fileNames));
+				while (treeWalk.next()) {
+					committedBlobs.put(treeWalk.getPathString(), treeWalk.getObjectId(0));
+				}
+			} finally {
+				treeWalk.close();
+				revWalk.close();
+			}
+		}
+		List<String> changedFiles = new ArrayList<String>();
+		ObjectInserter.Formatter formatter = new ObjectInserter.Formatter();
+		LargeFileStore largeFileStore = gitVersioner.getLargeFileStore();
+		for (String fileName : fileNames) {
+			File file = rootPath.resolve(fileName).toFile();
+			if (!file.isFile()) {
+				continue;
+			}
+			ObjectId committedBlob = committedBlobs.get(fileName);
+			if (committedBlob == null || !committedBlob.equals(this.hashFile(formatter, largeFileStore, file))) {
+				changedFiles.add(fileName);
+			}
+		}
+		return changedFiles;
+	}
+
+	/**
+	 * Compute the id of the blob that versioning a file would create
+	 * 
+	 * @param formatter
+	 *            Formatter to compute the id with
+	 * @param largeFileStore
+	 *            Large file store of the versioner, null if disabled
+	 * @param file
+	 *            File to hash
+	 * @return Id of the file content, or of its pointer if the file is large
+	 * @throws IOException
+	 *             Throws if an IO exception occurs
+	 */
+	protected ObjectId hashFile(ObjectInserter.Formatter formatter, LargeFileStore largeFileStore, File file)
+			throws IOException {
+		if (largeFileStore != null && largeFileStore.isLarge(file.length())) {
+			return formatter.idFor(Constants.OBJ_BLOB, largeFileStore.pointerFor(file).toBytes());
+		}
+		InputStream in = new FileInputStream(file);
+		try {
+			return formatter.idFor(Constants.OBJ_BLOB, file.length(), in);
+		} finally {
+			in.close();
+		}
+	}
+
+}
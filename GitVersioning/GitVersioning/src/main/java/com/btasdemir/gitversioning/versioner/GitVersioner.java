@@ -1,29 +1,66 @@
 package com.btasdemir.gitversioning.versioner;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.text.MessageFormat;
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
-import java.util.Date;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.eclipse.jgit.api.AddCommand;
+import org.eclipse.jgit.api.CloneCommand;
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.PullCommand;
 import org.eclipse.jgit.api.PushCommand;
+import org.eclipse.jgit.api.ResetCommand;
 import org.eclipse.jgit.api.RmCommand;
+import org.eclipse.jgit.api.errors.ConcurrentRefUpdateException;
 import org.eclipse.jgit.api.errors.GitAPIException;
 import org.eclipse.jgit.api.errors.NoFilepatternException;
 import org.eclipse.jgit.api.errors.NoHeadException;
+import org.eclipse.jgit.diff.DiffAlgorithm;
+import org.eclipse.jgit.diff.DiffAlgorithm.SupportedAlgorithm;
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.diff.DiffFormatter;
+import org.eclipse.jgit.diff.Edit;
+import org.eclipse.jgit.diff.EditList;
+import org.eclipse.jgit.diff.RawText;
+import org.eclipse.jgit.diff.RawTextComparator;
+import org.eclipse.jgit.dircache.DirCache;
+import org.eclipse.jgit.dircache.DirCacheBuilder;
+import org.eclipse.jgit.dircache.DirCacheEditor;
+import org.eclipse.jgit.dircache.DirCacheEntry;
 import org.eclipse.jgit.internal.storage.file.FileRepository;
+import org.eclipse.jgit.lib.ConfigConstants;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
 import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.ObjectLoader;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.RefUpdate;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.lib.StoredConfig;
 import org.eclipse.jgit.merge.MergeStrategy;
@@ -31,21 +68,45 @@ import org.eclipse.jgit.revwalk.RevCommit;
 import org.eclipse.jgit.revwalk.RevSort;
 import org.eclipse.jgit.revwalk.RevTree;
 import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.revwalk.filter.CommitTimeRevFilter;
+import org.eclipse.jgit.transport.CredentialsProvider;
+import org.eclipse.jgit.transport.RefSpec;
 import org.eclipse.jgit.transport.UsernamePasswordCredentialsProvider;
 import org.eclipse.jgit.treewalk.TreeWalk;
 import org.eclipse.jgit.treewalk.filter.AndTreeFilter;
-import org.eclipse.jgit.treewalk.filter.PathFilter;
 import org.eclipse.jgit.treewalk.filter.PathFilterGroup;
 import org.eclipse.jgit.treewalk.filter.TreeFilter;
 
+import com.btasdemir.gitversioning.cache.DiffCache;
+import com.btasdemir.gitversioning.cache.MaterializationStore;
+import com.btasdemir.gitversioning.cache.RevisionBlobCache;
 import com.btasdemir.gitversioning.constant.CommonConstants;
 import com.btasdemir.gitversioning.constant.MessageConstants;
+import com.btasdemir.gitversioning.index.PathHistoryIndex;
+import com.btasdemir.gitversioning.metrics.DefaultVersionerMetrics;
+import com.btasdemir.gitversioning.metrics.Operation;
+import com.btasdemir.gitversioning.metrics.VersionerMetrics;
+import com.btasdemir.gitversioning.model.CloneOptions;
 import com.btasdemir.gitversioning.model.Version;
+import com.btasdemir.gitversioning.model.VersionList;
+import com.btasdemir.gitversioning.model.VersionQuery;
+import com.btasdemir.gitversioning.store.LargeFileStore;
 import com.btasdemir.gitversioning.util.CheckValueUtil;
 
 /**
  * Main GIT versioner class that applies JGIT library
  * 
+ * Concurrency model: the repository is opened once, lazily, by the first
+ * operation or by init. Operations that change the index, the working tree
+ * or the branch (add, remove, commit, pull and the batch operations) are
+ * serialized by an internal write lock, and writes catch the path history
+ * index up before they release it. Read operations (listing versions and
+ * reading revisions) take no lock and run fully in parallel with each other
+ * and with writes, since they only read immutable objects through their own
+ * revision walks and immutable snapshots of the path history index. Close
+ * must not be called while other operations are running; a closed versioner
+ * reopens the repository on next use.
+ * 
  * @author bahadir.tasdemir@hotmail.com.tr
  */
 public class GitVersioner {
@@ -54,9 +115,24 @@ public class GitVersioner {
 	protected String remotePath;
 	protected String userName;
 	protected String password;
-	protected Git git;
-	protected Repository localRepo;
+	protected volatile Git git;
+	protected volatile Repository localRepo;
 	protected boolean cloneIfRepoDoesNotExist;
+	protected CloneOptions cloneOptions = new CloneOptions();
+	protected CredentialsProvider credentialsProvider;
+	protected volatile RevisionBlobCache blobCache;
+	protected volatile MaterializationStore materializationStore;
+	protected volatile LargeFileStore largeFileStore;
+	protected volatile DiffCache diffCache = new DiffCache(CommonConstants.DEFAULT_DIFF_CACHE_ENTRIES);
+	protected volatile PathHistoryIndex pathIndex;
+	protected volatile boolean pathIndexEnabled = true;
+	protected final Object initLock = new Object();
+	protected final Object pathIndexLock = new Object();
+	protected final ReentrantLock writeLock = new ReentrantLock();
+	protected volatile VersionerMetrics metrics = new DefaultVersionerMetrics();
+	protected volatile long lastWriteTime;
+	protected volatile Future<Void> readiness;
+	protected final Map<String, Long> startupPhaseMillis = new LinkedHashMap<String, Long>();
 	protected static final Logger logger = LogManager.getLogger(GitVersioner.class);
 
 	public GitVersioner(String localPath, String remotePath, String userName, String password,
@@ -67,6 +143,29 @@ public class GitVersioner {
 		this.setLocalPath(localPath);
 		this.remotePath = remotePath;
 		this.cloneIfRepoDoesNotExist = cloneIfRepoDoesNotExist;
+		this.credentialsProvider = new UsernamePasswordCredentialsProvider(StringUtils.defaultString(userName),
+				StringUtils.defaultString(password));
+	}
+
+	/**
+	 * Create a versioner that clones the repository with the given options if
+	 * it does not exist on local
+	 * 
+	 * @param localPath
+	 *            Path of the local repository
+	 * @param remotePath
+	 *            URI of the remote repository
+	 * @param userName
+	 *            User name of the remote
+	 * @param password
+	 *            Password of the remote
+	 * @param cloneOptions
+	 *            Options of the clone
+	 */
+	public GitVersioner(String localPath, String remotePath, String userName, String password,
+			CloneOptions cloneOptions) {
+		this(localPath, remotePath, userName, password, true);
+		this.setCloneOptions(cloneOptions);
 	}
 
 	/**
@@ -78,8 +177,24 @@ public class GitVersioner {
 	 *             Throws if a GIT API exception occurs
 	 */
 	public void init() throws IOException, GitAPIException {
+		synchronized (initLock) {
+			this.initRepository();
+		}
+	}
+
+	/**
+	 * Open, create or clone the repository. GIT variable is published last so
+	 * that other threads see a fully initialized versioner.
+	 * 
+	 * @throws IOException
+	 *             Throws if an IO exception occurs
+	 * @throws GitAPIException
+	 *             Throws if a GIT API exception occurs
+	 */
+	protected void initRepository() throws IOException, GitAPIException {
 		// Check GIT variable if already initialized
 		if (git == null) {
+			long phaseStartTime = System.currentTimeMillis();
 			if (localRepo == null) {
 				// Check if local existing repo is valid
 				if (!isValidLocalRepository(getLocalPath() + CommonConstants.GIT_EXTENSION)) {
@@ -87,6 +202,10 @@ public class GitVersioner {
 					if (cloneIfRepoDoesNotExist) {
 						// Clone from remote repository
 						this.cloneRepo();
+						this.recordStartupPhase(CommonConstants.STARTUP_PHASE_CLONE, phaseStartTime);
+						phaseStartTime = System.currentTimeMillis();
+						this.updatePathIndex();
+						this.recordStartupPhase(CommonConstants.STARTUP_PHASE_INDEX, phaseStartTime);
 						return;
 					} else {
 						// Create on local repository
@@ -101,15 +220,156 @@ public class GitVersioner {
 			if (cloneIfRepoDoesNotExist) {
 				localRepo = setOriginToRepo(localRepo);
 			}
-			git = new Git(localRepo);
+			Git newGit = new Git(localRepo);
+			this.recordStartupPhase(CommonConstants.STARTUP_PHASE_OPEN, phaseStartTime);
 			if (cloneIfRepoDoesNotExist) {
-				this.pull();
+				phaseStartTime = System.currentTimeMillis();
+				this.pull(newGit);
+				this.recordStartupPhase(CommonConstants.STARTUP_PHASE_PULL, phaseStartTime);
 			}
+			// Catch up the path index with commits made since the last run
+			phaseStartTime = System.currentTimeMillis();
+			this.updatePathIndex();
+			this.recordStartupPhase(CommonConstants.STARTUP_PHASE_INDEX, phaseStartTime);
+			git = newGit;
 		} else {
 			logger.info(MessageConstants.INFO_GIT_ALREADY_INITIALIZED);
 		}
 	}
 
+	/**
+	 * Initialize the GIT versioner without waiting for the network. If the
+	 * local repository is valid it is opened and published right away, so
+	 * reads are served from the local state while a background thread pulls
+	 * from the remote and catches up the path index. Otherwise the whole
+	 * initialization, such as a clone, runs in the background and callers of
+	 * the versioner wait for it.
+	 * 
+	 * @return Future that completes when the versioner is up to date with the
+	 *         remote, and throws the failure of the background work
+	 */
+	public Future<Void> initAsync() {
+		synchronized (initLock) {
+			if (readiness != null) {
+				return readiness;
+			}
+			FutureTask<Void> task;
+			long phaseStartTime = System.currentTimeMillis();
+			if (git != null) {
+				task = new FutureTask<Void>(new Runnable() {
+					public void run() {
+					}
+				}, null);
+				task.run();
+				readiness = task;
+				return task;
+			}
+			if (localRepo == null && isValidLocalRepository(getLocalPath() + CommonConstants.GIT_EXTENSION)) {
+				// Read ready now, only the remote is left for later
+				git = new Git(localRepo);
+				this.recordStartupPhase(CommonConstants.STARTUP_PHASE_OPEN, phaseStartTime);
+				task = new FutureTask<Void>(new Callable<Void>() {
+					public Void call() throws IOException, GitAPIException {
+						completeStartup();
+						return null;
+					}
+				});
+			} else {
+				if (localRepo != null && git == null) {
+					// Drop the invalid repository left by the validity check
+					localRepo.close();
+					localRepo = null;
+				}
+				task = new FutureTask<Void>(new Callable<Void>() {
+					public Void call() throws IOException, GitAPIException {
+						init();
+						return null;
+					}
+				});
+			}
+			Thread thread = new Thread(task, CommonConstants.STARTUP_THREAD_NAME);
+			thread.setDaemon(true);
+			thread.start();
+			readiness = task;
+			return task;
+		}
+	}
+
+	/**
+	 * Do the part of the initialization that initAsync defers: set the
+	 * origin, pull from the remote and catch up the path index
+	 * 
+	 * @throws IOException
+	 *             Throws if an IO exception occurs
+	 * @throws GitAPIException
+	 *             Throws if a GIT API exception occurs
+	 */
+	protected void completeStartup() throws IOException, GitAPIException {
+		if (cloneIfRepoDoesNotExist) {
+			long phaseStartTime = System.currentTimeMillis();
+			writeLock.lock();
+			try {
+				// The versioner may be closed in the meantime
+				if (git == null) {
+					return;
+				}
+				localRepo = setOriginToRepo(localRepo);
+				this.pull(git);
+			} finally {
+				writeLock.unlock();
+			}
+			this.recordStartupPhase(CommonConstants.STARTUP_PHASE_PULL, phaseStartTime);
+		}
+		long phaseStartTime = System.currentTimeMillis();
+		writeLock.lock();
+		try {
+			this.updatePathIndex();
+		} finally {
+			writeLock.unlock();
+		}
+		this.recordStartupPhase(CommonConstants.STARTUP_PHASE_INDEX, phaseStartTime);
+	}
+
+	/**
+	 * Check if the initialization is complete, including the work deferred
+	 * by initAsync
+	 * 
+	 * @return True if the versioner is initialized and up to date with the
+	 *         remote
+	 */
+	public boolean isReady() {
+		Future<Void> currentReadiness = readiness;
+		return git != null && (currentReadiness == null || currentReadiness.isDone());
+	}
+
+	/**
+	 * Get the duration of each phase of the last startup, in the order they
+	 * ran
+	 * 
+	 * @return Milliseconds spent by phase name
+	 */
+	public Map<String, Long> getStartupPhaseMillis() {
+		synchronized (startupPhaseMillis) {
+			return new LinkedHashMap<String, Long>(startupPhaseMillis);
+		}
+	}
+
+	/**
+	 * Record and log the duration of a startup phase
+	 * 
+	 * @param phase
+	 *            Name of the phase
+	 * @param startTime
+	 *            Start time of the phase in milliseconds
+	 */
+	protected void recordStartupPhase(String phase, long startTime) {
+		long duration = System.currentTimeMillis() - startTime;
+		synchronized (startupPhaseMillis) {
+			startupPhaseMillis.put(phase, duration);
+		}
+		logger.info(MessageFormat.format(MessageConstants.INFO_STARTUP_PHASE, phase, getLocalPath(), duration));
+	}
+
 	/**
 	 * Create the repository on local
 	 * 
@@ -131,15 +391,115 @@ public class GitVersioner {
 	 *             Throws if any GIT API exception occurs
 	 */
 	public void cloneRepo() throws IOException, GitAPIException {
-		git = Git.cloneRepository().setURI(remotePath)
-				.setCredentialsProvider(new UsernamePasswordCredentialsProvider(this.userName, this.password))
-				.setDirectory(new File(localPath)).call();
+		CloneCommand cloneCommand = Git.cloneRepository().setURI(remotePath)
+				.setCredentialsProvider(credentialsProvider).setDirectory(new File(localPath))
+				.setNoCheckout(cloneOptions.isNoCheckout());
+		String branch = cloneOptions.getBranch();
+		if (branch != null) {
+			cloneCommand.setBranch(Constants.R_HEADS + branch);
+		}
+		if (cloneOptions.isSingleBranch()) {
+			// Without a branch only the default branch of the remote is fetched
+			branch = branch == null ? Constants.MASTER : branch;
+			cloneCommand.setCloneAllBranches(false)
+					.setBranchesToClone(Collections.singletonList(Constants.R_HEADS + branch));
+		}
+		Git clonedGit = cloneCommand.call();
+		if (cloneOptions.isSingleBranch()) {
+			this.limitFetchToBranch(clonedGit.getRepository(), branch);
+		}
+		if (cloneOptions.isNoCheckout()) {
+			this.createBranchWithoutCheckout(clonedGit.getRepository(), branch == null ? Constants.MASTER : branch);
+		}
 		// Initiate local repository if null
 		if (localRepo == null) {
 			localRepo = new FileRepository(getLocalPath() + CommonConstants.GIT_EXTENSION);
 		}
 		// Set origin value to repository
 		localRepo = setOriginToRepo(localRepo);
+		git = clonedGit;
+	}
+
+	/**
+	 * Keep later fetches and pulls to the cloned branch
+	 * 
+	 * @param repo
+	 *            Cloned repository
+	 * @param branch
+	 *            Short name of the cloned branch
+	 * @throws IOException
+	 *             Throws if the configuration cannot be saved
+	 */
+	protected void limitFetchToBranch(Repository repo, String branch) throws IOException {
+		StoredConfig config = repo.getConfig();
+		RefSpec refSpec = new RefSpec().setForceUpdate(true).setSourceDestination(Constants.R_HEADS + branch,
+				Constants.R_REMOTES + CommonConstants.GIT_TERM_ORIGIN + "/" + branch);
+		config.setString(CommonConstants.GIT_TERM_REMOTE, CommonConstants.GIT_TERM_ORIGIN,
+				CommonConstants.GIT_TERM_FETCH, refSpec.toString());
+		config.save();
+	}
+
+	/**
+	 * Create the local branch that a clone without checkout leaves out, and
+	 * fill the index from its tree without writing the working tree. The
+	 * index then matches HEAD, so commits keep the files that are not in the
+	 * working tree.
+	 * 
+	 * @param repo
+	 *            Cloned repository
+	 * @param branch
+	 *            Short name of the cloned branch
+	 * @throws IOException
+	 *             Throws if an IO exception occurs
+	 */
+	protected void createBranchWithoutCheckout(Repository repo, String branch) throws IOException {
+		ObjectId remoteHead = repo.resolve(Constants.R_REMOTES + CommonConstants.GIT_TERM_ORIGIN + "/" + branch);
+		if (remoteHead == null) {
+			// Empty remote, the branch is born by the first commit
+			return;
+		}
+		RefUpdate refUpdate = repo.updateRef(Constants.R_HEADS + branch);
+		refUpdate.setNewObjectId(remoteHead);
+		refUpdate.forceUpdate();
+		repo.updateRef(Constants.HEAD).link(Constants.R_HEADS + branch);
+		StoredConfig config = repo.getConfig();
+		config.setString(ConfigConstants.CONFIG_BRANCH_SECTION, branch, ConfigConstants.CONFIG_KEY_REMOTE,
+				CommonConstants.GIT_TERM_ORIGIN);
+		config.setString(ConfigConstants.CONFIG_BRANCH_SECTION, branch, ConfigConstants.CONFIG_KEY_MERGE,
+				Constants.R_HEADS + branch);
+		config.save();
+		DirCache dirCache = repo.lockDirCache();
+		ObjectReader reader = repo.newObjectReader();
+		try {
+			DirCacheBuilder builder = dirCache.builder();
+			RevWalk revWalk = new RevWalk(reader);
+			try {
+				builder.addTree(new byte[0], DirCacheEntry.STAGE_0, reader, revWalk.parseCommit(remoteHead).getTree());
+			} finally {
+				revWalk.close();
+			}
+			builder.commit();
+		} finally {
+			reader.close();
+			dirCache.unlock();
+		}
+	}
+
+	/**
+	 * Set the options used when the repository is cloned by init
+	 * 
+	 * @param cloneOptions
+	 *            Clone options
+	 */
+	public void setCloneOptions(CloneOptions cloneOptions) {
+		if (cloneOptions == null) {
+			throw new IllegalArgumentException(CommonConstants.ERROR_EMPTY_ARGUMENT);
+		}
+		this.cloneOptions = cloneOptions;
+	}
+
+	public CloneOptions getCloneOptions() {
+		return cloneOptions;
 	}
 
 	/**
@@ -154,14 +514,115 @@ public class GitVersioner {
 	 */
 	public void add(String fileName) throws IOException, GitAPIException {
 		this.checkGit();
-		// Open given file and add the the index
-		// The file must be inside of the GIT repository folder
-		File myfile = new File(getLocalPath() + File.separator + fileName);
-		myfile.createNewFile();
-		git.add().addFilepattern(fileName).call();
+		long startTime = this.startOperation(Operation.ADD);
+		boolean failed = true;
+		writeLock.lock();
+		try {
+			// Open given file and add the the index
+			// The file must be inside of the GIT repository folder
+			File myfile = new File(getLocalPath() + File.separator + fileName);
+			myfile.createNewFile();
+			if (!this.addLargeFile(fileName, myfile)) {
+				git.add().addFilepattern(fileName).call();
+			}
+			metrics.objectsInserted(1L);
+			failed = false;
+		} finally {
+			writeLock.unlock();
+			this.completeOperation(Operation.ADD, startTime, failed);
+		}
 		logger.info(MessageFormat.format(MessageConstants.INFO_FILE_ADD, fileName));
 	}
 
+	/**
+	 * Add several files to the versioning with a single index update. All of
+	 * the files are staged by one add command, so the index is read, locked
+	 * and written only once for the whole collection.
+	 * 
+	 * @param fileNames
+	 *            Files to be added to the versioning
+	 * @throws IOException
+	 *             Throws if any IO exception occurs
+	 * @throws GitAPIException
+	 *             Throws if any GIT API exception occurs
+	 */
+	public void add(Collection<String> fileNames) throws IOException, GitAPIException {
+		CheckValueUtil.checkCollectionVal(fileNames);
+		this.checkGit();
+		long startTime = this.startOperation(Operation.ADD);
+		boolean failed = true;
+		writeLock.lock();
+		try {
+			AddCommand addCommand = git.add();
+			boolean indexFiles = false;
+			for (String fileName : fileNames) {
+				CheckValueUtil.checkStringVal(fileName);
+				// The files must be inside of the GIT repository folder
+				File myfile = new File(getLocalPath() + File.separator + fileName);
+				myfile.createNewFile();
+				if (!this.addLargeFile(fileName, myfile)) {
+					addCommand.addFilepattern(fileName);
+					indexFiles = true;
+				}
+			}
+			if (indexFiles) {
+				addCommand.call();
+			}
+			metrics.objectsInserted(fileNames.size());
+			failed = false;
+		} finally {
+			writeLock.unlock();
+			this.completeOperation(Operation.ADD, startTime, failed);
+		}
+		logger.info(MessageFormat.format(MessageConstants.INFO_FILES_ADD, fileNames.size()));
+	}
+
+	/**
+	 * Add, commit and optionally push the given files as one atomic batch.
+	 * Either every file ends up in a single new commit (and on the remote if
+	 * push is demanded) or the index and the branch are restored to the state
+	 * they had before the call.
+	 * 
+	 * @param fileNames
+	 *            Files to be versioned together
+	 * @param message
+	 *            Message to be put while committing
+	 * @param push
+	 *            Set true if the commit must be pushed to the remote
+	 * @return The commit that contains all of the files
+	 * @throws IOException
+	 *             Throws if any IO exception occurs
+	 * @throws GitAPIException
+	 *             Throws if any GIT API exception occurs
+	 */
+	public RevCommit commitFiles(Collection<String> fileNames, String message, boolean push)
+			throws IOException, GitAPIException {
+		CheckValueUtil.checkCollectionVal(fileNames);
+		CheckValueUtil.checkStringVal(message);
+		this.checkGit();
+		writeLock.lock();
+		try {
+			ObjectId previousHead = localRepo.resolve(CommonConstants.GIT_TERM_HEAD);
+			RevCommit revCommit = null;
+			try {
+				this.add(fileNames);
+				revCommit = this.commit(message);
+				if (push) {
+					this.push();
+				}
+				return revCommit;
+			} catch (Exception e) {
+				if (this.rollback(previousHead, revCommit, fileNames)) {
+					throw e;
+				}
+				this.commitKept(revCommit, e);
+				return revCommit;
+			}
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
 	/**
 	 * Remove file from index and/or from disc
 	 * 
@@ -177,10 +638,19 @@ public class GitVersioner {
 	 */
 	public void remove(String file, boolean onlyRemoveFromIndex) throws NoFilepatternException, GitAPIException {
 		this.checkGit();
-		RmCommand rmCommand = git.rm();
-		rmCommand.setCached(onlyRemoveFromIndex);
-		rmCommand.addFilepattern(file);
-		rmCommand.call();
+		long startTime = this.startOperation(Operation.REMOVE);
+		boolean failed = true;
+		writeLock.lock();
+		try {
+			RmCommand rmCommand = git.rm();
+			rmCommand.setCached(onlyRemoveFromIndex);
+			rmCommand.addFilepattern(file);
+			rmCommand.call();
+			failed = false;
+		} finally {
+			writeLock.unlock();
+			this.completeOperation(Operation.REMOVE, startTime, failed);
+		}
 		logger.info(MessageFormat.format(MessageConstants.INFO_REMOVED_FROM_INDEX, file,
 				String.valueOf(onlyRemoveFromIndex)));
 	}
@@ -190,14 +660,28 @@ public class GitVersioner {
 	 * 
 	 * @param message
 	 *            Message to be put while committing
+	 * @return The created commit
 	 * @throws GitAPIException
 	 *             Throws if any GIT API exception occurs
 	 */
-	public void commit(String message) throws GitAPIException {
+	public RevCommit commit(String message) throws GitAPIException {
 		CheckValueUtil.checkStringVal(message);
 		this.checkGit();
-		git.commit().setMessage(message).call();
+		RevCommit revCommit;
+		long startTime = this.startOperation(Operation.COMMIT);
+		boolean failed = true;
+		writeLock.lock();
+		try {
+			revCommit = git.commit().setMessage(message).call();
+			metrics.objectsInserted(1L);
+			this.updatePathIndex();
+			failed = false;
+		} finally {
+			writeLock.unlock();
+			this.completeOperation(Operation.COMMIT, startTime, failed);
+		}
 		logger.info(MessageFormat.format(MessageConstants.INFO_COMMIT, message));
+		return revCommit;
 	}
 
 	/**
@@ -208,10 +692,17 @@ public class GitVersioner {
 	 */
 	public void push() throws GitAPIException {
 		this.checkGit();
-		PushCommand pushCommand = git.push();
-		pushCommand.setRemote(remotePath);
-		pushCommand.setCredentialsProvider(new UsernamePasswordCredentialsProvider(this.userName, this.password));
-		pushCommand.call();
+		long startTime = this.startOperation(Operation.PUSH);
+		boolean failed = true;
+		try {
+			PushCommand pushCommand = git.push();
+			pushCommand.setRemote(remotePath);
+			pushCommand.setCredentialsProvider(credentialsProvider);
+			pushCommand.call();
+			failed = false;
+		} finally {
+			this.completeOperation(Operation.PUSH, startTime, failed);
+		}
 		logger.info(MessageConstants.INFO_PUSH);
 	}
 
@@ -226,157 +717,1636 @@ public class GitVersioner {
 	public void commitAndPush(String message) throws GitAPIException {
 		CheckValueUtil.checkStringVal(message);
 		this.checkGit();
-		this.commit(message);
-		this.push();
+		writeLock.lock();
+		try {
+			this.commit(message);
+			this.push();
+		} finally {
+			writeLock.unlock();
+		}
 		logger.info(MessageConstants.INFO_COMMIT_AND_PUSH);
 	}
 
 	/**
-	 * Pull latest version from the remote
+	 * Version the given content as a new revision of a file without writing
+	 * it to the working tree
 	 * 
+	 * @param path
+	 *            Path of the file inside of the repository
+	 * @param content
+	 *            New content of the file
+	 * @param message
+	 *            Message to be put while committing
+	 * @param push
+	 *            Set true to push the commit to remote
+	 * @return The created commit
+	 * @throws IOException
+	 *             Throws if an IO exception occurs
 	 * @throws GitAPIException
-	 *             Throws if any GIT API exception occurs
+	 *             Throws if a GIT API exception occurs
 	 */
-	public void pull() throws GitAPIException {
-		this.checkGit();
-		PullCommand pullCommand = git.pull();
-		pullCommand.setRemote("origin");
-		pullCommand.setCredentialsProvider(new UsernamePasswordCredentialsProvider(this.userName, this.password));
-		pullCommand.setStrategy(MergeStrategy.SIMPLE_TWO_WAY_IN_CORE);
-		pullCommand.call();
-		logger.info(MessageConstants.INFO_PULL);
+	public RevCommit versionContent(String path, byte[] content, String message, boolean push)
+			throws IOException, GitAPIException {
+		return this.versionContent(path, new ByteArrayInputStream(content), content.length, message, push);
 	}
 
 	/**
-	 * Get current local path of the local repository
+	 * Version the remaining bytes of the buffer as a new revision of a file
+	 * without writing it to the working tree. The position of the buffer is
+	 * not changed.
 	 * 
-	 * @return Current local repository path
+	 * @param path
+	 *            Path of the file inside of the repository
+	 * @param content
+	 *            New content of the file
+	 * @param message
+	 *            Message to be put while committing
+	 * @param push
+	 *            Set true to push the commit to remote
+	 * @return The created commit
+	 * @throws IOException
+	 *             Throws if an IO exception occurs
+	 * @throws GitAPIException
+	 *             Throws if a GIT API exception occurs
 	 */
-	public String getLocalPath() {
-		return localPath;
+	public RevCommit versionContent(String path, ByteBuffer content, String message, boolean push)
+			throws IOException, GitAPIException {
+		byte[] bytes;
+		int offset;
+		int length = content.remaining();
+		if (content.hasArray()) {
+			bytes = content.array();
+			offset = content.arrayOffset() + content.position();
+		} else {
+			bytes = new byte[length];
+			offset = 0;
+			content.duplicate().get(bytes);
+		}
+		return this.versionContent(path, new ByteArrayInputStream(bytes, offset, length), length, message, push);
 	}
 
 	/**
-	 * Set path of the local repository
+	 * Version the content of a stream as a new revision of a file. The blob
+	 * is streamed into the object store and the commit is built from the
+	 * tree of HEAD with the changed entry, the working tree is not touched
+	 * and only the entry of the file is updated in the index, so later
+	 * commits keep the new revision.
 	 * 
-	 * @param localPath
-	 *            Path of the local repository
-	 */
-	public void setLocalPath(String localPath) {
-		this.localPath = localPath;
-	}
-
-	/**
-	 * Close the GIT and local repository
+	 * @param path
+	 *            Path of the file inside of the repository
+	 * @param content
+	 *            Stream of the new content, not closed by this method
+	 * @param length
+	 *            Exact number of bytes to read from the stream
+	 * @param message
+	 *            Message to be put while committing
+	 * @param push
+	 *            Set true to push the commit to remote, the commit is rolled
+	 *            back if the push fails
+	 * @return The created commit
+	 * @throws IOException
+	 *             Throws if an IO exception occurs
+	 * @throws GitAPIException
+	 *             Throws if a GIT API exception occurs
 	 */
-	public void close() {
-		if (git != null) {
-			git.close();
-		}
-		if (localRepo != null) {
-			localRepo.close();
+	public RevCommit versionContent(String path, InputStream content, long length, String message, boolean push)
+			throws IOException, GitAPIException {
+		CheckValueUtil.checkStringVal(path);
+		CheckValueUtil.checkStringVal(message);
+		this.checkGit();
+		RevCommit revCommit = null;
+		long startTime = this.startOperation(Operation.VERSION_CONTENT);
+		boolean failed = true;
+		writeLock.lock();
+		try {
+			ObjectId previousHead = localRepo.resolve(CommonConstants.GIT_TERM_HEAD);
+			try {
+				TreeCommitBuilder treeCommitBuilder = new TreeCommitBuilder(localRepo);
+				ObjectId blobId = this.insertContent(treeCommitBuilder, path, content, length);
+				DirCache tree = treeCommitBuilder.readTree(previousHead);
+				treeCommitBuilder.setPath(tree, path, blobId);
+				revCommit = treeCommitBuilder.commit(tree, previousHead, message);
+				// The blob and the commit
+				metrics.objectsInserted(2L);
+				this.contentVersioned(path, blobId, length);
+				this.updatePathIndex();
+				if (push) {
+					this.push();
+				}
+			} catch (Exception e) {
+				// Nothing is changed if the commit is not made, a commit that
+				// lost the race for HEAD must not move it
+				if (revCommit == null || this.rollback(previousHead, revCommit, Collections.singleton(path))) {
+					throw e;
+				}
+				this.commitKept(revCommit, e);
+			}
+			failed = false;
+		} finally {
+			writeLock.unlock();
+			this.completeOperation(Operation.VERSION_CONTENT, startTime, failed);
 		}
+		logger.info(MessageFormat.format(MessageConstants.INFO_COMMIT, message));
+		return revCommit;
 	}
 
 	/**
-	 * List versions of the given file path
+	 * Version several contents with one commit that is built from trees and
+	 * published by a compare and swap of the branch, without the shared
+	 * index file. Several processes can write to the same repository this
+	 * way: a writer that loses the race rebuilds its commit on the new HEAD
+	 * and retries, as long as the winner changed none of its paths.
 	 * 
-	 * @param file
-	 *            File path that needed versions belong to
-	 * @return Commit versions of the given file path
-	 * @throws NoHeadException
-	 *             Throws when a No Head exception occurs.
-	 * @throws GitAPIException
-	 *             Throws when a GIT API exception occurs.
+	 * @param contents
+	 *            New contents by file path
+	 * @param message
+	 *            Message of the commit
+	 * @param push
+	 *            Set true to push the commit to the remote, the commit is
+	 *            rolled back if the push fails
+	 * @return The created commit
 	 * @throws IOException
-	 *             Throws when an IO Head exception occurs.
+	 *             Throws if an IO exception occurs
+	 * @throws GitAPIException
+	 *             Throws if a concurrent commit changed one of the paths, if
+	 *             the retries run out or if the push fails
 	 */
-	public List<Version> listVersions(String file) throws NoHeadException, GitAPIException, IOException {
+	public RevCommit versionContents(Map<String, byte[]> contents, String message, boolean push)
+			throws IOException, GitAPIException {
+		if (contents == null || contents.isEmpty()) {
+			throw new IllegalArgumentException(CommonConstants.ERROR_EMPTY_ARGUMENT);
+		}
+		CheckValueUtil.checkStringVal(message);
 		this.checkGit();
-		// Collect commits into a list
-		List<Version> commits = new ArrayList<Version>();
-		// Create revision walk parameter
-		RevWalk revWalk = new RevWalk(localRepo);
-		// Get any difference commit
-		revWalk.setTreeFilter(AndTreeFilter.create(PathFilterGroup.createFromStrings(file), TreeFilter.ANY_DIFF));
-		// Fetch beginning from the head
-		RevCommit rootCommit = revWalk.parseCommit(localRepo.resolve(CommonConstants.GIT_TERM_HEAD));
-		// Sort from newest to oldest
-		revWalk.sort(RevSort.COMMIT_TIME_DESC);
-		revWalk.markStart(rootCommit);
-		SimpleDateFormat simpleDateFormat = new SimpleDateFormat(CommonConstants.DATE_TIME_PATTERN);
-		// Collect commits
-		for (RevCommit revCommit : revWalk) {
-			commits.add(new Version(revCommit.getAuthorIdent().getName(),
-					simpleDateFormat.format(new Date(revCommit.getCommitTime() * 1000L)),
-					String.valueOf(revCommit.getId().getName())));
+		long startTime = this.startOperation(Operation.VERSION_CONTENT);
+		boolean failed = true;
+		try {
+			// Blobs are content addressed, insert them once for all attempts
+			TreeCommitBuilder treeCommitBuilder = new TreeCommitBuilder(localRepo);
+			Map<String, ObjectId> blobIds = new LinkedHashMap<String, ObjectId>();
+			for (Map.Entry<String, byte[]> content : contents.entrySet()) {
+				CheckValueUtil.checkStringVal(content.getKey());
+				blobIds.put(content.getKey(), this.insertContent(treeCommitBuilder, content.getKey(),
+						new ByteArrayInputStream(content.getValue()), content.getValue().length));
+			}
+			metrics.objectsInserted(blobIds.size());
+			ObjectId baseId = localRepo.resolve(CommonConstants.GIT_TERM_HEAD);
+			RevCommit revCommit = null;
+			for (int attempt = 1; revCommit == null; attempt++) {
+				writeLock.lock();
+				try {
+					ObjectId parentId = localRepo.resolve(CommonConstants.GIT_TERM_HEAD);
+					this.checkConcurrentChanges(baseId, parentId, blobIds.keySet());
+					DirCache tree = treeCommitBuilder.readTree(parentId);
+					for (Map.Entry<String, ObjectId> blobId : blobIds.entrySet()) {
+						treeCommitBuilder.setPath(tree, blobId.getKey(), blobId.getValue());
+					}
+					try {
+						revCommit = treeCommitBuilder.commit(tree, parentId, message);
+					} catch (ConcurrentRefUpdateException e) {
+						if (attempt >= CommonConstants.CAS_MAX_ATTEMPTS) {
+							throw e;
+						}
+						logger.info(MessageFormat.format(MessageConstants.INFO_COMMIT_RETRIED, attempt));
+					}
+					if (revCommit != null) {
+						metrics.objectsInserted(1L);
+						for (Map.Entry<String, byte[]> content : contents.entrySet()) {
+							this.indexContent(content.getKey(), blobIds.get(content.getKey()),
+									content.getValue().length);
+						}
+						this.updatePathIndex();
+					}
+				} finally {
+					writeLock.unlock();
+				}
+				if (revCommit == null) {
+					this.backoff(attempt);
+				}
+			}
+			try {
+				if (push) {
+					this.push();
+				}
+			} catch (Exception e) {
+				boolean rolledBack;
+				writeLock.lock();
+				try {
+					rolledBack = this.rollback(revCommit.getParentCount() == 0 ? null : revCommit.getParent(0),
+							revCommit, contents.keySet());
+				} finally {
+					writeLock.unlock();
+				}
+				if (rolledBack) {
+					throw e;
+				}
+				this.commitKept(revCommit, e);
+			}
+			failed = false;
+			logger.info(MessageFormat.format(MessageConstants.INFO_COMMIT, message));
+			return revCommit;
+		} finally {
+			this.completeOperation(Operation.VERSION_CONTENT, startTime, failed);
 		}
-		revWalk.close();
-		// Return commits as versions
-		return commits;
 	}
 
 	/**
-	 * Get an old revision of a file by it's revision Id
+	 * Check that the commits made since a writer read HEAD changed none of
+	 * its paths, so its changes can be applied on top of them
 	 * 
-	 * @param revId
-	 *            Id of the revision that the file must belong
-	 * @param fileName
-	 *            Name of the file that is going to be re-visioned
-	 * @return File that belongs to given revision
+	 * @param baseId
+	 *            HEAD the writer started from, null if the branch was unborn
+	 * @param headId
+	 *            Current HEAD, null if the branch is unborn
+	 * @param paths
+	 *            Paths the writer changes
 	 * @throws IOException
 	 *             Throws if an IO exception occurs
+	 * @throws ConcurrentRefUpdateException
+	 *             Throws if one of the paths is changed meanwhile
 	 */
-	public File getRevisionFileById(String revId, String fileName) throws IOException {
-		// Get a revision file by id
-		// Get object id by revision id
-		ObjectId lastCommitId = localRepo.resolve(revId);
-		// Create revision walk parameter
+	protected void checkConcurrentChanges(ObjectId baseId, ObjectId headId, Collection<String> paths)
+			throws IOException, ConcurrentRefUpdateException {
+		if (headId == null || headId.equals(baseId)) {
+			return;
+		}
 		RevWalk revWalk = new RevWalk(localRepo);
-		// get last commit
-		RevCommit commit = revWalk.parseCommit(lastCommitId);
-		// Create tree
-		RevTree tree = commit.getTree();
-		// Create tree walk parameter
-		TreeWalk treeWalk = new TreeWalk(localRepo);
-		// Add tree to tree walk parameter
-		treeWalk.addTree(tree);
-		treeWalk.setRecursive(true);
-		treeWalk.setFilter(PathFilter.create(fileName));
-		// Check if last commit is found
-		if (!treeWalk.next()) {
-			treeWalk.close();
+		try {
+			RevTree headTree = revWalk.parseCommit(headId).getTree();
+			RevTree baseTree = baseId == null ? null : revWalk.parseCommit(baseId).getTree();
+			for (String path : paths) {
+				TreeWalk headWalk = TreeWalk.forPath(localRepo, path, headTree);
+				TreeWalk baseWalk = baseTree == null ? null : TreeWalk.forPath(localRepo, path, baseTree);
+				ObjectId headBlobId = headWalk == null ? null : headWalk.getObjectId(0);
+				ObjectId baseBlobId = baseWalk == null ? null : baseWalk.getObjectId(0);
+				if (headWalk != null) {
+					headWalk.close();
+				}
+				if (baseWalk != null) {
+					baseWalk.close();
+				}
+				if (headBlobId == null ? baseBlobId != null : !headBlobId.equals(baseBlobId)) {
+					throw new ConcurrentRefUpdateException(
+							MessageFormat.format(MessageConstants.ERROR_CONCURRENT_CHANGE, path),
+							localRepo.getRef(CommonConstants.GIT_TERM_HEAD), RefUpdate.Result.REJECTED);
+				}
+			}
+		} finally {
 			revWalk.close();
-			logger.error(MessageFormat.format(MessageConstants.ERROR_REVISION_NOT_FOUND, revId, fileName));
-			return null;
 		}
-		// Create inputStrem from the needed revision to read file
-		ObjectId objectId = treeWalk.getObjectId(0);
-		ObjectLoader loader = localRepo.open(objectId);
-		InputStream in = loader.openStream();
-		treeWalk.close();
-		revWalk.close();
-		// Create a folder to insert into revisions
-		int i = fileName.lastIndexOf(CommonConstants.DOT);
-		String fileExtension = fileName.substring(i);
+	}
+
+	/**
+	 * Update the index entry of a path versioned without the index, if the
+	 * index is not locked by another process. A stale entry only matters to
+	 * commits made through the index.
+	 * 
+	 * @param path
+	 *            Versioned path
+	 * @param blobId
+	 *            Id of the versioned blob
+	 * @param length
+	 *            Length of the content
+	 */
+	protected void indexContent(String path, ObjectId blobId, long length) {
+		try {
+			this.contentVersioned(path, blobId, length);
+		} catch (IOException e) {
+			logger.warn(MessageFormat.format(MessageConstants.WARNING_INDEX_NOT_UPDATED, path, e.getMessage()));
+		}
+	}
+
+	/**
+	 * Wait a random time growing with the attempts, so that writers that
+	 * lost a race do not collide again
+	 * 
+	 * @param attempt
+	 *            Number of failed attempts
+	 * @throws InterruptedIOException
+	 *             Throws if the thread is interrupted
+	 */
+	protected void backoff(int attempt) throws InterruptedIOException {
+		try {
+			Thread.sleep((long) (Math.random() * attempt * CommonConstants.CAS_BACKOFF_MILLIS));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException(e.getMessage());
+		}
+	}
+
+	/**
+	 * Pull latest version from the remote
+	 * 
+	 * @throws GitAPIException
+	 *             Throws if any GIT API exception occurs
+	 */
+	public void pull() throws GitAPIException {
+		this.checkGit();
+		writeLock.lock();
+		try {
+			this.pull(git);
+			this.updatePathIndex();
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	/**
+	 * Pull latest version from the remote with the given GIT
+	 * 
+	 * @param pullGit
+	 *            GIT of the repository to pull into
+	 * @throws GitAPIException
+	 *             Throws if any GIT API exception occurs
+	 */
+	protected void pull(Git pullGit) throws GitAPIException {
+		long startTime = this.startOperation(Operation.PULL);
+		boolean failed = true;
+		try {
+			PullCommand pullCommand = pullGit.pull();
+			pullCommand.setRemote(CommonConstants.GIT_TERM_ORIGIN);
+			pullCommand.setCredentialsProvider(credentialsProvider);
+			pullCommand.setStrategy(MergeStrategy.SIMPLE_TWO_WAY_IN_CORE);
+			pullCommand.call();
+			failed = false;
+		} finally {
+			this.completeOperation(Operation.PULL, startTime, failed);
+		}
+		logger.info(MessageConstants.INFO_PULL);
+	}
+
+	/**
+	 * Get current local path of the local repository
+	 * 
+	 * @return Current local repository path
+	 */
+	public String getLocalPath() {
+		return localPath;
+	}
+
+	/**
+	 * Set path of the local repository
+	 * 
+	 * @param localPath
+	 *            Path of the local repository
+	 */
+	public void setLocalPath(String localPath) {
+		this.localPath = localPath;
+	}
+
+	/**
+	 * Close the GIT and local repository
+	 */
+	public void close() {
+		writeLock.lock();
+		try {
+			synchronized (initLock) {
+				if (git != null) {
+					git.close();
+				}
+				if (localRepo != null) {
+					localRepo.close();
+				}
+				git = null;
+				localRepo = null;
+				readiness = null;
+				synchronized (pathIndexLock) {
+					pathIndex = null;
+				}
+			}
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	/**
+	 * Check if the repository is currently open
+	 * 
+	 * @return True if the repository is open, false if it is not initialized
+	 *         yet or closed
+	 */
+	public boolean isOpen() {
+		return git != null;
+	}
+
+	/**
+	 * List versions of the given file path
+	 * 
+	 * @param file
+	 *            File path that needed versions belong to
+	 * @return Commit versions of the given file path
+	 * @throws NoHeadException
+	 *             Throws when a No Head exception occurs.
+	 * @throws GitAPIException
+	 *             Throws when a GIT API exception occurs.
+	 * @throws IOException
+	 *             Throws when an IO Head exception occurs.
+	 */
+	public List<Version> listVersions(String file) throws NoHeadException, GitAPIException, IOException {
+		return new ArrayList<Version>(this.listVersionList(file));
+	}
+
+	/**
+	 * List versions of the given file path into a compact read only list.
+	 * Version objects are created only when they are accessed.
+	 * 
+	 * @param file
+	 *            File path that needed versions belong to
+	 * @return Commit versions of the given file path
+	 * @throws IOException
+	 *             Throws when an IO exception occurs.
+	 */
+	public VersionList listVersionList(String file) throws IOException {
+		long startTime = this.startOperation(Operation.LIST_VERSIONS);
+		boolean failed = true;
+		try {
+			VersionList versions = this.walkVersions(file);
+			failed = false;
+			return versions;
+		} finally {
+			this.completeOperation(Operation.LIST_VERSIONS, startTime, failed);
+		}
+	}
+
+	/**
+	 * List versions of the given file path, from the path history index if
+	 * it is available or by walking the history
+	 * 
+	 * @param file
+	 *            File path that needed versions belong to
+	 * @return Commit versions of the given file path
+	 * @throws IOException
+	 *             Throws when an IO exception occurs.
+	 */
+	protected VersionList walkVersions(String file) throws IOException {
+		this.checkGit();
+		PathHistoryIndex.Snapshot index = this.readPathIndex();
+		if (index != null) {
+			return this.listVersionsFromIndex(index, file);
+		}
+		// Collect commits into a compact list
+		VersionList commits = new VersionList();
+		ObjectId head = localRepo.resolve(CommonConstants.GIT_TERM_HEAD);
+		if (head == null) {
+			return commits;
+		}
+		// Create revision walk parameter
+		RevWalk revWalk = new RevWalk(localRepo);
+		// Get any difference commit
+		revWalk.setTreeFilter(AndTreeFilter.create(PathFilterGroup.createFromStrings(file), TreeFilter.ANY_DIFF));
+		// Fetch beginning from the head
+		RevCommit rootCommit = revWalk.parseCommit(head);
+		// Sort from newest to oldest
+		revWalk.sort(RevSort.COMMIT_TIME_DESC);
+		revWalk.markStart(rootCommit);
+		// Collect commits
+		for (RevCommit revCommit : revWalk) {
+			this.addVersion(revWalk, commits, revCommit);
+		}
+		revWalk.close();
+		// Return commits as versions
+		return commits;
+	}
+
+	/**
+	 * List a page of versions of the given file path lazily, newest first.
+	 * Commits are read only until the page is full and commits older than the
+	 * since bound of the query are never walked.
+	 * 
+	 * @param file
+	 *            File path that needed versions belong to
+	 * @param query
+	 *            Limit, offset or cursor and time bounds of the page
+	 * @return Iterator over the versions of the page, it must be closed if not
+	 *         read to the end
+	 * @throws IOException
+	 *             Throws when an IO exception occurs.
+	 * @throws IllegalArgumentException
+	 *             Throws if the cursor of the query is not a known commit
+	 */
+	public VersionIterator listVersions(String file, VersionQuery query) throws IOException {
+		CheckValueUtil.checkStringVal(file);
+		this.checkGit();
+		// Abbreviated ids and ref names are accepted as cursors
+		ObjectId cursorId = null;
+		if (query.getCursor() != null) {
+			cursorId = localRepo.resolve(query.getCursor());
+			if (cursorId == null || !localRepo.hasObject(cursorId)) {
+				throw new IllegalArgumentException(
+						MessageFormat.format(MessageConstants.ERROR_UNKNOWN_CURSOR, query.getCursor()));
+			}
+		}
+		PathHistoryIndex.Snapshot index = this.readPathIndex();
+		RevWalk revWalk = new RevWalk(localRepo);
+		if (index != null) {
+			return new VersionIterator(revWalk, null, index.getHistory(file).iterator(), query, cursorId);
+		}
+		// A tree filter on the revision walk would rewrite the whole history
+		// before the first commit, the iterator diffs each commit instead
+		TreeWalk treeWalk = new TreeWalk(localRepo);
+		try {
+			treeWalk.setRecursive(true);
+			treeWalk.setFilter(AndTreeFilter.create(PathFilterGroup.createFromStrings(file), TreeFilter.ANY_DIFF));
+			ObjectId start = cursorId == null ? localRepo.resolve(CommonConstants.GIT_TERM_HEAD) : cursorId;
+			if (start != null) {
+				if (query.getSince() != null && query.getUntil() != null) {
+					revWalk.setRevFilter(CommitTimeRevFilter.between(query.getSince(), query.getUntil()));
+				} else if (query.getSince() != null) {
+					revWalk.setRevFilter(CommitTimeRevFilter.after(query.getSince()));
+				} else if (query.getUntil() != null) {
+					revWalk.setRevFilter(CommitTimeRevFilter.before(query.getUntil()));
+				}
+				revWalk.sort(RevSort.COMMIT_TIME_DESC);
+				revWalk.markStart(revWalk.parseCommit(start));
+			}
+		} catch (IOException e) {
+			treeWalk.close();
+			revWalk.close();
+			throw e;
+		}
+		return new VersionIterator(revWalk, treeWalk, null, query, cursorId);
+	}
+
+	/**
+	 * List versions of many file paths at once. The history is walked a single
+	 * time: each commit is diffed against its parents once and the changed
+	 * paths are routed to the requested paths they belong to. A commit is
+	 * listed for a path when the path differs from every parent of the commit,
+	 * same as the path history index.
+	 * 
+	 * @param files
+	 *            File or directory paths that needed versions belong to
+	 * @return Commit versions of each given path, newest first, in the order
+	 *         of the given paths
+	 * @throws IOException
+	 *             Throws when an IO exception occurs.
+	 */
+	public Map<String, List<Version>> listVersions(Collection<String> files) throws IOException {
+		Map<String, VersionList> versionLists = this.listVersionLists(files);
+		Map<String, List<Version>> versions = new LinkedHashMap<String, List<Version>>();
+		for (Map.Entry<String, VersionList> versionList : versionLists.entrySet()) {
+			versions.put(versionList.getKey(), new ArrayList<Version>(versionList.getValue()));
+		}
+		return versions;
+	}
+
+	/**
+	 * List versions of many file paths at once into compact read only lists
+	 * 
+	 * @param files
+	 *            File or directory paths that needed versions belong to
+	 * @return Commit versions of each given path, newest first, in the order
+	 *         of the given paths
+	 * @throws IOException
+	 *             Throws when an IO exception occurs.
+	 */
+	public Map<String, VersionList> listVersionLists(Collection<String> files) throws IOException {
+		long startTime = this.startOperation(Operation.LIST_VERSIONS);
+		boolean failed = true;
+		try {
+			Map<String, VersionList> versions = this.walkVersions(files);
+			failed = false;
+			return versions;
+		} finally {
+			this.completeOperation(Operation.LIST_VERSIONS, startTime, failed);
+		}
+	}
+
+	/**
+	 * List versions of many file paths with a single walk of the history or
+	 * from the path history index if it is available
+	 * 
+	 * @param files
+	 *            File or directory paths that needed versions belong to
+	 * @return Commit versions of each given path
+	 * @throws IOException
+	 *             Throws when an IO exception occurs.
+	 */
+	protected Map<String, VersionList> walkVersions(Collection<String> files) throws IOException {
+		CheckValueUtil.checkCollectionVal(files);
+		Map<String, VersionList> versions = new LinkedHashMap<String, VersionList>();
+		for (String file : files) {
+			CheckValueUtil.checkStringVal(file);
+			versions.put(file, new VersionList());
+		}
+		this.checkGit();
+		PathHistoryIndex.Snapshot index = this.readPathIndex();
+		RevWalk revWalk = new RevWalk(localRepo);
+		try {
+			if (index != null) {
+				for (Map.Entry<String, VersionList> fileVersions : versions.entrySet()) {
+					for (PathHistoryIndex.Entry entry : index.getHistory(fileVersions.getKey())) {
+						this.addVersion(revWalk, fileVersions.getValue(), revWalk.parseCommit(entry.getCommitId()));
+					}
+				}
+				return versions;
+			}
+			ObjectId head = localRepo.resolve(CommonConstants.GIT_TERM_HEAD);
+			if (head == null) {
+				return versions;
+			}
+			revWalk.sort(RevSort.COMMIT_TIME_DESC);
+			revWalk.markStart(revWalk.parseCommit(head));
+			// One tree walk limited to the requested paths is reused for all
+			// commits
+			TreeWalk treeWalk = new TreeWalk(localRepo);
+			try {
+				treeWalk.setRecursive(true);
+				treeWalk.setFilter(
+						AndTreeFilter.create(PathFilterGroup.createFromStrings(files), TreeFilter.ANY_DIFF));
+				for (RevCommit revCommit : revWalk) {
+					Set<String> changedFiles = this.findChangedFiles(revWalk, treeWalk, revCommit, versions.keySet());
+					if (!changedFiles.isEmpty()) {
+						String commiterName = revCommit.getAuthorIdent().getName();
+						for (String file : changedFiles) {
+							versions.get(file).add(commiterName, revCommit.getCommitTime(), revCommit);
+						}
+					}
+					revCommit.disposeBody();
+				}
+			} finally {
+				treeWalk.close();
+			}
+		} finally {
+			revWalk.close();
+		}
+		return versions;
+	}
+
+	/**
+	 * Enable or disable the persistent path history index. The index is
+	 * enabled by default.
+	 * 
+	 * @param pathIndexEnabled
+	 *            Set false to list versions by walking the whole history
+	 */
+	public void setPathIndexEnabled(boolean pathIndexEnabled) {
+		synchronized (pathIndexLock) {
+			this.pathIndexEnabled = pathIndexEnabled;
+			if (!pathIndexEnabled) {
+				pathIndex = null;
+			}
+		}
+	}
+
+	/**
+	 * List versions of the given file path by the path history index
+	 * 
+	 * @param index
+	 *            Snapshot of the path history index that is up to date with
+	 *            HEAD
+	 * @param file
+	 *            File path that needed versions belong to
+	 * @return Commit versions of the given file path
+	 * @throws IOException
+	 *             Throws when an IO exception occurs.
+	 */
+	protected VersionList listVersionsFromIndex(PathHistoryIndex.Snapshot index, String file) throws IOException {
+		List<PathHistoryIndex.Entry> entries = index.getHistory(file);
+		VersionList commits = new VersionList(entries.size());
+		RevWalk revWalk = new RevWalk(localRepo);
+		try {
+			for (PathHistoryIndex.Entry entry : entries) {
+				this.addVersion(revWalk, commits, revWalk.parseCommit(entry.getCommitId()));
+			}
+		} finally {
+			revWalk.close();
+		}
+		return commits;
+	}
+
+	/**
+	 * Diff a commit against its parents and find the requested paths it
+	 * changes
+	 * 
+	 * @param revWalk
+	 *            Walk used to parse the parents
+	 * @param treeWalk
+	 *            Recursive tree walk filtered to the requested paths
+	 * @param revCommit
+	 *            Commit to diff
+	 * @param files
+	 *            Requested file or directory paths
+	 * @return Requested paths that differ from every parent of the commit
+	 * @throws IOException
+	 *             Throws when an IO exception occurs.
+	 */
+	protected Set<String> findChangedFiles(RevWalk revWalk, TreeWalk treeWalk, RevCommit revCommit,
+			Set<String> files) throws IOException {
+		Set<String> changedFiles = new HashSet<String>();
+		treeWalk.reset();
+		treeWalk.addTree(revCommit.getTree());
+		int parentCount = revCommit.getParentCount();
+		for (int i = 0; i < parentCount; i++) {
+			treeWalk.addTree(revWalk.parseCommit(revCommit.getParent(i)).getTree());
+		}
+		while (treeWalk.next()) {
+			boolean differsFromAllParents = true;
+			for (int i = 1; i <= parentCount && differsFromAllParents; i++) {
+				differsFromAllParents = !treeWalk.idEqual(0, i);
+			}
+			if (!differsFromAllParents) {
+				continue;
+			}
+			// Route the changed file to itself and to its requested parents
+			String path = treeWalk.getPathString();
+			for (int end = path.length(); end > 0; end = path.lastIndexOf('/', end - 1)) {
+				String prefix = path.substring(0, end);
+				if (files.contains(prefix)) {
+					changedFiles.add(prefix);
+				}
+			}
+		}
+		return changedFiles;
+	}
+
+	/**
+	 * Get the path history index caught up with HEAD, opening it on first use.
+	 * Writers call this while they hold the write lock, right after they move
+	 * HEAD.
+	 * 
+	 * @return Path history index, null if it is disabled or cannot be used
+	 *         now. A failure only drops the loaded index, so it is reloaded
+	 *         and rebuilt if needed on the next call.
+	 */
+	protected PathHistoryIndex updatePathIndex() {
+		synchronized (pathIndexLock) {
+			Repository repository = localRepo;
+			if (!pathIndexEnabled || repository == null || repository.getDirectory() == null) {
+				return null;
+			}
+			try {
+				if (pathIndex == null) {
+					PathHistoryIndex index = new PathHistoryIndex(
+							new File(repository.getDirectory(), CommonConstants.GITVERSIONING_DIRECTORY));
+					index.load();
+					pathIndex = index;
+				}
+				pathIndex.catchUp(repository);
+			} catch (IOException e) {
+				// Fall back to walking the history until the index is loaded
+				// again from its files by the next call
+				logger.error(e.getMessage());
+				pathIndex = null;
+			} catch (RuntimeException e) {
+				// A failing index must not fail the write that updates it
+				logger.error(e.getMessage());
+				pathIndex = null;
+			}
+			return pathIndex;
+		}
+	}
+
+	/**
+	 * Get a snapshot of the path history index for a read, without waiting
+	 * for writers. Writers keep the index caught up, so the snapshot normally
+	 * matches HEAD. If HEAD is moved by another process the index is caught
+	 * up here only if the write lock is free, otherwise the caller walks the
+	 * history.
+	 * 
+	 * @return Snapshot that matches HEAD, null if the index is disabled or
+	 *         behind HEAD
+	 * @throws IOException
+	 *             Throws when an IO exception occurs.
+	 */
+	protected PathHistoryIndex.Snapshot readPathIndex() throws IOException {
+		if (!pathIndexEnabled) {
+			return null;
+		}
+		ObjectId head = localRepo.resolve(CommonConstants.GIT_TERM_HEAD);
+		PathHistoryIndex index = pathIndex;
+		if (index == null || !this.isIndexedUpTo(index.getSnapshot(), head)) {
+			if (!writeLock.tryLock()) {
+				return null;
+			}
+			try {
+				index = this.updatePathIndex();
+			} finally {
+				writeLock.unlock();
+			}
+		}
+		PathHistoryIndex.Snapshot snapshot = index == null ? null : index.getSnapshot();
+		return snapshot != null && this.isIndexedUpTo(snapshot, head) ? snapshot : null;
+	}
+
+	protected boolean isIndexedUpTo(PathHistoryIndex.Snapshot snapshot, ObjectId head) {
+		return head == null ? snapshot.getHead() == null : head.equals(snapshot.getHead());
+	}
+
+	/**
+	 * Append a commit to a version list and release the commit message, which
+	 * is not needed any more
+	 * 
+	 * @param revWalk
+	 *            Walk that parsed the commit, rereads a released message
+	 * @param versions
+	 *            Compact version list
+	 * @param revCommit
+	 *            Parsed commit
+	 * @throws IOException
+	 *             Throws when an IO exception occurs.
+	 */
+	protected void addVersion(RevWalk revWalk, VersionList versions, RevCommit revCommit) throws IOException {
+		revWalk.parseBody(revCommit);
+		versions.add(revCommit.getAuthorIdent().getName(), revCommit.getCommitTime(), revCommit);
+		revCommit.disposeBody();
+	}
+
+	/**
+	 * Get an old revision of a file by it's revision Id
+	 * 
+	 * @param revId
+	 *            Id of the revision that the file must belong
+	 * @param fileName
+	 *            Name of the file that is going to be re-visioned
+	 * @return File that belongs to given revision
+	 * @throws IOException
+	 *             Throws if an IO exception occurs
+	 */
+	public File getRevisionFileById(String revId, String fileName) throws IOException {
+		long startTime = this.startOperation(Operation.GET_REVISION_FILE);
+		boolean failed = true;
+		try {
+			File file = this.writeRevisionFile(revId, fileName);
+			failed = false;
+			return file;
+		} finally {
+			this.completeOperation(Operation.GET_REVISION_FILE, startTime, failed);
+		}
+	}
+
+	/**
+	 * Write an old revision of a file under the local path
+	 * 
+	 * @param revId
+	 *            Id of the revision that the file must belong
+	 * @param fileName
+	 *            Name of the file that is going to be re-visioned
+	 * @return Written file, null if the file does not exist in the revision
+	 * @throws IOException
+	 *             Throws if an IO exception occurs
+	 */
+	protected File writeRevisionFile(String revId, String fileName) throws IOException {
+		ObjectId blobId = this.findRevisionBlobId(revId, fileName);
+		if (blobId == null) {
+			return null;
+		}
+		// Create a folder to insert into revisions
+		File file = this.getRevisionFile(revId, fileName);
+		File largeFile = this.findLargeFile(blobId);
+		if (largeFile != null) {
+			file.getParentFile().mkdirs();
+			Files.copy(largeFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			return file;
+		}
+		MaterializationStore currentStore = materializationStore;
+		if (currentStore != null) {
+			File storedFile = currentStore.get(blobId);
+			if (storedFile == null) {
+				storedFile = currentStore.put(blobId, this.openBlob(blobId));
+			}
+			currentStore.link(storedFile, file);
+			return file;
+		}
+		file.getParentFile().mkdirs();
+		// Create the file once and stream the revision into it
+		FileOutputStream oFile = new FileOutputStream(file, false);
+		try {
+			this.copyBlobTo(blobId, oFile.getChannel());
+		} finally {
+			oFile.close();
+		}
+		// Return file
+		return file;
+	}
+
+	/**
+	 * Open an old revision of a file as a stream without writing it to disc
+	 * 
+	 * @param revId
+	 *            Id of the revision that the file must belong
+	 * @param fileName
+	 *            Name of the file that is going to be re-visioned
+	 * @return Stream of the file content, null if the file does not exist in
+	 *         the revision. The caller must close the stream.
+	 * @throws IOException
+	 *             Throws if an IO exception occurs
+	 */
+	public InputStream openRevision(String revId, String fileName) throws IOException {
+		ObjectId blobId = this.findRevisionBlobId(revId, fileName);
+		if (blobId == null) {
+			return null;
+		}
+		File largeFile = this.findLargeFile(blobId);
+		if (largeFile != null) {
+			return new FileInputStream(largeFile);
+		}
+		ByteBuffer content = this.getCachedContent(blobId);
+		if (content != null) {
+			return new ByteArrayInputStream(this.toBytes(content));
+		}
+		return this.openBlob(blobId).openStream();
+	}
+
+	/**
+	 * Read an old revision of a file into memory without writing it to disc
+	 * 
+	 * @param revId
+	 *            Id of the revision that the file must belong
+	 * @param fileName
+	 *            Name of the file that is going to be re-visioned
+	 * @return Content of the file, null if the file does not exist in the
+	 *         revision
+	 * @throws IOException
+	 *             Throws if an IO exception occurs
+	 */
+	public byte[] readRevision(String revId, String fileName) throws IOException {
+		ObjectId blobId = this.findRevisionBlobId(revId, fileName);
+		if (blobId == null) {
+			return null;
+		}
+		File largeFile = this.findLargeFile(blobId);
+		if (largeFile != null) {
+			return Files.readAllBytes(largeFile.toPath());
+		}
+		ByteBuffer content = this.getCachedContent(blobId);
+		if (content != null) {
+			return this.toBytes(content);
+		}
+		return this.openBlob(blobId).getBytes();
+	}
+
+	/**
+	 * Copy an old revision of a file to the given stream
+	 * 
+	 * @param revId
+	 *            Id of the revision that the file must belong
+	 * @param fileName
+	 *            Name of the file that is going to be re-visioned
+	 * @param out
+	 *            Stream to write the content to, it is not closed
+	 * @return Number of bytes copied, -1 if the file does not exist in the
+	 *         revision
+	 * @throws IOException
+	 *             Throws if an IO exception occurs
+	 */
+	public long copyRevisionTo(String revId, String fileName, OutputStream out) throws IOException {
+		ObjectId blobId = this.findRevisionBlobId(revId, fileName);
+		if (blobId == null) {
+			return -1;
+		}
+		File largeFile = this.findLargeFile(blobId);
+		if (largeFile != null) {
+			return Files.copy(largeFile.toPath(), out);
+		}
+		ByteBuffer content = this.getCachedContent(blobId);
+		if (content != null) {
+			long size = content.remaining();
+			Channels.newChannel(out).write(content);
+			return size;
+		}
+		ObjectLoader loader = this.openBlob(blobId);
+		loader.copyTo(out);
+		return loader.getSize();
+	}
+
+	/**
+	 * Copy an old revision of a file to the given channel
+	 * 
+	 * @param revId
+	 *            Id of the revision that the file must belong
+	 * @param fileName
+	 *            Name of the file that is going to be re-visioned
+	 * @param channel
+	 *            Channel to write the content to, it is not closed
+	 * @return Number of bytes copied, -1 if the file does not exist in the
+	 *         revision
+	 * @throws IOException
+	 *             Throws if an IO exception occurs
+	 */
+	public long copyRevisionTo(String revId, String fileName, WritableByteChannel channel) throws IOException {
+		ObjectId blobId = this.findRevisionBlobId(revId, fileName);
+		if (blobId == null) {
+			return -1;
+		}
+		File largeFile = this.findLargeFile(blobId);
+		if (largeFile != null) {
+			return Files.copy(largeFile.toPath(), Channels.newOutputStream(channel));
+		}
+		return this.copyBlobTo(blobId, channel);
+	}
+
+	/**
+	 * Compute the changes of a file between two revisions in memory
+	 * 
+	 * @param fileName
+	 *            Name of the file
+	 * @param oldRevId
+	 *            Id of the old revision
+	 * @param newRevId
+	 *            Id of the new revision
+	 * @return Changed line ranges, empty if the file is the same in both
+	 *         revisions, null if a revision cannot be found
+	 * @throws IOException
+	 *             Throws if an IO exception occurs
+	 */
+	public EditList diff(String fileName, String oldRevId, String newRevId) throws IOException {
+		return this.diff(fileName, oldRevId, newRevId, null);
+	}
+
+	/**
+	 * Compute the changes of a file between two revisions in memory and write
+	 * them as a unified diff. A file missing in a revision is compared as
+	 * empty.
+	 * 
+	 * @param fileName
+	 *            Name of the file
+	 * @param oldRevId
+	 *            Id of the old revision
+	 * @param newRevId
+	 *            Id of the new revision
+	 * @param out
+	 *            Stream to write the unified diff to, it is not closed. Null
+	 *            to only compute the changes.
+	 * @return Changed line ranges, empty if the file is the same in both
+	 *         revisions, null if a revision cannot be found
+	 * @throws IOException
+	 *             Throws if an IO exception occurs
+	 */
+	public EditList diff(String fileName, String oldRevId, String newRevId, OutputStream out) throws IOException {
+		CheckValueUtil.checkStringVal(fileName);
+		this.checkGit();
+		ObjectId oldCommitId = localRepo.resolve(oldRevId);
+		ObjectId newCommitId = localRepo.resolve(newRevId);
+		if (oldCommitId == null || newCommitId == null) {
+			logger.error(MessageFormat.format(MessageConstants.ERROR_REVISION_NOT_FOUND,
+					oldCommitId == null ? oldRevId : newRevId, fileName));
+			return null;
+		}
+		return this.diffBlobs(fileName, this.findBlobId(oldCommitId.getName(), fileName),
+				this.findBlobId(newCommitId.getName(), fileName), out);
+	}
+
+	/**
+	 * Compute the changes of a file in a revision against its previous
+	 * version and write them as a unified diff. If the revision did not
+	 * change the file, its last change before the revision is shown.
+	 * 
+	 * @param fileName
+	 *            Name of the file
+	 * @param revId
+	 *            Id of the revision
+	 * @param out
+	 *            Stream to write the unified diff to, it is not closed. Null
+	 *            to only compute the changes.
+	 * @return Changed line ranges, null if the file has no version at the
+	 *         revision
+	 * @throws IOException
+	 *             Throws if an IO exception occurs
+	 */
+	public EditList diffWithPrevious(String fileName, String revId, OutputStream out) throws IOException {
+		CheckValueUtil.checkStringVal(fileName);
+		this.checkGit();
+		ObjectId commitId = localRepo.resolve(revId);
+		RevCommit current = null;
+		RevCommit previous = null;
+		if (commitId != null) {
+			RevWalk revWalk = new RevWalk(localRepo);
+			try {
+				revWalk.setTreeFilter(
+						AndTreeFilter.create(PathFilterGroup.createFromStrings(fileName), TreeFilter.ANY_DIFF));
+				revWalk.markStart(revWalk.parseCommit(commitId));
+				current = revWalk.next();
+				previous = current == null ? null : revWalk.next();
+			} finally {
+				revWalk.close();
+			}
+		}
+		if (current == null) {
+			logger.error(MessageFormat.format(MessageConstants.ERROR_REVISION_NOT_FOUND, revId, fileName));
+			return null;
+		}
+		return this.diffBlobs(fileName,
+				previous == null ? null : this.findBlobId(previous.getName(), fileName),
+				this.findBlobId(current.getName(), fileName), out);
+	}
+
+	/**
+	 * Insert content versioned without the working tree as a blob. Content
+	 * that the large file store takes is stored there and a pointer to it is
+	 * inserted in its place.
+	 * 
+	 * @param treeCommitBuilder
+	 *            Builder to insert the blob with
+	 * @param path
+	 *            Path of the file in the repository
+	 * @param content
+	 *            Stream of the content, not closed by this method
+	 * @param length
+	 *            Exact number of bytes to read from the stream
+	 * @return Id of the inserted blob
+	 * @throws IOException
+	 *             Throws if an IO exception occurs
+	 */
+	protected ObjectId insertContent(TreeCommitBuilder treeCommitBuilder, String path, InputStream content,
+			long length) throws IOException {
+		LargeFileStore currentStore = largeFileStore;
+		if (currentStore == null || !currentStore.isLarge(length)) {
+			return treeCommitBuilder.insertBlob(content, length);
+		}
+		LargeFileStore.Pointer pointer = currentStore.store(content, length);
+		logger.info(MessageFormat.format(MessageConstants.INFO_LARGE_FILE_STORED, path, pointer.getOid()));
+		return treeCommitBuilder.insertBlob(pointer.toBytes());
+	}
+
+	/**
+	 * Stage a file through the large file store if it is large: the file is
+	 * stored once and a pointer to it is staged in its place
+	 * 
+	 * @param fileName
+	 *            Path of the file in the repository
+	 * @param file
+	 *            File in the local folder
+	 * @return True if the file is staged as a pointer, false if it must be
+	 *         added as usual
+	 * @throws IOException
+	 *             Throws if an IO exception occurs
+	 */
+	protected boolean addLargeFile(String fileName, File file) throws IOException {
+		LargeFileStore currentStore = largeFileStore;
+		if (currentStore == null || !currentStore.isLarge(file.length())) {
+			return false;
+		}
+		LargeFileStore.Pointer pointer = currentStore.store(file);
+		byte[] pointerContent = pointer.toBytes();
+		ObjectId blobId = new TreeCommitBuilder(localRepo).insertBlob(pointerContent);
+		this.contentVersioned(fileName, blobId, pointerContent.length);
+		logger.info(MessageFormat.format(MessageConstants.INFO_LARGE_FILE_STORED, fileName, pointer.getOid()));
+		return true;
+	}
+
+	/**
+	 * Resolve a blob that is a pointer to the large file store
+	 * 
+	 * @param blobId
+	 *            Id of the blob
+	 * @return Stored file, null if the store is disabled or the blob is no
+	 *         pointer
+	 * @throws IOException
+	 *             Throws if the pointed file is missing in the store
+	 */
+	protected File findLargeFile(ObjectId blobId) throws IOException {
+		LargeFileStore currentStore = largeFileStore;
+		if (currentStore == null) {
+			return null;
+		}
+		// Only the size is read unless the blob is small enough to be a pointer
+		ObjectLoader loader = localRepo.open(blobId, Constants.OBJ_BLOB);
+		if (loader.getSize() > CommonConstants.LARGE_FILE_MAX_POINTER_SIZE) {
+			return null;
+		}
+		LargeFileStore.Pointer pointer = LargeFileStore.Pointer.parse(loader.getCachedBytes());
+		return pointer == null ? null : currentStore.find(pointer);
+	}
+
+	/**
+	 * Set the store that large files are offloaded to. Files of the threshold
+	 * size or larger are then versioned as pointers, and revisions resolve
+	 * the pointers from the store.
+	 * 
+	 * @param largeFileStore
+	 *            Large file store, null to version every file in the object
+	 *            database
+	 */
+	public void setLargeFileStore(LargeFileStore largeFileStore) {
+		this.largeFileStore = largeFileStore;
+	}
+
+	public LargeFileStore getLargeFileStore() {
+		return largeFileStore;
+	}
+
+	/**
+	 * Set the store that getRevisionFileById materializes revisions through.
+	 * Revision files then become read only links to blobs stored once.
+	 * 
+	 * @param materializationStore
+	 *            Store of materialized blobs, null to write every revision
+	 *            file separately
+	 */
+	public void setMaterializationStore(MaterializationStore materializationStore) {
+		this.materializationStore = materializationStore;
+	}
+
+	public MaterializationStore getMaterializationStore() {
+		return materializationStore;
+	}
+
+	/**
+	 * Set the cache of computed diffs
+	 * 
+	 * @param diffCache
+	 *            Cache of edit lists, null to disable caching
+	 */
+	public void setDiffCache(DiffCache diffCache) {
+		this.diffCache = diffCache;
+	}
+
+	/**
+	 * Get the cache of computed diffs
+	 * 
+	 * @return Cache of edit lists, null if caching is disabled
+	 */
+	public DiffCache getDiffCache() {
+		return diffCache;
+	}
+
+	/**
+	 * Compute the changes between two blobs with the histogram diff. Equal
+	 * blobs are detected by their ids without reading them, and the edit list
+	 * of a pair is computed once while it stays in the diff cache.
+	 * 
+	 * @param fileName
+	 *            Name of the file, used in the diff header
+	 * @param oldBlobId
+	 *            Id of the old content, null for no content
+	 * @param newBlobId
+	 *            Id of the new content, null for no content
+	 * @param out
+	 *            Stream to write the unified diff to, null to skip it
+	 * @return Changed line ranges, a copy that the caller may change
+	 * @throws IOException
+	 *             Throws if an IO exception occurs
+	 */
+	protected EditList diffBlobs(String fileName, ObjectId oldBlobId, ObjectId newBlobId, OutputStream out)
+			throws IOException {
+		if (oldBlobId == null ? newBlobId == null : oldBlobId.equals(newBlobId)) {
+			return new EditList();
+		}
+		long startTime = this.startOperation(Operation.DIFF);
+		boolean failed = true;
+		try {
+			DiffCache currentDiffCache = diffCache;
+			EditList editList = currentDiffCache == null ? null : currentDiffCache.get(oldBlobId, newBlobId);
+			if (editList == null || out != null) {
+				byte[] oldContent = this.readBlob(oldBlobId);
+				byte[] newContent = this.readBlob(newBlobId);
+				RawText oldText = new RawText(oldContent);
+				RawText newText = new RawText(newContent);
+				boolean binary = RawText.isBinary(oldContent) || RawText.isBinary(newContent);
+				if (editList == null) {
+					if (binary) {
+						// Lines mean nothing in binary content, it is replaced as a whole
+						editList = EditList.singleton(new Edit(0, oldText.size(), 0, newText.size()));
+					} else {
+						editList = DiffAlgorithm.getAlgorithm(SupportedAlgorithm.HISTOGRAM)
+								.diff(RawTextComparator.DEFAULT, oldText, newText);
+					}
+					if (currentDiffCache != null) {
+						currentDiffCache.put(oldBlobId, newBlobId, editList);
+					}
+				}
+				if (out != null) {
+					this.writeUnifiedDiff(fileName, oldBlobId, newBlobId, oldText, newText, editList, binary, out);
+				}
+			}
+			failed = false;
+			return this.copyEditList(editList);
+		} finally {
+			this.completeOperation(Operation.DIFF, startTime, failed);
+		}
+	}
+
+	/**
+	 * Copy an edit list and its edits, so that a caller can change the copy
+	 * without changing the edit list shared by the diff cache
+	 * 
+	 * @param editList
+	 *            Edit list to copy
+	 * @return Copy of the edit list
+	 */
+	protected EditList copyEditList(EditList editList) {
+		EditList copy = new EditList(editList.size());
+		for (Edit edit : editList) {
+			copy.add(new Edit(edit.getBeginA(), edit.getEndA(), edit.getBeginB(), edit.getEndB()));
+		}
+		return copy;
+	}
+
+	/**
+	 * Write changes in the unified diff format
+	 * 
+	 * @param fileName
+	 *            Name of the file
+	 * @param oldBlobId
+	 *            Id of the old content, null for no content
+	 * @param newBlobId
+	 *            Id of the new content, null for no content
+	 * @param oldText
+	 *            Old content
+	 * @param newText
+	 *            New content
+	 * @param editList
+	 *            Changes between the contents
+	 * @param binary
+	 *            True if one of the contents is binary
+	 * @param out
+	 *            Stream to write to
+	 * @throws IOException
+	 *             Throws if an IO exception occurs
+	 */
+	protected void writeUnifiedDiff(String fileName, ObjectId oldBlobId, ObjectId newBlobId, RawText oldText,
+			RawText newText, EditList editList, boolean binary, OutputStream out) throws IOException {
+		String oldName = oldBlobId == null ? DiffEntry.DEV_NULL : CommonConstants.DIFF_OLD_PREFIX + fileName;
+		String newName = newBlobId == null ? DiffEntry.DEV_NULL : CommonConstants.DIFF_NEW_PREFIX + fileName;
+		if (binary) {
+			out.write(Constants.encode(MessageFormat.format(CommonConstants.DIFF_BINARY_LINE, oldName, newName)));
+			return;
+		}
+		out.write(Constants.encode(MessageFormat.format(CommonConstants.DIFF_HEADER_LINES, oldName, newName)));
+		DiffFormatter diffFormatter = new DiffFormatter(out);
+		diffFormatter.format(editList, oldText, newText);
+		diffFormatter.flush();
+	}
+
+	/**
+	 * Read the whole content of a blob, through the cache if enabled
+	 * 
+	 * @param blobId
+	 *            Id of the blob, null for no content
+	 * @return Content of the blob
+	 * @throws IOException
+	 *             Throws if an IO exception occurs
+	 */
+	protected byte[] readBlob(ObjectId blobId) throws IOException {
+		if (blobId == null) {
+			return new byte[0];
+		}
+		File largeFile = this.findLargeFile(blobId);
+		if (largeFile != null) {
+			return Files.readAllBytes(largeFile.toPath());
+		}
+		ByteBuffer content = this.getCachedContent(blobId);
+		if (content != null) {
+			return this.toBytes(content);
+		}
+		return this.openBlob(blobId).getBytes();
+	}
+
+	/**
+	 * Set the cache used while reading old revisions
+	 * 
+	 * @param blobCache
+	 *            Cache of revision contents, null to disable caching
+	 */
+	public void setBlobCache(RevisionBlobCache blobCache) {
+		this.blobCache = blobCache;
+	}
+
+	/**
+	 * Get the cache used while reading old revisions
+	 * 
+	 * @return Cache of revision contents, null if caching is disabled
+	 */
+	public RevisionBlobCache getBlobCache() {
+		return blobCache;
+	}
+
+	/**
+	 * Find the blob id of a file in the given revision and log if missing
+	 * 
+	 * @param revId
+	 *            Id of the revision that the file must belong
+	 * @param fileName
+	 *            Name of the file
+	 * @return Id of the blob, null if the file does not exist in the revision
+	 * @throws IOException
+	 *             Throws if an IO exception occurs
+	 */
+	protected ObjectId findRevisionBlobId(String revId, String fileName) throws IOException {
+		ObjectId blobId = this.findBlobId(revId, fileName);
+		if (blobId == null) {
+			logger.error(MessageFormat.format(MessageConstants.ERROR_REVISION_NOT_FOUND, revId, fileName));
+		}
+		return blobId;
+	}
+
+	/**
+	 * Find the blob id of a file in the given revision
+	 * 
+	 * @param revId
+	 *            Id of the revision that the file must belong
+	 * @param fileName
+	 *            Name of the file
+	 * @return Id of the blob, null if the file does not exist in the revision
+	 * @throws IOException
+	 *             Throws if an IO exception occurs
+	 */
+	protected ObjectId findBlobId(String revId, String fileName) throws IOException {
+		this.checkGit();
+		// Get object id by revision id
+		ObjectId commitId = localRepo.resolve(revId);
+		if (commitId == null) {
+			return null;
+		}
+		RevisionBlobCache currentBlobCache = blobCache;
+		if (currentBlobCache != null) {
+			ObjectId blobId = currentBlobCache.getBlobId(commitId, fileName);
+			if (blobId != null) {
+				return blobId;
+			}
+		}
+		RevWalk revWalk = new RevWalk(localRepo);
+		try {
+			RevCommit commit = revWalk.parseCommit(commitId);
+			TreeWalk treeWalk = TreeWalk.forPath(localRepo, fileName, commit.getTree());
+			if (treeWalk == null) {
+				return null;
+			}
+			try {
+				ObjectId blobId = treeWalk.getObjectId(0);
+				if (currentBlobCache != null) {
+					currentBlobCache.putBlobId(commitId, fileName, blobId);
+				}
+				return blobId;
+			} finally {
+				treeWalk.close();
+			}
+		} finally {
+			revWalk.close();
+		}
+	}
+
+	/**
+	 * Get the content of a blob through the cache, loading it into the cache
+	 * on a miss
+	 * 
+	 * @param blobId
+	 *            Id of the blob
+	 * @return Read only content buffer, null if caching is disabled or the
+	 *         blob is too large to cache
+	 * @throws IOException
+	 *             Throws if an IO exception occurs
+	 */
+	protected ByteBuffer getCachedContent(ObjectId blobId) throws IOException {
+		RevisionBlobCache currentBlobCache = blobCache;
+		if (currentBlobCache == null) {
+			return null;
+		}
+		ByteBuffer content = currentBlobCache.getContent(blobId);
+		if (content == null) {
+			// Bytes are counted only when read here, a blob too large to cache
+			// is counted by the caller that streams it
+			ObjectLoader loader = localRepo.open(blobId, Constants.OBJ_BLOB);
+			if (!loader.isLarge() && currentBlobCache.accepts(loader.getSize())) {
+				metrics.bytesRead(loader.getSize());
+				content = currentBlobCache.putContent(blobId, loader.getCachedBytes());
+			}
+		}
+		return content;
+	}
+
+	/**
+	 * Copy the content of a blob to a channel, through the cache if enabled
+	 * 
+	 * @param blobId
+	 *            Id of the blob
+	 * @param channel
+	 *            Channel to write the content to
+	 * @return Number of bytes copied
+	 * @throws IOException
+	 *             Throws if an IO exception occurs
+	 */
+	protected long copyBlobTo(ObjectId blobId, WritableByteChannel channel) throws IOException {
+		ByteBuffer content = this.getCachedContent(blobId);
+		if (content == null) {
+			ObjectLoader loader = this.openBlob(blobId);
+			if (loader.isLarge()) {
+				loader.copyTo(Channels.newOutputStream(channel));
+				return loader.getSize();
+			}
+			content = ByteBuffer.wrap(loader.getCachedBytes());
+		}
+		long size = content.remaining();
+		while (content.hasRemaining()) {
+			channel.write(content);
+		}
+		return size;
+	}
+
+	/**
+	 * Open a blob of the object store and count the bytes read
+	 * 
+	 * @param blobId
+	 *            Id of the blob
+	 * @return Loader of the blob
+	 * @throws IOException
+	 *             Throws if an IO exception occurs
+	 */
+	protected ObjectLoader openBlob(ObjectId blobId) throws IOException {
+		ObjectLoader loader = localRepo.open(blobId, Constants.OBJ_BLOB);
+		metrics.bytesRead(loader.getSize());
+		return loader;
+	}
+
+	/**
+	 * Set the receiver of the operation measurements
+	 * 
+	 * @param metrics
+	 *            Metrics implementation, DefaultVersionerMetrics by default
+	 */
+	public void setMetrics(VersionerMetrics metrics) {
+		if (metrics == null) {
+			throw new IllegalArgumentException(CommonConstants.ERROR_EMPTY_ARGUMENT);
+		}
+		this.metrics = metrics;
+	}
+
+	public VersionerMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Report the start of an operation to the metrics
+	 * 
+	 * @param operation
+	 *            Started operation
+	 * @return Start time in nanoseconds
+	 */
+	protected long startOperation(Operation operation) {
+		metrics.started(operation);
+		return System.nanoTime();
+	}
+
+	/**
+	 * Report the end of an operation to the metrics
+	 * 
+	 * @param operation
+	 *            Ended operation
+	 * @param startTime
+	 *            Start time returned by startOperation
+	 * @param failed
+	 *            True if the operation threw an exception
+	 */
+	protected void completeOperation(Operation operation, long startTime, boolean failed) {
+		metrics.completed(operation, System.nanoTime() - startTime, failed);
+		if (operation.isWrite()) {
+			lastWriteTime = System.currentTimeMillis();
+		}
+	}
+
+	/**
+	 * Get the time the last write operation ended, used to find quiet periods
+	 * 
+	 * @return Time in milliseconds, zero if nothing is written yet
+	 */
+	public long getLastWriteTime() {
+		return lastWriteTime;
+	}
+
+	/**
+	 * Copy the remaining content of a buffer into a new array
+	 * 
+	 * @param content
+	 *            Buffer to copy
+	 * @return Copy of the content
+	 */
+	protected byte[] toBytes(ByteBuffer content) {
+		byte[] bytes = new byte[content.remaining()];
+		content.get(bytes);
+		return bytes;
+	}
+
+	/**
+	 * Get the file that a revision is materialized to, as
+	 * localPath/name/revId.extension
+	 * 
+	 * @param revId
+	 *            Id of the revision
+	 * @param fileName
+	 *            Name of the file
+	 * @return File of the revision
+	 */
+	protected File getRevisionFile(String revId, String fileName) {
+		return new File(getLocalPath() + File.separator + this.getRevisionPath(revId, fileName));
+	}
+
+	/**
+	 * Get the path of a revision relative to the folder it is materialized
+	 * in, as name/revId.extension
+	 * 
+	 * @param revId
+	 *            Id of the revision
+	 * @param fileName
+	 *            Name of the file
+	 * @return Relative path of the revision
+	 */
+	protected String getRevisionPath(String revId, String fileName) {
+		int i = fileName.lastIndexOf(CommonConstants.DOT);
+		String fileExtension = i < 0 ? StringUtils.EMPTY : fileName.substring(i);
 		// Remove extension from file name
-		fileName = fileName.replaceFirst(CommonConstants.REGEX_FILE_EXTENSION, StringUtils.EMPTY);
-		File file = new File(getLocalPath() + File.separator + fileName + File.separator + revId + fileExtension);
-		file.getParentFile().mkdirs();
-		// Create path if does not exist
-		FileWriter writer = new FileWriter(file);
-		writer.close();
-		// Create file
-		FileOutputStream oFile;
-		file.createNewFile();
-		oFile = new FileOutputStream(file, false);
-		int cByte;
-		while ((cByte = in.read()) != -1) {
-			oFile.write(cByte);
-		}
-		oFile.close();
-		// Return file
-		return file;
+		String name = fileName.replaceFirst(CommonConstants.REGEX_FILE_EXTENSION, StringUtils.EMPTY);
+		return name + File.separator + revId + fileExtension;
 	}
 
 	/**
@@ -395,6 +2365,161 @@ public class GitVersioner {
 		}
 	}
 
+	/**
+	 * Restore the branch and the index entries of the given files to the state
+	 * before a failed batch. Errors are only logged so that the original
+	 * failure reaches the caller.
+	 * 
+	 * @param previousHead
+	 *            Commit that HEAD pointed to before the batch, null if the
+	 *            branch was unborn
+	 * @param createdCommit
+	 *            Commit made by the batch, null if the commit failed. HEAD is
+	 *            moved back only while it still points to this commit.
+	 * @param fileNames
+	 *            Files that were staged by the batch
+	 * @return False if the commit is kept since other writers have built on
+	 *         it, then the index is left alone and the batch is not failed
+	 */
+	protected boolean rollback(ObjectId previousHead, ObjectId createdCommit, Collection<String> fileNames) {
+		try {
+			// Move the branch back but keep the index as it is
+			if (createdCommit != null && !this.restoreHead(previousHead, createdCommit)) {
+				return false;
+			}
+			if (previousHead != null) {
+				// Then restore only the entries of the batch in the index
+				ResetCommand resetCommand = git.reset().setRef(previousHead.getName());
+				for (String fileName : fileNames) {
+					resetCommand.addPath(fileName);
+				}
+				resetCommand.call();
+			} else {
+				DirCache dirCache = localRepo.lockDirCache();
+				try {
+					DirCacheEditor editor = dirCache.editor();
+					for (String fileName : fileNames) {
+						editor.add(new DirCacheEditor.DeletePath(fileName));
+					}
+					editor.commit();
+				} finally {
+					dirCache.unlock();
+				}
+			}
+			this.updatePathIndex();
+			logger.warn(MessageFormat.format(MessageConstants.WARNING_BATCH_ROLLED_BACK, fileNames.size()));
+		} catch (IOException e) {
+			logger.error(e.getMessage());
+		} catch (GitAPIException e) {
+			logger.error(e.getMessage());
+		}
+		return true;
+	}
+
+	/**
+	 * Move HEAD from a commit of a failed batch back to the previous commit.
+	 * The move is a compare and swap: if another writer has moved HEAD
+	 * meanwhile, HEAD and the commits of the other writer are left alone.
+	 * 
+	 * @param previousHead
+	 *            Commit that HEAD pointed to before the batch, null if the
+	 *            branch was unborn
+	 * @param createdCommit
+	 *            Commit made by the batch, null if no commit was made
+	 * @return True if HEAD is moved back
+	 * @throws IOException
+	 *             Throws if an IO exception occurs
+	 */
+	protected boolean restoreHead(ObjectId previousHead, ObjectId createdCommit) throws IOException {
+		if (createdCommit == null) {
+			return false;
+		}
+		boolean restored;
+		if (previousHead == null) {
+			restored = this.deleteCurrentBranch(createdCommit);
+		} else {
+			RefUpdate refUpdate = localRepo.updateRef(Constants.HEAD);
+			refUpdate.setExpectedOldObjectId(createdCommit);
+			refUpdate.setNewObjectId(previousHead);
+			restored = refUpdate.forceUpdate() == RefUpdate.Result.FORCED;
+		}
+		return restored;
+	}
+
+	/**
+	 * Log the failure of a batch whose commit could not be rolled back since
+	 * another writer has moved HEAD on top of it. The commit is part of the
+	 * history then, so the batch is reported as versioned.
+	 * 
+	 * @param revCommit
+	 *            Commit of the batch
+	 * @param e
+	 *            Failure that happened after the commit
+	 */
+	private void commitKept(RevCommit revCommit, Exception e) {
+		logger.warn(MessageFormat.format(MessageConstants.WARNING_HEAD_NOT_RESTORED, revCommit.getName(),
+				e.getMessage()));
+	}
+
+	/**
+	 * Point the index entry of a file to content versioned without the
+	 * working tree. The entry gets no modification time, so the file on disc
+	 * is compared by content when it is added again.
+	 * 
+	 * @param path
+	 *            Path of the file inside of the repository
+	 * @param blobId
+	 *            Id of the versioned content
+	 * @param length
+	 *            Length of the versioned content
+	 * @throws IOException
+	 *             Throws if an IO exception occurs
+	 */
+	protected void contentVersioned(String path, final ObjectId blobId, final long length) throws IOException {
+		DirCache dirCache = localRepo.lockDirCache();
+		try {
+			DirCacheEditor editor = dirCache.editor();
+			editor.add(new DirCacheEditor.PathEdit(path) {
+				@Override
+				public void apply(DirCacheEntry entry) {
+					entry.setFileMode(FileMode.REGULAR_FILE);
+					entry.setObjectId(blobId);
+					entry.setLength(length);
+					entry.setLastModified(0L);
+				}
+			});
+			editor.commit();
+		} finally {
+			dirCache.unlock();
+		}
+	}
+
+	/**
+	 * Delete the branch that HEAD points to so that the branch becomes unborn
+	 * again. JGIT refuses to delete the current branch, so HEAD is linked to a
+	 * temporary name while the branch is deleted.
+	 * 
+	 * @param expectedHead
+	 *            Commit the branch must point to, the branch is kept if it
+	 *            points to another commit
+	 * @return True if the branch is deleted
+	 * @throws IOException
+	 *             Throws if an IO exception occurs
+	 */
+	protected boolean deleteCurrentBranch(ObjectId expectedHead) throws IOException {
+		String branch = localRepo.getFullBranch();
+		localRepo.updateRef(Constants.HEAD).link(Constants.R_HEADS + CommonConstants.TEMP_BRANCH_NAME);
+		try {
+			RefUpdate refUpdate = localRepo.updateRef(branch);
+			refUpdate.setExpectedOldObjectId(expectedHead);
+			refUpdate.setForceUpdate(true);
+			refUpdate.delete();
+		} finally {
+			localRepo.updateRef(Constants.HEAD).link(branch);
+		}
+		return localRepo.resolve(branch) == null;
+	}
+
 	/**
 	 * Check if repository at the given uri is valid
 	 * 
@@ -0,0 +1,321 @@
+package com.btasdemir.gitversioning.versioner;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.storage.file.WindowCacheConfig;
+
+import com.btasdemir.gitversioning.constant.CommonConstants;
+import com.btasdemir.gitversioning.constant.MessageConstants;
+import com.btasdemir.gitversioning.util.CheckValueUtil;
+
+/**
+ * Pool of versioners of many repositories, keyed by local path.
+ * 
+ * A versioner is leased with acquire and given back with release. Only a
+ * limited number of repositories are kept open: when the limit is exceeded
+ * the least recently used repositories that are not leased are closed, and
+ * repositories that stay unused longer than the idle timeout are closed by a
+ * background thread. A closed repository is dropped from the registry with
+ * its versioner and caches, and the next acquire opens it with a new
+ * versioner. Repositories are closed outside of the registry lock, so a slow
+ * close does not stall other callers. All repositories share the JGIT pack
+ * window cache, which can be sized with the window cache configuration.
+ * 
+ * @author bahadir.tasdemir@hotmail.com.tr
+ */
+public class GitVersionerRegistry {
+
+	protected final int maxOpenRepositories;
+	protected final long idleTimeoutMillis;
+	// Access ordered, the eldest entry is the least recently used one
+	protected final Map<String, RegistryEntry> entries = new LinkedHashMap<String, RegistryEntry>(16, 0.75f, true);
+	protected final ScheduledExecutorService executorService;
+	protected long openedCount;
+	protected long evictedCount;
+	protected boolean closed;
+	protected static final Logger logger = LogManager.getLogger(GitVersionerRegistry.class);
+
+	public GitVersionerRegistry(int maxOpenRepositories, long idleTimeoutMillis) {
+		if (maxOpenRepositories <= 0 || idleTimeoutMillis <= 0) {
+			throw new IllegalArgumentException(CommonConstants.ERROR_EMPTY_ARGUMENT);
+		}
+		this.maxOpenRepositories = maxOpenRepositories;
+		this.idleTimeoutMillis = idleTimeoutMillis;
+		this.executorService = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, CommonConstants.REGISTRY_EVICTOR_THREAD_NAME);
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		long period = Math.max(idleTimeoutMillis / 2, 1L);
+		this.executorService.scheduleWithFixedDelay(new Runnable() {
+			public void run() {
+				evictIdle();
+			}
+		}, period, period, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Create a registry and size the pack window cache shared by all of the
+	 * repositories of the process
+	 * 
+	 * @param maxOpenRepositories
+	 *            Maximum number of repositories kept open
+	 * @param idleTimeoutMillis
+	 *            Time after which an unused repository is closed
+	 * @param windowCacheConfig
+	 *            Window cache configuration to install
+	 */
+	public GitVersionerRegistry(int maxOpenRepositories, long idleTimeoutMillis, WindowCacheConfig windowCacheConfig) {
+		this(maxOpenRepositories, idleTimeoutMillis);
+		windowCacheConfig.install();
+	}
+
+	/**
+	 * Lease the versioner of a local repository, opening the repository if it
+	 * is not open. The versioner must be given back with release when the
+	 * caller is done with it.
+	 * 
+	 * @param localPath
+	 *            Path of the local repository
+	 * @param remotePath
+	 *            Path of the remote repository, used when the versioner is
+	 *            created
+	 * @param userName
+	 *            User name of the remote, used when the versioner is created
+	 * @param password
+	 *            Password of the remote, used when the versioner is created
+	 * @param cloneIfRepoDoesNotExist
+	 *            Set true to clone the remote if the local repository does not
+	 *            exist, used when the versioner is created
+	 * @return Versioner with an open repository
+	 * @throws IOException
+	 *             Throws if an IO exception occurs
+	 * @throws GitAPIException
+	 *             Throws if a GIT API exception occurs
+	 */
+	public GitVersioner acquire(String localPath, String remotePath, String userName, String password,
+			boolean cloneIfRepoDoesNotExist) throws IOException, GitAPIException {
+		CheckValueUtil.checkStringVal(localPath);
+		String key = this.toKey(localPath);
+		RegistryEntry entry;
+		List<RegistryEntry> evicted = new ArrayList<RegistryEntry>();
+		synchronized (this) {
+			if (closed) {
+				throw new IllegalStateException(MessageConstants.ERROR_REGISTRY_CLOSED);
+			}
+			entry = entries.get(key);
+			if (entry == null) {
+				entry = new RegistryEntry(
+						new GitVersioner(localPath, remotePath, userName, password, cloneIfRepoDoesNotExist));
+				entries.put(key, entry);
+				openedCount++;
+			}
+			entry.leases++;
+			entry.lastUsed = System.currentTimeMillis();
+			this.evictOverflow(evicted);
+		}
+		this.closeEvicted(evicted);
+		// Open outside of the registry lock, other repositories are not blocked
+		boolean opened = false;
+		try {
+			entry.gitVersioner.init();
+			opened = true;
+		} finally {
+			if (!opened) {
+				this.release(entry.gitVersioner);
+			}
+		}
+		return entry.gitVersioner;
+	}
+
+	/**
+	 * Lease the versioner of a local repository that is not bound to a remote
+	 * 
+	 * @param localPath
+	 *            Path of the local repository
+	 * @return Versioner with an open repository
+	 * @throws IOException
+	 *             Throws if an IO exception occurs
+	 * @throws GitAPIException
+	 *             Throws if a GIT API exception occurs
+	 */
+	public GitVersioner acquire(String localPath) throws IOException, GitAPIException {
+		return this.acquire(localPath, "", "", "", false);
+	}
+
+	/**
+	 * Give back a leased versioner. The repository stays open until it is
+	 * evicted.
+	 * 
+	 * @param gitVersioner
+	 *            Versioner returned by acquire
+	 */
+	public void release(GitVersioner gitVersioner) {
+		List<RegistryEntry> evicted = new ArrayList<RegistryEntry>();
+		synchronized (this) {
+			RegistryEntry entry = entries.get(this.toKey(gitVersioner.getLocalPath()));
+			if (entry == null || entry.gitVersioner != gitVersioner || entry.leases == 0) {
+				return;
+			}
+			entry.leases--;
+			entry.lastUsed = System.currentTimeMillis();
+			this.evictOverflow(evicted);
+		}
+		this.closeEvicted(evicted);
+	}
+
+	/**
+	 * Close repositories that are not leased and were not used within the
+	 * idle timeout
+	 */
+	public void evictIdle() {
+		List<RegistryEntry> evicted = new ArrayList<RegistryEntry>();
+		synchronized (this) {
+			long oldestAllowed = System.currentTimeMillis() - idleTimeoutMillis;
+			Iterator<RegistryEntry> iterator = entries.values().iterator();
+			while (iterator.hasNext()) {
+				RegistryEntry entry = iterator.next();
+				if (entry.leases > 0) {
+					continue;
+				}
+				// Entries are in the order of their last use, the rest is newer
+				if (entry.lastUsed > oldestAllowed) {
+					break;
+				}
+				iterator.remove();
+				evicted.add(entry);
+			}
+		}
+		this.closeEvicted(evicted);
+	}
+
+	/**
+	 * Get number of repositories that are currently open
+	 * 
+	 * @return Number of open repositories
+	 */
+	public synchronized int getOpenCount() {
+		return entries.size();
+	}
+
+	/**
+	 * Get number of times a repository is opened, including reopens after
+	 * eviction
+	 * 
+	 * @return Number of opens
+	 */
+	public synchronized long getOpenedCount() {
+		return openedCount;
+	}
+
+	/**
+	 * Get number of times a repository is closed by eviction
+	 * 
+	 * @return Number of evictions
+	 */
+	public synchronized long getEvictedCount() {
+		return evictedCount;
+	}
+
+	/**
+	 * Stop the background eviction and close all of the repositories
+	 */
+	public void close() {
+		List<GitVersioner> gitVersioners = new ArrayList<GitVersioner>();
+		synchronized (this) {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			for (RegistryEntry entry : entries.values()) {
+				gitVersioners.add(entry.gitVersioner);
+			}
+			entries.clear();
+		}
+		executorService.shutdownNow();
+		for (GitVersioner gitVersioner : gitVersioners) {
+			gitVersioner.close();
+		}
+	}
+
+	/**
+	 * Remove least recently used entries that are not leased until the number
+	 * of open repositories is within the limit. Only leased entries at the
+	 * head of the access order are skipped, the scan stops at the limit.
+	 * 
+	 * @param evicted
+	 *            List to collect the removed entries, which must be closed
+	 *            after leaving the registry lock
+	 */
+	protected void evictOverflow(List<RegistryEntry> evicted) {
+		Iterator<RegistryEntry> iterator = entries.values().iterator();
+		while (entries.size() > maxOpenRepositories && iterator.hasNext()) {
+			RegistryEntry entry = iterator.next();
+			if (entry.leases == 0) {
+				iterator.remove();
+				evicted.add(entry);
+			}
+		}
+	}
+
+	/**
+	 * Close the repositories of removed entries, called without holding the
+	 * registry lock
+	 * 
+	 * @param evicted
+	 *            Removed entries
+	 */
+	protected void closeEvicted(List<RegistryEntry> evicted) {
+		for (RegistryEntry entry : evicted) {
+			entry.gitVersioner.close();
+			synchronized (this) {
+				evictedCount++;
+			}
+			logger.info(
+					MessageFormat.format(MessageConstants.INFO_REPOSITORY_EVICTED, entry.gitVersioner.getLocalPath()));
+		}
+	}
+
+	/**
+	 * Normalize a local path to its registry key
+	 * 
+	 * @param localPath
+	 *            Path of the local repository
+	 * @return Absolute path
+	 */
+	protected String toKey(String localPath) {
+		return new File(localPath).getAbsolutePath();
+	}
+
+	/**
+	 * Versioner of a repository and its usage
+	 */
+	protected static class RegistryEntry {
+
+		protected final GitVersioner gitVersioner;
+		protected int leases;
+		protected long lastUsed;
+
+		protected RegistryEntry(GitVersioner gitVersioner) {
+			this.gitVersioner = gitVersioner;
+		}
+
+	}
+
+}
@@ -1,16 +1,42 @@
 package com.btasdemir.gitversioning.versioner;
 
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import javax.management.JMException;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.eclipse.jgit.api.errors.GitAPIException;
 import org.eclipse.jgit.api.errors.NoFilepatternException;
 import org.eclipse.jgit.api.errors.NoHeadException;
+import org.eclipse.jgit.util.RawParseUtils;
 
+import com.btasdemir.gitversioning.cache.MaterializationStore;
+import com.btasdemir.gitversioning.cache.RevisionBlobCache;
+import com.btasdemir.gitversioning.constant.CommonConstants;
+import com.btasdemir.gitversioning.constant.MessageConstants;
+import com.btasdemir.gitversioning.metrics.DefaultVersionerMetrics;
+import com.btasdemir.gitversioning.metrics.VersionerMetrics;
+import com.btasdemir.gitversioning.model.CloneOptions;
 import com.btasdemir.gitversioning.model.Version;
+import com.btasdemir.gitversioning.model.VersionList;
+import com.btasdemir.gitversioning.model.VersionQuery;
+import com.btasdemir.gitversioning.store.LargeFileStore;
 
 /**
  * Wrapper class of the GIT versioner library
@@ -20,6 +46,11 @@ import com.btasdemir.gitversioning.model.Version;
 public class GitVersionerWrapper {
 
 	protected GitVersioner gitVersioner;
+	protected volatile GroupCommitter groupCommitter;
+	protected volatile PushScheduler pushScheduler;
+	protected volatile AutoVersioner autoVersioner;
+	protected volatile MaintenanceScheduler maintenanceScheduler;
+	protected volatile RemoteSyncService remoteSyncService;
 	protected static final Logger logger = LogManager.getLogger(GitVersionerWrapper.class);
 
 	public GitVersionerWrapper(String localPath, String remotePath, String userName, String password,
@@ -34,6 +65,79 @@ public class GitVersionerWrapper {
 		}
 	}
 
+	/**
+	 * Create a wrapper, optionally without waiting for the remote. A deferred
+	 * wrapper serves reads from the local repository while it pulls in the
+	 * background, awaitReady waits for the pull.
+	 * 
+	 * @param localPath
+	 *            Path of the local repository
+	 * @param remotePath
+	 *            URI of the remote repository
+	 * @param userName
+	 *            User name of the remote
+	 * @param password
+	 *            Password of the remote
+	 * @param cloneIfRepoDoesNotExist
+	 *            Set true to clone and pull from the remote
+	 * @param deferInit
+	 *            Set true to pull from the remote in the background
+	 */
+	public GitVersionerWrapper(String localPath, String remotePath, String userName, String password,
+			boolean cloneIfRepoDoesNotExist, boolean deferInit) {
+		this.gitVersioner = new GitVersioner(localPath, remotePath, userName, password, cloneIfRepoDoesNotExist);
+		if (deferInit) {
+			this.gitVersioner.initAsync();
+			return;
+		}
+		try {
+			this.gitVersioner.init();
+		} catch (IOException e) {
+			logger.error(e.getMessage());
+		} catch (GitAPIException e) {
+			logger.error(e.getMessage());
+		}
+	}
+
+	/**
+	 * Create a wrapper that clones the repository with the given options if
+	 * it does not exist on local
+	 * 
+	 * @param localPath
+	 *            Path of the local repository
+	 * @param remotePath
+	 *            URI of the remote repository
+	 * @param userName
+	 *            User name of the remote
+	 * @param password
+	 *            Password of the remote
+	 * @param cloneOptions
+	 *            Options of the clone, such as a single branch or no checkout
+	 */
+	public GitVersionerWrapper(String localPath, String remotePath, String userName, String password,
+			CloneOptions cloneOptions) {
+		this.gitVersioner = new GitVersioner(localPath, remotePath, userName, password, cloneOptions);
+		try {
+			this.gitVersioner.init();
+		} catch (IOException e) {
+			logger.error(e.getMessage());
+		} catch (GitAPIException e) {
+			logger.error(e.getMessage());
+		}
+	}
+
+	/**
+	 * Wrap an existing versioner, for example one leased from a
+	 * GitVersionerRegistry. Such a versioner must be given back to the
+	 * registry instead of calling finish.
+	 * 
+	 * @param gitVersioner
+	 *            Versioner to wrap
+	 */
+	public GitVersionerWrapper(GitVersioner gitVersioner) {
+		this.gitVersioner = gitVersioner;
+	}
+
 	/**
 	 * Add file to the GIT version system File must be inside the local GIT
 	 * repository (inside local GIT base path)
@@ -103,18 +207,369 @@ public class GitVersionerWrapper {
 	 *            File name to version
 	 * @param commitMessage
 	 *            Message to put while committing the file
-	 * @return True if the operation is successful
+	 * @return True if the file is committed, a failed push keeps the local
+	 *         commit and is only logged
 	 */
 	public boolean versionFile(String fileName, String commitMessage) {
-		this.addFile(fileName);
-		if (this.gitVersioner.cloneIfRepoDoesNotExist) {
-			this.commitAndPushChanges(commitMessage);
-		} else {
-			this.commitChanges(commitMessage);
+		GroupCommitter currentGroupCommitter = this.groupCommitter;
+		if (currentGroupCommitter != null) {
+			return this.versionFileInGroup(currentGroupCommitter, fileName, commitMessage);
+		}
+		try {
+			// Add and commit under one lock so concurrent callers cannot mix
+			// their changes into each other's commits
+			this.gitVersioner.commitFiles(Collections.singleton(fileName), commitMessage, false);
+		} catch (IOException e) {
+			logger.error(e.getMessage());
+			return false;
+		} catch (GitAPIException e) {
+			logger.error(e.getMessage());
+			return false;
+		}
+		this.pushNewCommits();
+		return true;
+	}
+
+	/**
+	 * Enable group commit mode. Concurrent versionFile calls are then queued
+	 * and the ones arriving within the window are versioned as one commit.
+	 * Each caller still blocks until its change is committed.
+	 * 
+	 * @param windowMillis
+	 *            Time to wait for more changes after the first one arrives
+	 * @param maxBatchSize
+	 *            Maximum number of changes in one commit
+	 */
+	public synchronized void enableGroupCommit(long windowMillis, int maxBatchSize) {
+		this.disableGroupCommit();
+		this.groupCommitter = new GroupCommitter(this.gitVersioner, this.isSynchronousPush(), windowMillis,
+				maxBatchSize);
+	}
+
+	/**
+	 * Disable group commit mode, queued changes are committed before returning
+	 */
+	public synchronized void disableGroupCommit() {
+		if (this.groupCommitter != null) {
+			this.groupCommitter.close();
+			this.groupCommitter = null;
+		}
+	}
+
+	/**
+	 * Version a file through the group committer and wait for its group
+	 * 
+	 * @param currentGroupCommitter
+	 *            Group committer to enqueue the change
+	 * @param fileName
+	 *            File name to version
+	 * @param commitMessage
+	 *            Message of the change
+	 * @return True if the group containing the change is committed
+	 */
+	protected boolean versionFileInGroup(GroupCommitter currentGroupCommitter, String fileName,
+			String commitMessage) {
+		try {
+			boolean result = currentGroupCommitter.submit(fileName, commitMessage).get();
+			this.requestAsyncPush();
+			return result;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			logger.error(e.getMessage());
+		} catch (ExecutionException e) {
+			logger.error(e.getCause().getMessage());
+		} catch (IllegalStateException e) {
+			logger.error(e.getMessage());
+		}
+		return false;
+	}
+
+	/**
+	 * Version several files as one batch: +Add all of them with a single index
+	 * update +Commit once +Push once to remote. Either all of the files are
+	 * versioned or none of them are.
+	 * 
+	 * @param fileNames
+	 *            File names to version
+	 * @param commitMessage
+	 *            Message to put while committing the files
+	 * @return True if the files are committed, a failed push keeps the local
+	 *         commit and is only logged
+	 */
+	public boolean versionFiles(Collection<String> fileNames, String commitMessage) {
+		try {
+			this.gitVersioner.commitFiles(fileNames, commitMessage, false);
+		} catch (IOException e) {
+			logger.error(e.getMessage());
+			return false;
+		} catch (GitAPIException e) {
+			logger.error(e.getMessage());
+			return false;
+		}
+		this.pushNewCommits();
+		return true;
+	}
+
+	/**
+	 * Version the given content as a new revision of a file without writing
+	 * it to the local folder
+	 * 
+	 * @param fileName
+	 *            File name to version
+	 * @param content
+	 *            New content of the file
+	 * @param commitMessage
+	 *            Message to put while committing the content
+	 * @return True if the content is committed, a failed push keeps the
+	 *         local commit and is only logged
+	 */
+	public boolean versionContent(String fileName, byte[] content, String commitMessage) {
+		try {
+			this.gitVersioner.versionContent(fileName, content, commitMessage, false);
+		} catch (IOException e) {
+			logger.error(e.getMessage());
+			return false;
+		} catch (GitAPIException e) {
+			logger.error(e.getMessage());
+			return false;
+		}
+		this.pushNewCommits();
+		return true;
+	}
+
+	/**
+	 * Version several contents with one commit, without the local folder and
+	 * the shared index file. Safe while other processes write to the same
+	 * repository, a commit that loses a race is retried unless its files
+	 * were changed meanwhile.
+	 * 
+	 * @param contents
+	 *            New contents by file name
+	 * @param commitMessage
+	 *            Message to put while committing the contents
+	 * @return True if the contents are committed, a failed push keeps the
+	 *         local commit and is only logged
+	 */
+	public boolean versionContents(Map<String, byte[]> contents, String commitMessage) {
+		try {
+			this.gitVersioner.versionContents(contents, commitMessage, false);
+		} catch (IOException e) {
+			logger.error(e.getMessage());
+			return false;
+		} catch (GitAPIException e) {
+			logger.error(e.getMessage());
+			return false;
 		}
+		this.pushNewCommits();
 		return true;
 	}
 
+	/**
+	 * Start a transaction to stage files one by one and version them with a
+	 * single commit
+	 * 
+	 * @return A new versioning transaction
+	 */
+	public VersioningTransaction beginTransaction() {
+		return new VersioningTransaction(this.gitVersioner, this.isSynchronousPush());
+	}
+
+	/**
+	 * Enable asynchronous push mode. Commits are then pushed by a background
+	 * thread that collapses all pending commits into one push and retries
+	 * failed pushes with exponential backoff. Only used when the repository
+	 * is bound to a remote.
+	 * 
+	 * @param coalesceMillis
+	 *            Time to wait for more commits before pushing
+	 * @param initialBackoffMillis
+	 *            Delay before the first retry of a failed push
+	 * @param maxBackoffMillis
+	 *            Upper limit of the retry delay
+	 */
+	public synchronized void enableAsyncPush(long coalesceMillis, long initialBackoffMillis, long maxBackoffMillis) {
+		this.disableAsyncPush();
+		this.pushScheduler = new PushScheduler(this.gitVersioner, coalesceMillis, initialBackoffMillis,
+				maxBackoffMillis);
+		if (this.groupCommitter != null) {
+			this.groupCommitter.setPush(false);
+		}
+	}
+
+	/**
+	 * Disable asynchronous push mode, pending commits are pushed before
+	 * returning
+	 */
+	public synchronized void disableAsyncPush() {
+		if (this.pushScheduler != null) {
+			this.pushScheduler.close();
+			this.pushScheduler = null;
+			if (this.groupCommitter != null) {
+				this.groupCommitter.setPush(this.isSynchronousPush());
+			}
+		}
+	}
+
+	/**
+	 * Get the asynchronous push scheduler to inspect how far the remote lags
+	 * behind
+	 * 
+	 * @return Push scheduler, null if asynchronous push is disabled
+	 */
+	public PushScheduler getPushScheduler() {
+		return this.pushScheduler;
+	}
+
+	/**
+	 * Enable automatic versioning. The local folder is watched and changed
+	 * files are versioned once the folder stays quiet for the debounce delay,
+	 * skipping files whose content is already committed.
+	 * 
+	 * @param debounceMillis
+	 *            Quiet time after the last change before versioning
+	 * @param maxBatchSize
+	 *            Maximum number of files in one commit
+	 * @return True if the local folder is being watched
+	 */
+	public synchronized boolean enableAutoVersioning(long debounceMillis, int maxBatchSize) {
+		this.disableAutoVersioning();
+		try {
+			this.autoVersioner = new AutoVersioner(this, debounceMillis, maxBatchSize);
+			return true;
+		} catch (IOException e) {
+			logger.error(e.getMessage());
+		}
+		return false;
+	}
+
+	/**
+	 * Disable automatic versioning, collected changes are versioned before
+	 * returning
+	 */
+	public synchronized void disableAutoVersioning() {
+		if (this.autoVersioner != null) {
+			this.autoVersioner.close();
+			this.autoVersioner = null;
+		}
+	}
+
+	/**
+	 * Get the automatic versioner to inspect how many changes it versioned
+	 * 
+	 * @return Automatic versioner, null if automatic versioning is disabled
+	 */
+	public AutoVersioner getAutoVersioner() {
+		return this.autoVersioner;
+	}
+
+	/**
+	 * Enable background maintenance. The object store is packed whenever the
+	 * loose objects or the pack files exceed their threshold and no write
+	 * happened for the quiet period.
+	 * 
+	 * @param checkIntervalMillis
+	 *            Time between two checks of the statistics
+	 * @param quietMillis
+	 *            Time without writes before a collection may start
+	 * @param looseObjectThreshold
+	 *            Loose object count that triggers a collection
+	 * @param packFileThreshold
+	 *            Pack file count that triggers a collection
+	 */
+	public synchronized void enableMaintenance(long checkIntervalMillis, long quietMillis, long looseObjectThreshold,
+			long packFileThreshold) {
+		this.disableMaintenance();
+		this.maintenanceScheduler = new MaintenanceScheduler(this.gitVersioner, checkIntervalMillis, quietMillis,
+				looseObjectThreshold, packFileThreshold);
+	}
+
+	/**
+	 * Disable background maintenance
+	 */
+	public synchronized void disableMaintenance() {
+		if (this.maintenanceScheduler != null) {
+			this.maintenanceScheduler.close();
+			this.maintenanceScheduler = null;
+		}
+	}
+
+	/**
+	 * Get the maintenance scheduler to read the repository statistics
+	 * 
+	 * @return Maintenance scheduler, null if maintenance is disabled
+	 */
+	public MaintenanceScheduler getMaintenanceScheduler() {
+		return this.maintenanceScheduler;
+	}
+
+	/**
+	 * Enable background sync with the remote. The remote is checked for moved
+	 * branches periodically, and changes are fetched and fast forwarded.
+	 * 
+	 * @param minIntervalMillis
+	 *            Time between checks while the remote changes
+	 * @param maxIntervalMillis
+	 *            Time between checks while the remote is quiet
+	 */
+	public synchronized void enableRemoteSync(long minIntervalMillis, long maxIntervalMillis) {
+		this.disableRemoteSync();
+		this.remoteSyncService = new RemoteSyncService(this.gitVersioner, minIntervalMillis, maxIntervalMillis);
+	}
+
+	/**
+	 * Disable background sync with the remote
+	 */
+	public synchronized void disableRemoteSync() {
+		if (this.remoteSyncService != null) {
+			this.remoteSyncService.close();
+			this.remoteSyncService = null;
+		}
+	}
+
+	/**
+	 * Get the remote sync service to inspect the sync lag and fetched bytes
+	 * 
+	 * @return Remote sync service, null if remote sync is disabled
+	 */
+	public RemoteSyncService getRemoteSyncService() {
+		return this.remoteSyncService;
+	}
+
+	/**
+	 * Check if commits must be pushed right after they are made
+	 * 
+	 * @return True if bound to a remote and asynchronous push is disabled
+	 */
+	protected boolean isSynchronousPush() {
+		return this.gitVersioner.cloneIfRepoDoesNotExist && this.pushScheduler == null;
+	}
+
+	/**
+	 * Push the commits just made, right away if asynchronous push is off or
+	 * through the push scheduler otherwise. A failed push leaves the commits
+	 * in the local repository for the next push.
+	 */
+	protected void pushNewCommits() {
+		if (this.isSynchronousPush()) {
+			this.pushCommits();
+		}
+		this.requestAsyncPush();
+	}
+
+	/**
+	 * Hand the new commits to the push scheduler if asynchronous push is on
+	 */
+	protected void requestAsyncPush() {
+		PushScheduler currentPushScheduler = this.pushScheduler;
+		if (currentPushScheduler != null && this.gitVersioner.cloneIfRepoDoesNotExist) {
+			try {
+				currentPushScheduler.requestPush();
+			} catch (IllegalStateException e) {
+				logger.error(e.getMessage());
+			}
+		}
+	}
+
 	/**
 	 * Alternative of commitChanges and pushCommits
 	 * 
@@ -171,6 +626,75 @@ public class GitVersionerWrapper {
 		return null;
 	}
 
+	/**
+	 * Get versions of many files by name with a single walk of the history
+	 * 
+	 * @param fileNames
+	 *            Names of the demanded files
+	 * @return Versions of each file, null if the operation fails
+	 */
+	public Map<String, List<Version>> getVersionsOfFiles(Collection<String> fileNames) {
+		try {
+			return this.gitVersioner.listVersions(fileNames);
+		} catch (IOException e) {
+			logger.error(e.getMessage());
+		} catch (Exception e) {
+			logger.error(e.getMessage());
+		}
+		return null;
+	}
+
+	/**
+	 * Get versions of a file by name into a compact read only list
+	 * 
+	 * @param fileName
+	 *            Name of the demanded file
+	 * @return Versions of the file, null if the operation fails
+	 */
+	public VersionList getVersionListOfFile(String fileName) {
+		try {
+			return this.gitVersioner.listVersionList(fileName);
+		} catch (IOException e) {
+			logger.error(e.getMessage());
+		} catch (Exception e) {
+			logger.error(e.getMessage());
+		}
+		return null;
+	}
+
+	/**
+	 * Get a page of versions of a file by name, newest first. Only the
+	 * commits needed for the page are read.
+	 * 
+	 * @param fileName
+	 *            Name of the demanded file
+	 * @param query
+	 *            Limit, offset or cursor and time bounds of the page. The
+	 *            commit id of the last version can be used as the cursor of
+	 *            the next page.
+	 * @return A list that contains [id - commiter_name - date]
+	 */
+	public List<Version> getVersionsOfFile(String fileName, VersionQuery query) {
+		VersionIterator versionIterator = null;
+		try {
+			versionIterator = this.gitVersioner.listVersions(fileName, query);
+			List<Version> versions = new ArrayList<Version>();
+			while (versionIterator.hasNext()) {
+				versions.add(versionIterator.next());
+			}
+			return versions;
+		} catch (IOException e) {
+			logger.error(e.getMessage());
+		} catch (Exception e) {
+			logger.error(e.getMessage());
+		} finally {
+			if (versionIterator != null) {
+				versionIterator.close();
+			}
+		}
+		return null;
+	}
+
 	/**
 	 * Get an older revision of a file Also saves the revision to the folder
 	 * named same with the demanded file
@@ -190,10 +714,339 @@ public class GitVersionerWrapper {
 		return null;
 	}
 
+	/**
+	 * Open an older revision of a file as a stream, nothing is written to disc
+	 * 
+	 * @param revId
+	 *            Id of the demanded revision, can be get by getVersionsOfFile
+	 * @param fileName
+	 *            Name of the demanded file
+	 * @return Stream of the revision that the caller must close, null if not
+	 *         found
+	 */
+	public InputStream openRevisionOfFile(String revId, String fileName) {
+		try {
+			return this.gitVersioner.openRevision(revId, fileName);
+		} catch (IOException e) {
+			logger.error("This version may refer to a deletion: " + e.getMessage());
+		}
+		return null;
+	}
+
+	/**
+	 * Get the content of an older revision of a file, nothing is written to
+	 * disc
+	 * 
+	 * @param revId
+	 *            Id of the demanded revision, can be get by getVersionsOfFile
+	 * @param fileName
+	 *            Name of the demanded file
+	 * @return Content of the revision, null if not found
+	 */
+	public byte[] getRevisionContentOfFile(String revId, String fileName) {
+		try {
+			return this.gitVersioner.readRevision(revId, fileName);
+		} catch (IOException e) {
+			logger.error("This version may refer to a deletion: " + e.getMessage());
+		}
+		return null;
+	}
+
+	/**
+	 * Get the changes of a file between two revisions as a unified diff,
+	 * nothing is written to disc
+	 * 
+	 * @param fileName
+	 *            Name of the demanded file
+	 * @param oldRevId
+	 *            Id of the old revision
+	 * @param newRevId
+	 *            Id of the new revision
+	 * @return Unified diff, empty if the file is the same, null if a revision
+	 *         is not found
+	 */
+	public String getDiffOfFile(String fileName, String oldRevId, String newRevId) {
+		try {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			if (this.gitVersioner.diff(fileName, oldRevId, newRevId, out) != null) {
+				return RawParseUtils.decode(out.toByteArray());
+			}
+		} catch (IOException e) {
+			logger.error(e.getMessage());
+		}
+		return null;
+	}
+
+	/**
+	 * Get the changes of a file in a revision against its previous version as
+	 * a unified diff, nothing is written to disc
+	 * 
+	 * @param fileName
+	 *            Name of the demanded file
+	 * @param revId
+	 *            Id of the revision
+	 * @return Unified diff, null if the file has no version at the revision
+	 */
+	public String getDiffWithPreviousVersion(String fileName, String revId) {
+		try {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			if (this.gitVersioner.diffWithPrevious(fileName, revId, out) != null) {
+				return RawParseUtils.decode(out.toByteArray());
+			}
+		} catch (IOException e) {
+			logger.error(e.getMessage());
+		}
+		return null;
+	}
+
+	/**
+	 * Write an older revision of a file to the given stream
+	 * 
+	 * @param revId
+	 *            Id of the demanded revision, can be get by getVersionsOfFile
+	 * @param fileName
+	 *            Name of the demanded file
+	 * @param out
+	 *            Stream to write the revision to, it is not closed
+	 * @return True if the revision is found and written
+	 */
+	public boolean copyRevisionOfFileTo(String revId, String fileName, OutputStream out) {
+		try {
+			return this.gitVersioner.copyRevisionTo(revId, fileName, out) >= 0;
+		} catch (IOException e) {
+			logger.error("This version may refer to a deletion: " + e.getMessage());
+		}
+		return false;
+	}
+
+	/**
+	 * Enable caching of revision contents in memory. Repeated reads of the
+	 * same revisions are then served without walking the tree or inflating the
+	 * blob again.
+	 * 
+	 * @param maxBytes
+	 *            Upper limit of the total cached content size
+	 * @param maxEntryBytes
+	 *            Files larger than this are never cached
+	 * @param offHeap
+	 *            Set true to keep the content in direct buffers
+	 */
+	public void enableBlobCache(long maxBytes, long maxEntryBytes, boolean offHeap) {
+		this.gitVersioner.setBlobCache(new RevisionBlobCache(maxBytes, maxEntryBytes, offHeap));
+	}
+
+	/**
+	 * Disable caching of revision contents
+	 */
+	public void disableBlobCache() {
+		this.gitVersioner.setBlobCache(null);
+	}
+
+	/**
+	 * Get the cache of revision contents to inspect hit and miss counts
+	 * 
+	 * @return Cache of revision contents, null if disabled
+	 */
+	public RevisionBlobCache getBlobCache() {
+		return this.gitVersioner.getBlobCache();
+	}
+
+	/**
+	 * Wait until the background part of a deferred initialization is done
+	 * 
+	 * @param timeoutMillis
+	 *            Maximum time to wait
+	 * @return True if the versioner is ready, false on timeout or failure
+	 */
+	public boolean awaitReady(long timeoutMillis) {
+		try {
+			this.gitVersioner.initAsync().get(timeoutMillis, TimeUnit.MILLISECONDS);
+			return true;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			logger.error(e.getCause().getMessage());
+		} catch (TimeoutException e) {
+			logger.warn(MessageFormat.format(MessageConstants.WARNING_NOT_READY, timeoutMillis));
+		}
+		return false;
+	}
+
+	/**
+	 * Get the duration of each phase of the startup, in the order they ran
+	 * 
+	 * @return Milliseconds spent by phase name
+	 */
+	public Map<String, Long> getStartupPhaseMillis() {
+		return this.gitVersioner.getStartupPhaseMillis();
+	}
+
+	/**
+	 * Export every version of the given files or directories to a folder,
+	 * using all processors
+	 * 
+	 * @param paths
+	 *            File or directory paths to export the versions of
+	 * @param directory
+	 *            Target folder
+	 * @return Number of exported files, -1 if the export fails
+	 */
+	public long exportVersions(Collection<String> paths, File directory) {
+		VersionExporter exporter = new VersionExporter(this.gitVersioner, Runtime.getRuntime().availableProcessors());
+		try {
+			return exporter.exportToDirectory(paths, directory, null);
+		} catch (IOException e) {
+			logger.error(e.getMessage());
+		} catch (GitAPIException e) {
+			logger.error(e.getMessage());
+		} finally {
+			exporter.close();
+		}
+		return -1;
+	}
+
+	/**
+	 * Export every version of the given files or directories to a zip file,
+	 * using all processors
+	 * 
+	 * @param paths
+	 *            File or directory paths to export the versions of
+	 * @param zipFile
+	 *            Zip file to create or replace
+	 * @return Number of exported files, -1 if the export fails
+	 */
+	public long exportVersionsToZip(Collection<String> paths, File zipFile) {
+		VersionExporter exporter = new VersionExporter(this.gitVersioner, Runtime.getRuntime().availableProcessors());
+		try {
+			OutputStream out = new BufferedOutputStream(new FileOutputStream(zipFile));
+			try {
+				return exporter.exportToZip(paths, out, null);
+			} finally {
+				out.close();
+			}
+		} catch (IOException e) {
+			logger.error(e.getMessage());
+		} catch (GitAPIException e) {
+			logger.error(e.getMessage());
+		} finally {
+			exporter.close();
+		}
+		return -1;
+	}
+
+	/**
+	 * Enable the materialization store under the GIT folder. Each blob is then
+	 * written to disc once and getRevisionOfFileByRevId returns read only
+	 * links to it.
+	 * 
+	 * @param maxBytes
+	 *            Upper limit of the total size of the stored blobs
+	 * @return True if the store is enabled, false if the repository is not on
+	 *         disc
+	 */
+	public boolean enableMaterializationStore(long maxBytes) {
+		this.gitVersioner.checkGit();
+		File gitDirectory = this.gitVersioner.localRepo.getDirectory();
+		if (gitDirectory == null) {
+			return false;
+		}
+		try {
+			this.gitVersioner.setMaterializationStore(new MaterializationStore(new File(new File(gitDirectory,
+					CommonConstants.GITVERSIONING_DIRECTORY), CommonConstants.MATERIALIZED_DIRECTORY), maxBytes));
+			return true;
+		} catch (IOException e) {
+			logger.error(e.getMessage());
+		}
+		return false;
+	}
+
+	/**
+	 * Disable the materialization store, revision files are then written
+	 * separately again
+	 */
+	public void disableMaterializationStore() {
+		this.gitVersioner.setMaterializationStore(null);
+	}
+
+	/**
+	 * Get the materialization store to inspect its size and hit counts
+	 * 
+	 * @return Materialization store, null if disabled
+	 */
+	public MaterializationStore getMaterializationStore() {
+		return this.gitVersioner.getMaterializationStore();
+	}
+
+	/**
+	 * Offload large files to a content addressed store. Files of the
+	 * threshold size or larger are stored there once and versioned as small
+	 * pointers, revisions of them are read from the store.
+	 * 
+	 * @param directory
+	 *            Folder of the store
+	 * @param thresholdBytes
+	 *            Size from which files are offloaded
+	 * @return True if the store is enabled
+	 */
+	public boolean enableLargeFileStore(File directory, long thresholdBytes) {
+		try {
+			this.gitVersioner.setLargeFileStore(new LargeFileStore(directory, thresholdBytes));
+			return true;
+		} catch (IOException e) {
+			logger.error(e.getMessage());
+		}
+		return false;
+	}
+
+	/**
+	 * Disable offloading of large files. Revisions already versioned as
+	 * pointers are then read as the pointers themselves.
+	 */
+	public void disableLargeFileStore() {
+		this.gitVersioner.setLargeFileStore(null);
+	}
+
+	/**
+	 * Get the large file store
+	 * 
+	 * @return Large file store, null if disabled
+	 */
+	public LargeFileStore getLargeFileStore() {
+		return this.gitVersioner.getLargeFileStore();
+	}
+
+	/**
+	 * Expose the operation metrics of the versioner through JMX, named after
+	 * the local path. Only available with the default metrics.
+	 * 
+	 * @return True if the MBeans are registered
+	 */
+	public boolean registerMetricsMBeans() {
+		VersionerMetrics metrics = this.gitVersioner.getMetrics();
+		if (metrics instanceof DefaultVersionerMetrics) {
+			try {
+				((DefaultVersionerMetrics) metrics).registerMBeans(this.getLocalPath());
+				return true;
+			} catch (JMException e) {
+				logger.error(e.getMessage());
+			}
+		}
+		return false;
+	}
+
 	/**
 	 * Call when the object is destroyed
 	 */
 	public void finish() {
+		this.disableAutoVersioning();
+		this.disableMaintenance();
+		this.disableRemoteSync();
+		this.disableGroupCommit();
+		this.disableAsyncPush();
+		VersionerMetrics metrics = this.gitVersioner.getMetrics();
+		if (metrics instanceof DefaultVersionerMetrics) {
+			((DefaultVersionerMetrics) metrics).unregisterMBeans();
+		}
 		this.gitVersioner.close();
 	}
 
@@ -0,0 +1,218 @@
+package com.btasdemir.gitversioning.versioner;
+
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.eclipse.jgit.api.errors.GitAPIException;
+
+import com.btasdemir.gitversioning.constant.CommonConstants;
+import com.btasdemir.gitversioning.constant.MessageConstants;
+import com.btasdemir.gitversioning.util.CheckValueUtil;
+
+/**
+ * Coalesces concurrent versioning requests into group commits.
+ * 
+ * Callers enqueue a change and block on the returned future while a single
+ * committer thread collects every change that arrives within the window, or
+ * until the batch is full, and versions them as one commit. All callers of a
+ * group receive the outcome of that commit.
+ * 
+ * @author bahadir.tasdemir@hotmail.com.tr
+ */
+public class GroupCommitter {
+
+	protected final GitVersioner gitVersioner;
+	protected volatile boolean push;
+	protected final long windowMillis;
+	protected final int maxBatchSize;
+	protected final BlockingQueue<PendingChange> queue = new LinkedBlockingQueue<PendingChange>();
+	protected final Thread committerThread;
+	protected volatile boolean running = true;
+	protected static final Logger logger = LogManager.getLogger(GroupCommitter.class);
+
+	public GroupCommitter(GitVersioner gitVersioner, boolean push, long windowMillis, int maxBatchSize) {
+		if (windowMillis < 0 || maxBatchSize < 1) {
+			throw new IllegalArgumentException(CommonConstants.ERROR_EMPTY_ARGUMENT);
+		}
+		this.gitVersioner = gitVersioner;
+		this.push = push;
+		this.windowMillis = windowMillis;
+		this.maxBatchSize = maxBatchSize;
+		this.committerThread = new Thread(new Runnable() {
+			public void run() {
+				commitLoop();
+			}
+		}, CommonConstants.GROUP_COMMITTER_THREAD_NAME);
+		this.committerThread.setDaemon(true);
+		this.committerThread.start();
+	}
+
+	/**
+	 * Enqueue a file to be versioned with the next group commit
+	 * 
+	 * @param fileName
+	 *            File name relative to the local repository path
+	 * @param commitMessage
+	 *            Message of the change, merged into the group commit message
+	 * @return Future that completes when the group containing the change is
+	 *         committed, or fails with the cause of the failed group
+	 */
+	public Future<Boolean> submit(String fileName, String commitMessage) {
+		CheckValueUtil.checkStringVals(fileName, commitMessage);
+		PendingChange pendingChange = new PendingChange(fileName, commitMessage);
+		// Checked and added under the lock of stop, so the committer thread
+		// cannot see an empty queue and exit between the two
+		synchronized (this) {
+			if (!running) {
+				throw new IllegalStateException(MessageConstants.ERROR_GROUP_COMMITTER_CLOSED);
+			}
+			queue.add(pendingChange);
+		}
+		return pendingChange.future;
+	}
+
+	/**
+	 * Set whether each group commit is pushed to the remote synchronously
+	 * 
+	 * @param push
+	 *            Set true to push after every group commit
+	 */
+	public void setPush(boolean push) {
+		this.push = push;
+	}
+
+	/**
+	 * Stop accepting changes, commit the ones already queued and stop the
+	 * committer thread
+	 */
+	public void close() {
+		this.stop();
+		try {
+			committerThread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Stop accepting changes
+	 */
+	protected synchronized void stop() {
+		running = false;
+	}
+
+	/**
+	 * Collect changes into groups and commit them until closed
+	 */
+	protected void commitLoop() {
+		List<PendingChange> batch = new ArrayList<PendingChange>();
+		while (running || !queue.isEmpty()) {
+			try {
+				PendingChange first = queue.poll(CommonConstants.GROUP_COMMIT_IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+				if (first == null) {
+					continue;
+				}
+				batch.add(first);
+				long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(windowMillis);
+				while (batch.size() < maxBatchSize) {
+					long remaining = deadline - System.nanoTime();
+					PendingChange next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+					if (next == null) {
+						break;
+					}
+					batch.add(next);
+				}
+			} catch (InterruptedException e) {
+				// Commit what is collected so far and let the queue drain
+				this.stop();
+			}
+			if (!batch.isEmpty()) {
+				this.flush(batch);
+				batch.clear();
+			}
+		}
+	}
+
+	/**
+	 * Commit the given changes as one group and complete their futures
+	 * 
+	 * @param batch
+	 *            Changes to commit together
+	 */
+	protected void flush(List<PendingChange> batch) {
+		Set<String> fileNames = new LinkedHashSet<String>();
+		StringBuilder message = new StringBuilder();
+		if (batch.size() == 1) {
+			message.append(batch.get(0).message);
+		} else {
+			message.append(MessageFormat.format(MessageConstants.GROUP_COMMIT_MESSAGE, batch.size()));
+		}
+		for (PendingChange pendingChange : batch) {
+			fileNames.add(pendingChange.fileName);
+			if (batch.size() > 1) {
+				message.append('\n').append(pendingChange.message);
+			}
+		}
+		Exception failure = null;
+		try {
+			gitVersioner.commitFiles(fileNames, message.toString(), false);
+			logger.info(MessageFormat.format(MessageConstants.INFO_GROUP_COMMIT, batch.size()));
+		} catch (Exception e) {
+			logger.error(e.getMessage());
+			failure = e;
+		}
+		if (failure == null && push) {
+			// The group is versioned once committed, a failed push keeps the
+			// commit for the next push
+			try {
+				gitVersioner.push();
+			} catch (GitAPIException e) {
+				logger.error(e.getMessage());
+			}
+		}
+		for (PendingChange pendingChange : batch) {
+			pendingChange.complete(failure);
+		}
+	}
+
+	/**
+	 * A queued change together with the future its caller waits on
+	 */
+	protected static class PendingChange implements Callable<Boolean> {
+
+		protected final String fileName;
+		protected final String message;
+		protected final FutureTask<Boolean> future = new FutureTask<Boolean>(this);
+		protected Exception failure;
+
+		protected PendingChange(String fileName, String message) {
+			this.fileName = fileName;
+			this.message = message;
+		}
+
+		protected void complete(Exception failure) {
+			this.failure = failure;
+			future.run();
+		}
+
+		public Boolean call() throws Exception {
+			if (failure != null) {
+				throw failure;
+			}
+			return Boolean.TRUE;
+		}
+
+	}
+
+}
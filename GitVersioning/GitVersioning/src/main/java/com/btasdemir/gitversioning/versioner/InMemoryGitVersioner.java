@@ -0,0 +1,358 @@
+package com.btasdemir.gitversioning.versioner;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.MessageFormat;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.ResetCommand.ResetType;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.api.errors.InvalidRemoteException;
+import org.eclipse.jgit.api.errors.NoFilepatternException;
+import org.eclipse.jgit.dircache.DirCache;
+import org.eclipse.jgit.internal.storage.dfs.DfsRepositoryDescription;
+import org.eclipse.jgit.internal.storage.dfs.InMemoryRepository;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.ObjectLoader;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.ObjectWalk;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevObject;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
+
+import com.btasdemir.gitversioning.constant.CommonConstants;
+import com.btasdemir.gitversioning.constant.MessageConstants;
+import com.btasdemir.gitversioning.metrics.Operation;
+import com.btasdemir.gitversioning.util.CheckValueUtil;
+
+/**
+ * GIT versioner that keeps the whole repository in memory.
+ * 
+ * Meant for short lived documents that never need to outlive the process.
+ * There is no working tree and no index file: contents are written with
+ * writeFile into an in memory working area, add stages them into an in core
+ * index and commit builds the commit directly in the object store. Listing
+ * versions and reading revisions work the same as on disc. The repository
+ * survives close and is only lost with this object, snapshotTo saves it to
+ * disc on demand.
+ * 
+ * @author bahadir.tasdemir@hotmail.com.tr
+ */
+public class InMemoryGitVersioner extends GitVersioner {
+
+	protected final InMemoryRepository memoryRepository;
+	protected final ConcurrentMap<String, byte[]> workingArea = new ConcurrentHashMap<String, byte[]>();
+	protected DirCache stagingArea;
+
+	/**
+	 * Create an in memory versioner
+	 * 
+	 * @param name
+	 *            Name of the repository, also used as the local path that
+	 *            getRevisionFileById writes revisions under
+	 */
+	public InMemoryGitVersioner(String name) {
+		super(name, "", "", "", false);
+		this.memoryRepository = new InMemoryRepository(new DfsRepositoryDescription(name));
+	}
+
+	@Override
+	protected void initRepository() throws IOException, GitAPIException {
+		if (git == null) {
+			if (memoryRepository.getRef(Constants.HEAD) == null) {
+				this.createRepo();
+			}
+			localRepo = memoryRepository;
+			if (stagingArea == null) {
+				stagingArea = new TreeCommitBuilder(memoryRepository)
+						.readTree(memoryRepository.resolve(CommonConstants.GIT_TERM_HEAD));
+			}
+			git = new Git(memoryRepository);
+		} else {
+			logger.info(MessageConstants.INFO_GIT_ALREADY_INITIALIZED);
+		}
+	}
+
+	/**
+	 * Point HEAD to the unborn master branch of the in memory repository
+	 */
+	@Override
+	public void createRepo() throws IOException {
+		memoryRepository.updateRef(Constants.HEAD).link(Constants.R_HEADS + Constants.MASTER);
+	}
+
+	@Override
+	public void cloneRepo() throws IOException, GitAPIException {
+		throw new InvalidRemoteException(
+				MessageFormat.format(MessageConstants.ERROR_IN_MEMORY_NO_REMOTE, this.getLocalPath()));
+	}
+
+	/**
+	 * Write the content of a file into the in memory working area. The file
+	 * is versioned once it is added and committed.
+	 * 
+	 * @param fileName
+	 *            Path of the file
+	 * @param content
+	 *            Content of the file
+	 */
+	public void writeFile(String fileName, byte[] content) {
+		CheckValueUtil.checkStringVal(fileName);
+		workingArea.put(fileName, content.clone());
+	}
+
+	/**
+	 * Read the content of a file from the in memory working area
+	 * 
+	 * @param fileName
+	 *            Path of the file
+	 * @return Content of the file, null if the file does not exist
+	 */
+	public byte[] readFile(String fileName) {
+		byte[] content = workingArea.get(fileName);
+		return content == null ? null : content.clone();
+	}
+
+	@Override
+	public void add(String fileName) throws IOException, GitAPIException {
+		this.add(Collections.singleton(fileName));
+	}
+
+	@Override
+	public void add(Collection<String> fileNames) throws IOException, GitAPIException {
+		CheckValueUtil.checkCollectionVal(fileNames);
+		this.checkGit();
+		long startTime = this.startOperation(Operation.ADD);
+		boolean failed = true;
+		writeLock.lock();
+		try {
+			TreeCommitBuilder treeCommitBuilder = new TreeCommitBuilder(localRepo);
+			for (String fileName : fileNames) {
+				CheckValueUtil.checkStringVal(fileName);
+				byte[] content = workingArea.get(fileName);
+				if (content == null && stagingArea.getEntry(fileName) != null) {
+					// Versioned by versionContent, the staged content is kept
+					continue;
+				}
+				if (content == null) {
+					// A file that is not written yet is added empty, like on disc
+					content = new byte[0];
+					workingArea.put(fileName, content);
+				}
+				treeCommitBuilder.setPath(stagingArea, fileName, treeCommitBuilder.insertBlob(content));
+			}
+			metrics.objectsInserted(fileNames.size());
+			failed = false;
+		} finally {
+			writeLock.unlock();
+			this.completeOperation(Operation.ADD, startTime, failed);
+		}
+		logger.info(MessageFormat.format(MessageConstants.INFO_FILES_ADD, fileNames.size()));
+	}
+
+	@Override
+	public void remove(String file, boolean onlyRemoveFromIndex) throws NoFilepatternException, GitAPIException {
+		this.checkGit();
+		long startTime = this.startOperation(Operation.REMOVE);
+		boolean failed = true;
+		writeLock.lock();
+		try {
+			new TreeCommitBuilder(localRepo).setPath(stagingArea, file, null);
+			if (!onlyRemoveFromIndex) {
+				workingArea.remove(file);
+			}
+			failed = false;
+		} finally {
+			writeLock.unlock();
+			this.completeOperation(Operation.REMOVE, startTime, failed);
+		}
+		logger.info(MessageFormat.format(MessageConstants.INFO_REMOVED_FROM_INDEX, file,
+				String.valueOf(onlyRemoveFromIndex)));
+	}
+
+	@Override
+	public RevCommit commit(String message) throws GitAPIException {
+		CheckValueUtil.checkStringVal(message);
+		this.checkGit();
+		RevCommit revCommit;
+		long startTime = this.startOperation(Operation.COMMIT);
+		boolean failed = true;
+		writeLock.lock();
+		try {
+			revCommit = new TreeCommitBuilder(localRepo).commit(stagingArea,
+					localRepo.resolve(CommonConstants.GIT_TERM_HEAD), message);
+			metrics.objectsInserted(1L);
+			failed = false;
+		} catch (IOException e) {
+			throw new ObjectStoreException(
+					MessageFormat.format(MessageConstants.ERROR_OBJECT_STORE, this.getLocalPath(), e.getMessage()), e);
+		} finally {
+			writeLock.unlock();
+			this.completeOperation(Operation.COMMIT, startTime, failed);
+		}
+		logger.info(MessageFormat.format(MessageConstants.INFO_COMMIT, message));
+		return revCommit;
+	}
+
+	@Override
+	public void push() throws GitAPIException {
+		throw new InvalidRemoteException(
+				MessageFormat.format(MessageConstants.ERROR_IN_MEMORY_NO_REMOTE, this.getLocalPath()));
+	}
+
+	@Override
+	protected void pull(Git pullGit) throws GitAPIException {
+		throw new InvalidRemoteException(
+				MessageFormat.format(MessageConstants.ERROR_IN_MEMORY_NO_REMOTE, this.getLocalPath()));
+	}
+
+	/**
+	 * Point the staged entry to the versioned content. The file is dropped
+	 * from the working area, add keeps the staged content until it is written
+	 * again.
+	 */
+	@Override
+	protected void contentVersioned(String path, ObjectId blobId, long length) {
+		new TreeCommitBuilder(localRepo).setPath(stagingArea, path, blobId);
+		workingArea.remove(path);
+	}
+
+	/**
+	 * Move HEAD back if it still points to the commit of the batch and restore
+	 * the staged entries of the given files from the previous commit, keep
+	 * the commit and the staging area otherwise
+	 */
+	@Override
+	protected boolean rollback(ObjectId previousHead, ObjectId createdCommit, Collection<String> fileNames) {
+		try {
+			if (createdCommit != null && !this.restoreHead(previousHead, createdCommit)) {
+				return false;
+			}
+			TreeCommitBuilder treeCommitBuilder = new TreeCommitBuilder(localRepo);
+			RevWalk revWalk = new RevWalk(localRepo);
+			try {
+				for (String fileName : fileNames) {
+					ObjectId blobId = null;
+					if (previousHead != null) {
+						TreeWalk treeWalk = TreeWalk.forPath(localRepo, fileName,
+								revWalk.parseCommit(previousHead).getTree());
+						if (treeWalk != null) {
+							blobId = treeWalk.getObjectId(0);
+							treeWalk.close();
+						}
+					}
+					treeCommitBuilder.setPath(stagingArea, fileName, blobId);
+				}
+			} finally {
+				revWalk.close();
+			}
+			logger.warn(MessageFormat.format(MessageConstants.WARNING_BATCH_ROLLED_BACK, fileNames.size()));
+		} catch (IOException e) {
+			logger.error(e.getMessage());
+		}
+		return true;
+	}
+
+	/**
+	 * Delete the current branch by detaching HEAD meanwhile, the in memory
+	 * reference database cannot relink a symbolic HEAD to a missing branch
+	 */
+	@Override
+	protected boolean deleteCurrentBranch(ObjectId expectedHead) throws IOException {
+		String branch = localRepo.getFullBranch();
+		RefUpdate detach = localRepo.updateRef(Constants.HEAD, true);
+		detach.setNewObjectId(localRepo.resolve(branch));
+		detach.forceUpdate();
+		try {
+			RefUpdate refUpdate = localRepo.updateRef(branch);
+			refUpdate.setExpectedOldObjectId(expectedHead);
+			refUpdate.setForceUpdate(true);
+			refUpdate.delete();
+		} finally {
+			localRepo.updateRef(Constants.HEAD).link(branch);
+		}
+		return localRepo.resolve(branch) == null;
+	}
+
+	/**
+	 * Save the committed history to a repository on disc. The files of HEAD
+	 * are checked out there, so a GitVersioner can open the folder afterwards.
+	 * Saving again to the same folder only copies the new objects.
+	 * 
+	 * @param directory
+	 *            Folder of the repository to create or update
+	 * @throws IOException
+	 *             Throws if an IO exception occurs
+	 * @throws GitAPIException
+	 *             Throws if a GIT API exception occurs
+	 */
+	public void snapshotTo(File directory) throws IOException, GitAPIException {
+		this.checkGit();
+		ObjectId head = localRepo.resolve(CommonConstants.GIT_TERM_HEAD);
+		Git target = Git.init().setDirectory(directory).call();
+		try {
+			if (head != null) {
+				Repository targetRepo = target.getRepository();
+				this.copyObjects(head, targetRepo);
+				RefUpdate refUpdate = targetRepo.updateRef(Constants.HEAD);
+				refUpdate.setNewObjectId(head);
+				refUpdate.forceUpdate();
+				target.reset().setMode(ResetType.HARD).call();
+			}
+		} finally {
+			target.close();
+		}
+		logger.info(MessageFormat.format(MessageConstants.INFO_SNAPSHOT, this.getLocalPath(), directory.getPath()));
+	}
+
+	/**
+	 * Copy every object reachable from a commit that the target does not have
+	 * 
+	 * @param head
+	 *            Commit to start from
+	 * @param targetRepo
+	 *            Repository to copy the objects into
+	 * @throws IOException
+	 *             Throws if an IO exception occurs
+	 */
+	protected void copyObjects(ObjectId head, Repository targetRepo) throws IOException {
+		ObjectWalk objectWalk = new ObjectWalk(localRepo);
+		ObjectInserter inserter = targetRepo.newObjectInserter();
+		try {
+			objectWalk.markStart(objectWalk.parseCommit(head));
+			for (RevCommit revCommit = objectWalk.next(); revCommit != null; revCommit = objectWalk.next()) {
+				this.copyObject(revCommit, targetRepo, inserter);
+			}
+			for (RevObject revObject = objectWalk.nextObject(); revObject != null; revObject = objectWalk
+					.nextObject()) {
+				this.copyObject(revObject, targetRepo, inserter);
+			}
+			inserter.flush();
+		} finally {
+			inserter.close();
+			objectWalk.close();
+		}
+	}
+
+	protected void copyObject(RevObject revObject, Repository targetRepo, ObjectInserter inserter)
+			throws IOException {
+		if (targetRepo.hasObject(revObject)) {
+			return;
+		}
+		ObjectLoader loader = localRepo.open(revObject);
+		if (loader.isLarge()) {
+			inserter.insert(loader.getType(), loader.getSize(), loader.openStream());
+		} else {
+			inserter.insert(loader.getType(), loader.getCachedBytes());
+		}
+	}
+
+}
@@ -0,0 +1,220 @@
+package com.btasdemir.gitversioning.versioner;
+
+import java.io.IOException;
+import java.text.MessageFormat;
+import java.text.ParseException;
+import java.util.Collections;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.eclipse.jgit.internal.storage.file.FileRepository;
+import org.eclipse.jgit.internal.storage.file.GC;
+import org.eclipse.jgit.lib.NullProgressMonitor;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+
+import com.btasdemir.gitversioning.constant.CommonConstants;
+import com.btasdemir.gitversioning.constant.MessageConstants;
+import com.btasdemir.gitversioning.model.RepositoryStatistics;
+
+/**
+ * Keeps the object store of a local repository packed in the background.
+ * 
+ * Every commit leaves loose objects behind, and reading thousands of loose
+ * files slows down listing versions and reading revisions. A background
+ * thread checks the loose object and pack file counts periodically and runs
+ * a garbage collection once a threshold is exceeded and no write happened
+ * for the quiet period. Only packing the refs waits for the write lock,
+ * repacking and pruning run next to writers: unreferenced loose objects are
+ * pruned only when they are older than a fixed expiry, so the objects of a
+ * commit that is still being written are kept whatever the prune expiry of
+ * the repository configuration is.
+ * 
+ * @author bahadir.tasdemir@hotmail.com.tr
+ */
+public class MaintenanceScheduler {
+
+	protected final GitVersioner gitVersioner;
+	protected final long quietMillis;
+	protected final long looseObjectThreshold;
+	protected final long packFileThreshold;
+	protected final ScheduledExecutorService executorService;
+	protected long gcCount;
+	protected long lastGcTime;
+	protected long lastGcDurationMillis;
+	protected static final Logger logger = LogManager.getLogger(MaintenanceScheduler.class);
+
+	/**
+	 * Start checking the repository periodically
+	 * 
+	 * @param gitVersioner
+	 *            Versioner of the repository
+	 * @param checkIntervalMillis
+	 *            Time between two checks of the statistics
+	 * @param quietMillis
+	 *            Time without writes before a collection may start
+	 * @param looseObjectThreshold
+	 *            Loose object count that triggers a collection
+	 * @param packFileThreshold
+	 *            Pack file count that triggers a collection
+	 */
+	public MaintenanceScheduler(GitVersioner gitVersioner, long checkIntervalMillis, long quietMillis,
+			long looseObjectThreshold, long packFileThreshold) {
+		if (checkIntervalMillis <= 0 || quietMillis < 0 || looseObjectThreshold <= 0 || packFileThreshold <= 0) {
+			throw new IllegalArgumentException(CommonConstants.ERROR_EMPTY_ARGUMENT);
+		}
+		this.gitVersioner = gitVersioner;
+		this.quietMillis = quietMillis;
+		this.looseObjectThreshold = looseObjectThreshold;
+		this.packFileThreshold = packFileThreshold;
+		this.executorService = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, CommonConstants.MAINTENANCE_THREAD_NAME);
+				thread.setDaemon(true);
+				thread.setPriority(Thread.MIN_PRIORITY);
+				return thread;
+			}
+		});
+		this.executorService.scheduleWithFixedDelay(new Runnable() {
+			public void run() {
+				check();
+			}
+		}, checkIntervalMillis, checkIntervalMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Read the current statistics of the object store
+	 * 
+	 * @return Statistics, null if the repository is not open or not on disc
+	 * @throws IOException
+	 *             Throws if an IO exception occurs
+	 */
+	public RepositoryStatistics getStatistics() throws IOException {
+		FileRepository repository = this.getFileRepository();
+		if (repository == null) {
+			return null;
+		}
+		GC.RepoStatistics repoStatistics = new GC(repository).getStatistics();
+		RepositoryStatistics statistics = new RepositoryStatistics();
+		statistics.setLooseObjectCount(repoStatistics.numberOfLooseObjects);
+		statistics.setLooseObjectSize(repoStatistics.sizeOfLooseObjects);
+		statistics.setPackFileCount(repoStatistics.numberOfPackFiles);
+		statistics.setPackedObjectCount(repoStatistics.numberOfPackedObjects);
+		statistics.setPackedObjectSize(repoStatistics.sizeOfPackedObjects);
+		statistics.setLooseRefCount(repoStatistics.numberOfLooseRefs);
+		statistics.setPackedRefCount(repoStatistics.numberOfPackedRefs);
+		synchronized (this) {
+			statistics.setGcCount(gcCount);
+			statistics.setLastGcTime(lastGcTime);
+			statistics.setLastGcDurationMillis(lastGcDurationMillis);
+		}
+		return statistics;
+	}
+
+	/**
+	 * Collect garbage right now regardless of the thresholds
+	 * 
+	 * @throws IOException
+	 *             Throws if an IO exception occurs
+	 */
+	public void runNow() throws IOException {
+		this.collectGarbage();
+	}
+
+	/**
+	 * Stop the background thread, a running collection is interrupted
+	 */
+	public void close() {
+		executorService.shutdownNow();
+		try {
+			executorService.awaitTermination(CommonConstants.MAINTENANCE_CLOSE_TIMEOUT_MILLIS,
+					TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Collect garbage if a threshold is exceeded during a quiet period
+	 */
+	protected void check() {
+		try {
+			if (!this.isQuiet()) {
+				return;
+			}
+			RepositoryStatistics statistics = this.getStatistics();
+			if (statistics != null && (statistics.getLooseObjectCount() >= looseObjectThreshold
+					|| statistics.getPackFileCount() >= packFileThreshold)) {
+				this.collectGarbage();
+			}
+		} catch (IOException e) {
+			logger.error(e.getMessage());
+		} catch (RuntimeException e) {
+			// A task that throws is never run again by the executor
+			logger.error(String.valueOf(e));
+		}
+	}
+
+	/**
+	 * Check if no write is running and none ended within the quiet period
+	 * 
+	 * @return True if a collection may start
+	 */
+	protected boolean isQuiet() {
+		return !gitVersioner.writeLock.isLocked()
+				&& System.currentTimeMillis() - gitVersioner.getLastWriteTime() >= quietMillis;
+	}
+
+	/**
+	 * Pack the refs and the objects, then prune the loose objects that are
+	 * packed now or expired
+	 * 
+	 * @throws IOException
+	 *             Throws if an IO exception occurs
+	 */
+	protected synchronized void collectGarbage() throws IOException {
+		FileRepository repository = this.getFileRepository();
+		if (repository == null) {
+			return;
+		}
+		long startTime = System.currentTimeMillis();
+		GC gc = new GC(repository);
+		gc.setProgressMonitor(NullProgressMonitor.INSTANCE);
+		// Packing the refs rewrites the refs that commits update
+		gitVersioner.writeLock.lock();
+		try {
+			gc.packRefs();
+		} finally {
+			gitVersioner.writeLock.unlock();
+		}
+		gc.repack();
+		// Packed copies make loose objects redundant at any age
+		gc.prunePacked();
+		gc.setExpireAgeMillis(CommonConstants.MAINTENANCE_PRUNE_EXPIRE_MILLIS);
+		try {
+			gc.prune(Collections.<ObjectId> emptySet());
+		} catch (ParseException e) {
+			throw new IOException(e);
+		}
+		gcCount++;
+		lastGcTime = System.currentTimeMillis();
+		lastGcDurationMillis = lastGcTime - startTime;
+		logger.info(MessageFormat.format(MessageConstants.INFO_GC_COMPLETED, gitVersioner.getLocalPath(),
+				lastGcDurationMillis));
+	}
+
+	/**
+	 * Get the repository without opening a closed versioner
+	 * 
+	 * @return Repository on disc, null if not open or kept in memory
+	 */
+	protected FileRepository getFileRepository() {
+		Repository repository = gitVersioner.localRepo;
+		return repository instanceof FileRepository ? (FileRepository) repository : null;
+	}
+
+}
@@ -0,0 +1,19 @@
+package com.btasdemir.gitversioning.versioner;
+
+import org.eclipse.jgit.api.errors.GitAPIException;
+
+/**
+ * Thrown by GIT API operations of a versioner when objects or refs cannot be
+ * read from or written to the object store
+ * 
+ * @author bahadir.tasdemir@hotmail.com.tr
+ */
+public class ObjectStoreException extends GitAPIException {
+
+	private static final long serialVersionUID = 1L;
+
+	public ObjectStoreException(String message, Throwable cause) {
+		super(message, cause);
+	}
+
+}
@@ -0,0 +1,264 @@
+package com.btasdemir.gitversioning.versioner;
+
+import java.io.IOException;
+import java.text.MessageFormat;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+
+import com.btasdemir.gitversioning.constant.CommonConstants;
+import com.btasdemir.gitversioning.constant.MessageConstants;
+
+/**
+ * Pushes local commits to the remote in the background.
+ * 
+ * Push requests only mark the repository as dirty. A single background
+ * thread waits for the coalesce delay and then pushes once, so any number of
+ * commits made in the meantime travel in one push. Failed pushes are retried
+ * with exponential backoff until they succeed or the scheduler is closed.
+ * 
+ * @author bahadir.tasdemir@hotmail.com.tr
+ */
+public class PushScheduler {
+
+	protected final GitVersioner gitVersioner;
+	protected final long coalesceMillis;
+	protected final long initialBackoffMillis;
+	protected final long maxBackoffMillis;
+	protected final ScheduledExecutorService executorService;
+	protected boolean pending;
+	protected boolean scheduled;
+	protected boolean closed;
+	protected int failedAttempts;
+	protected long pushCount;
+	protected long lastPushTime;
+	protected String lastError;
+	protected ObjectId lastPushedId;
+	protected static final Logger logger = LogManager.getLogger(PushScheduler.class);
+
+	public PushScheduler(GitVersioner gitVersioner, long coalesceMillis, long initialBackoffMillis,
+			long maxBackoffMillis) {
+		if (coalesceMillis < 0 || initialBackoffMillis <= 0 || maxBackoffMillis < initialBackoffMillis) {
+			throw new IllegalArgumentException(CommonConstants.ERROR_EMPTY_ARGUMENT);
+		}
+		this.gitVersioner = gitVersioner;
+		this.coalesceMillis = coalesceMillis;
+		this.initialBackoffMillis = initialBackoffMillis;
+		this.maxBackoffMillis = maxBackoffMillis;
+		this.executorService = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, CommonConstants.PUSH_SCHEDULER_THREAD_NAME);
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		this.lastPushedId = this.resolveRemoteTrackingHead();
+	}
+
+	/**
+	 * Request a push of the current local commits. Returns immediately, the
+	 * push is done by the background thread together with other requests.
+	 */
+	public synchronized void requestPush() {
+		if (closed) {
+			throw new IllegalStateException(MessageConstants.ERROR_PUSH_SCHEDULER_CLOSED);
+		}
+		pending = true;
+		if (!scheduled) {
+			this.schedule(coalesceMillis);
+		}
+	}
+
+	/**
+	 * Count local commits that are not pushed to the remote yet
+	 * 
+	 * @return Number of commits the remote lags behind local HEAD
+	 * @throws IOException
+	 *             Throws if an IO exception occurs
+	 */
+	public int getRemoteLag() throws IOException {
+		gitVersioner.checkGit();
+		ObjectId head = gitVersioner.localRepo.resolve(CommonConstants.GIT_TERM_HEAD);
+		if (head == null) {
+			return 0;
+		}
+		ObjectId pushedId = this.getLastPushedId();
+		RevWalk revWalk = new RevWalk(gitVersioner.localRepo);
+		try {
+			revWalk.markStart(revWalk.parseCommit(head));
+			if (pushedId != null) {
+				revWalk.markUninteresting(revWalk.parseCommit(pushedId));
+			}
+			int lag = 0;
+			for (RevCommit revCommit = revWalk.next(); revCommit != null; revCommit = revWalk.next()) {
+				lag++;
+			}
+			return lag;
+		} finally {
+			revWalk.close();
+		}
+	}
+
+	/**
+	 * Check if there are push requests that are not completed yet
+	 * 
+	 * @return True if a push is waiting or being retried
+	 */
+	public synchronized boolean isPushPending() {
+		return pending || scheduled;
+	}
+
+	/**
+	 * Get the last commit known to be on the remote
+	 * 
+	 * @return Id of the last pushed commit, null if nothing is pushed yet
+	 */
+	public synchronized ObjectId getLastPushedId() {
+		return lastPushedId;
+	}
+
+	/**
+	 * Get how many pushes are completed successfully
+	 * 
+	 * @return Successful push count
+	 */
+	public synchronized long getPushCount() {
+		return pushCount;
+	}
+
+	/**
+	 * Get the time of the last successful push
+	 * 
+	 * @return Time in milliseconds, zero if nothing is pushed yet
+	 */
+	public synchronized long getLastPushTime() {
+		return lastPushTime;
+	}
+
+	/**
+	 * Get the message of the last failed push attempt
+	 * 
+	 * @return Error message, null if the last attempt succeeded
+	 */
+	public synchronized String getLastError() {
+		return lastError;
+	}
+
+	/**
+	 * Stop the background thread. A final push is attempted if there are
+	 * pending requests.
+	 */
+	public void close() {
+		boolean pushOnClose;
+		synchronized (this) {
+			closed = true;
+			pushOnClose = pending || scheduled;
+		}
+		executorService.shutdownNow();
+		try {
+			executorService.awaitTermination(CommonConstants.PUSH_SCHEDULER_CLOSE_TIMEOUT_MILLIS,
+					TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		if (pushOnClose) {
+			this.pushOnce();
+		}
+	}
+
+	/**
+	 * Schedule the push task after the given delay
+	 * 
+	 * @param delayMillis
+	 *            Delay before pushing
+	 */
+	protected synchronized void schedule(long delayMillis) {
+		scheduled = true;
+		executorService.schedule(new Runnable() {
+			public void run() {
+				pushOnce();
+			}
+		}, delayMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Push all local commits once and reschedule if needed
+	 */
+	protected void pushOnce() {
+		synchronized (this) {
+			pending = false;
+		}
+		String error = null;
+		ObjectId head = null;
+		try {
+			head = gitVersioner.localRepo.resolve(CommonConstants.GIT_TERM_HEAD);
+			gitVersioner.push();
+		} catch (Exception e) {
+			error = e.getMessage();
+		}
+		synchronized (this) {
+			scheduled = false;
+			if (error == null) {
+				failedAttempts = 0;
+				pushCount++;
+				lastPushTime = System.currentTimeMillis();
+				lastPushedId = head;
+				lastError = null;
+				if (pending && !closed) {
+					this.schedule(coalesceMillis);
+				}
+			} else {
+				failedAttempts++;
+				lastError = error;
+				pending = true;
+				long backoff = this.getBackoffMillis(failedAttempts);
+				logger.warn(MessageFormat.format(MessageConstants.WARNING_PUSH_RETRY, error, backoff));
+				if (!closed) {
+					this.schedule(backoff);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Calculate the exponential backoff of a retry
+	 * 
+	 * @param attempts
+	 *            Number of failed attempts so far
+	 * @return Delay before the next attempt
+	 */
+	protected long getBackoffMillis(int attempts) {
+		long backoff = initialBackoffMillis;
+		for (int i = 1; i < attempts && backoff < maxBackoffMillis; i++) {
+			backoff *= 2;
+		}
+		return Math.min(backoff, maxBackoffMillis);
+	}
+
+	/**
+	 * Resolve the remote tracking branch of the current branch, which is the
+	 * last commit known to be on the remote when the repository is cloned
+	 * 
+	 * @return Id of the remote tracking branch, null if unknown
+	 */
+	protected ObjectId resolveRemoteTrackingHead() {
+		try {
+			gitVersioner.checkGit();
+			String branch = gitVersioner.localRepo.getBranch();
+			return gitVersioner.localRepo
+					.resolve(Constants.R_REMOTES + CommonConstants.GIT_TERM_ORIGIN + "/" + branch);
+		} catch (IOException e) {
+			logger.error(e.getMessage());
+		}
+		return null;
+	}
+
+}
@@ -0,0 +1,389 @@
+package com.btasdemir.gitversioning.versioner;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.eclipse.jgit.api.MergeCommand.FastForwardMode;
+import org.eclipse.jgit.api.MergeResult;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.internal.storage.file.FileRepository;
+import org.eclipse.jgit.internal.storage.file.GC;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.transport.RefSpec;
+import org.eclipse.jgit.transport.RemoteConfig;
+
+import com.btasdemir.gitversioning.constant.CommonConstants;
+import com.btasdemir.gitversioning.constant.MessageConstants;
+
+/**
+ * Keeps the local repository in sync with the remote in the background.
+ * 
+ * Each check lists the refs the remote advertises and compares them with the
+ * local remote tracking refs, which costs one round trip and no objects.
+ * Only if a ref moved the new objects are fetched, and the current branch is
+ * fast forwarded to its tracking ref. The branch is never merged: if local
+ * commits that are not pushed yet make a fast forward impossible, the branch
+ * is left alone and the divergence is reported as the last error until a
+ * pull resolves it. The time between checks drops back to the minimum
+ * whenever the remote changed and doubles up to the maximum while it did
+ * not, so quiet remotes are polled rarely and busy ones closely.
+ * 
+ * @author bahadir.tasdemir@hotmail.com.tr
+ */
+public class RemoteSyncService {
+
+	protected final GitVersioner gitVersioner;
+	protected final long minIntervalMillis;
+	protected final long maxIntervalMillis;
+	protected final ScheduledExecutorService executorService;
+	// Syncs are serialized by this lock, the statistics are written under it
+	// and read without it so that they never wait for the network
+	protected final Object syncLock = new Object();
+	protected volatile long intervalMillis;
+	protected volatile boolean closed;
+	protected volatile long checkCount;
+	protected volatile long fetchCount;
+	protected volatile long fetchedBytes;
+	protected volatile long lastCheckTime;
+	protected volatile long lastChangeTime;
+	protected volatile String lastError;
+	protected static final Logger logger = LogManager.getLogger(RemoteSyncService.class);
+
+	/**
+	 * Start checking the remote periodically
+	 * 
+	 * @param gitVersioner
+	 *            Versioner of the repository
+	 * @param minIntervalMillis
+	 *            Time between checks while the remote changes
+	 * @param maxIntervalMillis
+	 *            Time between checks while the remote is quiet
+	 */
+	public RemoteSyncService(GitVersioner gitVersioner, long minIntervalMillis, long maxIntervalMillis) {
+		if (minIntervalMillis <= 0 || maxIntervalMillis < minIntervalMillis) {
+			throw new IllegalArgumentException(CommonConstants.ERROR_EMPTY_ARGUMENT);
+		}
+		this.gitVersioner = gitVersioner;
+		this.minIntervalMillis = minIntervalMillis;
+		this.maxIntervalMillis = maxIntervalMillis;
+		this.intervalMillis = minIntervalMillis;
+		this.executorService = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, CommonConstants.REMOTE_SYNC_THREAD_NAME);
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		this.schedule(minIntervalMillis);
+	}
+
+	/**
+	 * Check the remote and sync right now
+	 * 
+	 * @return True if the remote had changes that are fetched now
+	 * @throws IOException
+	 *             Throws if an IO exception occurs
+	 * @throws GitAPIException
+	 *             Throws if a GIT API exception occurs
+	 */
+	public boolean syncNow() throws IOException, GitAPIException {
+		synchronized (syncLock) {
+			gitVersioner.checkGit();
+			List<RefSpec> refSpecs = this.getFetchRefSpecs();
+			Collection<Ref> remoteRefs = gitVersioner.git.lsRemote().setRemote(gitVersioner.remotePath)
+					.setCredentialsProvider(gitVersioner.credentialsProvider).setHeads(true).call();
+			checkCount++;
+			lastCheckTime = System.currentTimeMillis();
+			lastError = null;
+			if (!this.isRemoteAhead(remoteRefs, refSpecs)) {
+				// A branch that could not be fast forwarded before is retried
+				this.fastForward(refSpecs);
+				return false;
+			}
+			long sizeBefore = this.getObjectStoreSize();
+			gitVersioner.git.fetch().setRemote(gitVersioner.remotePath)
+					.setCredentialsProvider(gitVersioner.credentialsProvider).setRefSpecs(refSpecs).call();
+			long bytes = Math.max(0, this.getObjectStoreSize() - sizeBefore);
+			fetchCount++;
+			fetchedBytes += bytes;
+			this.fastForward(refSpecs);
+			lastChangeTime = System.currentTimeMillis();
+			logger.info(
+					MessageFormat.format(MessageConstants.INFO_REMOTE_SYNCED, gitVersioner.getLocalPath(), bytes));
+			return true;
+		}
+	}
+
+	/**
+	 * Get the time since the remote was last known to be in sync
+	 * 
+	 * @return Milliseconds since the last successful check, -1 if never
+	 *         checked
+	 */
+	public long getSyncLagMillis() {
+		long checkTime = lastCheckTime;
+		return checkTime == 0 ? -1 : System.currentTimeMillis() - checkTime;
+	}
+
+	public long getCheckCount() {
+		return checkCount;
+	}
+
+	public long getFetchCount() {
+		return fetchCount;
+	}
+
+	/**
+	 * Get the total size the fetches added to the object store
+	 * 
+	 * @return Bytes fetched, zero if the repository is not on disc
+	 */
+	public long getFetchedBytes() {
+		return fetchedBytes;
+	}
+
+	public long getLastChangeTime() {
+		return lastChangeTime;
+	}
+
+	public long getIntervalMillis() {
+		return intervalMillis;
+	}
+
+	public String getLastError() {
+		return lastError;
+	}
+
+	/**
+	 * Stop the background thread, a running sync is completed
+	 */
+	public void close() {
+		synchronized (this) {
+			closed = true;
+		}
+		executorService.shutdown();
+		try {
+			executorService.awaitTermination(CommonConstants.REMOTE_SYNC_CLOSE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Sync once and schedule the next check by how the remote behaved. The
+	 * next check is scheduled whatever happens, an unexpected failure must
+	 * not stop the service.
+	 */
+	protected void check() {
+		try {
+			synchronized (syncLock) {
+				if (closed) {
+					return;
+				}
+				try {
+					boolean changed = this.syncNow();
+					intervalMillis = changed ? minIntervalMillis : Math.min(maxIntervalMillis, intervalMillis * 2);
+				} catch (IOException e) {
+					this.failed(e.getMessage());
+				} catch (GitAPIException e) {
+					this.failed(e.getMessage());
+				} catch (RuntimeException e) {
+					this.failed(String.valueOf(e));
+				}
+			}
+		} finally {
+			this.schedule(intervalMillis);
+		}
+	}
+
+	/**
+	 * Report a sync that reached the remote but could not update the branch
+	 * 
+	 * @param message
+	 *            Reason of the failure
+	 */
+	protected void syncFailed(String message) {
+		lastError = message;
+		logger.warn(message);
+	}
+
+	protected void failed(String message) {
+		lastError = message;
+		intervalMillis = Math.min(maxIntervalMillis, intervalMillis * 2);
+		logger.warn(MessageFormat.format(MessageConstants.WARNING_REMOTE_SYNC_FAILED, message, intervalMillis));
+	}
+
+	protected synchronized void schedule(long delayMillis) {
+		if (closed) {
+			return;
+		}
+		executorService.schedule(new Runnable() {
+			public void run() {
+				check();
+			}
+		}, delayMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Get the fetch ref specs of origin, all branches if none is configured
+	 * 
+	 * @return Ref specs mapping remote branches to tracking refs
+	 * @throws IOException
+	 *             Throws if the configuration cannot be read
+	 */
+	protected List<RefSpec> getFetchRefSpecs() throws IOException {
+		List<RefSpec> refSpecs;
+		try {
+			refSpecs = new ArrayList<RefSpec>(
+					new RemoteConfig(gitVersioner.localRepo.getConfig(), CommonConstants.GIT_TERM_ORIGIN)
+							.getFetchRefSpecs());
+		} catch (URISyntaxException e) {
+			throw new IOException(e);
+		}
+		if (refSpecs.isEmpty()) {
+			refSpecs.add(new RefSpec().setForceUpdate(true).setSourceDestination(Constants.R_HEADS + "*",
+					Constants.R_REMOTES + CommonConstants.GIT_TERM_ORIGIN + "/*"));
+		}
+		return refSpecs;
+	}
+
+	/**
+	 * Compare the advertised branches with their tracking refs
+	 * 
+	 * @param remoteRefs
+	 *            Refs advertised by the remote
+	 * @param refSpecs
+	 *            Fetch ref specs
+	 * @return True if a fetched branch differs from its tracking ref
+	 * @throws IOException
+	 *             Throws if a ref cannot be read
+	 */
+	protected boolean isRemoteAhead(Collection<Ref> remoteRefs, List<RefSpec> refSpecs) throws IOException {
+		for (Ref remoteRef : remoteRefs) {
+			String trackingName = this.getTrackingName(remoteRef.getName(), refSpecs);
+			if (trackingName != null
+					&& !remoteRef.getObjectId().equals(gitVersioner.localRepo.resolve(trackingName))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	protected String getTrackingName(String remoteName, List<RefSpec> refSpecs) {
+		for (RefSpec refSpec : refSpecs) {
+			if (refSpec.matchSource(remoteName)) {
+				return refSpec.expandFromSource(remoteName).getDestination();
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Fast forward the current branch to its tracking ref. A branch that
+	 * diverged from the remote and a fast forward that fails are reported as
+	 * the last error, HEAD stays at the commit it pointed to.
+	 * 
+	 * @param refSpecs
+	 *            Fetch ref specs
+	 * @return True if the branch is at its tracking ref or ahead of it
+	 * @throws IOException
+	 *             Throws if an IO exception occurs
+	 * @throws GitAPIException
+	 *             Throws if a GIT API exception occurs
+	 */
+	protected boolean fastForward(List<RefSpec> refSpecs) throws IOException, GitAPIException {
+		Repository repository = gitVersioner.localRepo;
+		String trackingName = this.getTrackingName(repository.getFullBranch(), refSpecs);
+		ObjectId trackingId = trackingName == null ? null : repository.resolve(trackingName);
+		if (trackingId == null) {
+			return true;
+		}
+		gitVersioner.writeLock.lock();
+		try {
+			ObjectId head = repository.resolve(CommonConstants.GIT_TERM_HEAD);
+			if (trackingId.equals(head)) {
+				return true;
+			}
+			boolean fastForward = head == null;
+			if (!fastForward) {
+				RevWalk revWalk = new RevWalk(repository);
+				try {
+					RevCommit headCommit = revWalk.parseCommit(head);
+					RevCommit trackingCommit = revWalk.parseCommit(trackingId);
+					if (revWalk.isMergedInto(trackingCommit, headCommit)) {
+						// Remote only lags behind local commits
+						return true;
+					}
+					fastForward = revWalk.isMergedInto(headCommit, trackingCommit);
+				} finally {
+					revWalk.close();
+				}
+			}
+			if (!fastForward) {
+				this.syncFailed(MessageFormat.format(MessageConstants.ERROR_REMOTE_DIVERGED, repository.getFullBranch(),
+						trackingName));
+				return false;
+			}
+			MergeResult mergeResult = gitVersioner.git.merge().include(trackingId)
+					.setFastForward(FastForwardMode.FF_ONLY).call();
+			if (!mergeResult.getMergeStatus().isSuccessful()) {
+				ObjectId current = repository.resolve(CommonConstants.GIT_TERM_HEAD);
+				if (head != null && !head.equals(current)) {
+					gitVersioner.git.reset().setRef(head.getName()).call();
+				}
+				this.syncFailed(MessageFormat.format(MessageConstants.ERROR_FAST_FORWARD_FAILED,
+						repository.getFullBranch(), trackingName, mergeResult.getMergeStatus()));
+				return false;
+			}
+			gitVersioner.updatePathIndex();
+			return true;
+		} finally {
+			gitVersioner.writeLock.unlock();
+		}
+	}
+
+	/**
+	 * Get the size of the object store to measure what a fetch adds. Pack
+	 * files are listed directly, the pack list of the repository may not see
+	 * a pack written within the same second yet.
+	 * 
+	 * @return Size of the loose objects and the pack files, zero if not on
+	 *         disc
+	 * @throws IOException
+	 *             Throws if an IO exception occurs
+	 */
+	protected long getObjectStoreSize() throws IOException {
+		Repository repository = gitVersioner.localRepo;
+		if (!(repository instanceof FileRepository)) {
+			return 0;
+		}
+		FileRepository fileRepository = (FileRepository) repository;
+		long size = new GC(fileRepository).getStatistics().sizeOfLooseObjects;
+		File[] packFiles = new File(fileRepository.getObjectsDirectory(), CommonConstants.PACK_DIRECTORY).listFiles();
+		if (packFiles != null) {
+			for (File packFile : packFiles) {
+				if (packFile.getName().endsWith(CommonConstants.PACK_FILE_SUFFIX)) {
+					size += packFile.length();
+				}
+			}
+		}
+		return size;
+	}
+
+}
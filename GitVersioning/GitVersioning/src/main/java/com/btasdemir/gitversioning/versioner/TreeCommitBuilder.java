@@ -0,0 +1,192 @@
+package com.btasdemir.gitversioning.versioner;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.text.MessageFormat;
+
+import org.eclipse.jgit.api.errors.ConcurrentRefUpdateException;
+import org.eclipse.jgit.dircache.DirCache;
+import org.eclipse.jgit.dircache.DirCacheBuilder;
+import org.eclipse.jgit.dircache.DirCacheEditor;
+import org.eclipse.jgit.dircache.DirCacheEntry;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.CommitBuilder;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+
+import com.btasdemir.gitversioning.constant.MessageConstants;
+
+/**
+ * Builds commits directly in the object store, without a working tree or an
+ * index file.
+ * 
+ * Contents are inserted as blobs, trees are written from an in core index
+ * and HEAD is moved with a compare and swap, so a commit built on an
+ * outdated parent is rejected instead of overwriting another commit.
+ * 
+ * @author bahadir.tasdemir@hotmail.com.tr
+ */
+public class TreeCommitBuilder {
+
+	protected final Repository repository;
+
+	public TreeCommitBuilder(Repository repository) {
+		this.repository = repository;
+	}
+
+	/**
+	 * Insert content as a blob
+	 * 
+	 * @param content
+	 *            Content of the file
+	 * @return Id of the blob
+	 * @throws IOException
+	 *             Throws if an IO exception occurs
+	 */
+	public ObjectId insertBlob(byte[] content) throws IOException {
+		ObjectInserter inserter = repository.newObjectInserter();
+		try {
+			ObjectId blobId = inserter.insert(Constants.OBJ_BLOB, content);
+			inserter.flush();
+			return blobId;
+		} finally {
+			inserter.close();
+		}
+	}
+
+	/**
+	 * Stream content into a blob
+	 * 
+	 * @param content
+	 *            Stream of the content, not closed by this method
+	 * @param length
+	 *            Exact number of bytes to read from the stream
+	 * @return Id of the blob
+	 * @throws IOException
+	 *             Throws if an IO exception occurs
+	 */
+	public ObjectId insertBlob(InputStream content, long length) throws IOException {
+		ObjectInserter inserter = repository.newObjectInserter();
+		try {
+			ObjectId blobId = inserter.insert(Constants.OBJ_BLOB, length, content);
+			inserter.flush();
+			return blobId;
+		} finally {
+			inserter.close();
+		}
+	}
+
+	/**
+	 * Read the tree of a commit into a new in core index
+	 * 
+	 * @param commitId
+	 *            Id of the commit, null for an empty index
+	 * @return In core index with the files of the commit
+	 * @throws IOException
+	 *             Throws if an IO exception occurs
+	 */
+	public DirCache readTree(AnyObjectId commitId) throws IOException {
+		DirCache dirCache = DirCache.newInCore();
+		if (commitId != null) {
+			ObjectReader reader = repository.newObjectReader();
+			RevWalk revWalk = new RevWalk(reader);
+			try {
+				DirCacheBuilder builder = dirCache.builder();
+				builder.addTree(new byte[0], DirCacheEntry.STAGE_0, reader, revWalk.parseCommit(commitId).getTree());
+				builder.finish();
+			} finally {
+				revWalk.close();
+				reader.close();
+			}
+		}
+		return dirCache;
+	}
+
+	/**
+	 * Point a path of an in core index to a blob
+	 * 
+	 * @param dirCache
+	 *            Index to edit
+	 * @param path
+	 *            Path of the file
+	 * @param blobId
+	 *            Id of the blob, null to remove the path
+	 */
+	public void setPath(DirCache dirCache, String path, final ObjectId blobId) {
+		DirCacheEditor editor = dirCache.editor();
+		if (blobId == null) {
+			editor.add(new DirCacheEditor.DeletePath(path));
+		} else {
+			editor.add(new DirCacheEditor.PathEdit(path) {
+				@Override
+				public void apply(DirCacheEntry entry) {
+					entry.setFileMode(FileMode.REGULAR_FILE);
+					entry.setObjectId(blobId);
+				}
+			});
+		}
+		editor.finish();
+	}
+
+	/**
+	 * Write the index as a tree, commit it on top of the parent and move HEAD
+	 * to the new commit if HEAD still points to the parent
+	 * 
+	 * @param dirCache
+	 *            Index with the files of the commit
+	 * @param parentId
+	 *            Expected current HEAD, null if the branch is unborn
+	 * @param message
+	 *            Message of the commit
+	 * @return The created commit
+	 * @throws IOException
+	 *             Throws if an IO exception occurs
+	 * @throws ConcurrentRefUpdateException
+	 *             Throws if HEAD moved away from the parent meanwhile
+	 */
+	public RevCommit commit(DirCache dirCache, ObjectId parentId, String message)
+			throws IOException, ConcurrentRefUpdateException {
+		ObjectId commitId;
+		ObjectInserter inserter = repository.newObjectInserter();
+		try {
+			PersonIdent personIdent = new PersonIdent(repository);
+			CommitBuilder commitBuilder = new CommitBuilder();
+			commitBuilder.setTreeId(dirCache.writeTree(inserter));
+			if (parentId != null) {
+				commitBuilder.setParentId(parentId);
+			}
+			commitBuilder.setAuthor(personIdent);
+			commitBuilder.setCommitter(personIdent);
+			commitBuilder.setMessage(message);
+			commitId = inserter.insert(commitBuilder);
+			inserter.flush();
+		} finally {
+			inserter.close();
+		}
+		RevWalk revWalk = new RevWalk(repository);
+		try {
+			RevCommit revCommit = revWalk.parseCommit(commitId);
+			RefUpdate refUpdate = repository.updateRef(Constants.HEAD);
+			refUpdate.setNewObjectId(revCommit);
+			refUpdate.setExpectedOldObjectId(parentId == null ? ObjectId.zeroId() : parentId);
+			refUpdate.setRefLogMessage(message, false);
+			RefUpdate.Result result = refUpdate.update(revWalk);
+			if (result != RefUpdate.Result.NEW && result != RefUpdate.Result.FAST_FORWARD) {
+				throw new ConcurrentRefUpdateException(MessageFormat.format(MessageConstants.ERROR_REF_UPDATE_REJECTED,
+						Constants.HEAD, result), refUpdate.getRef(), result);
+			}
+			return revCommit;
+		} finally {
+			revWalk.close();
+		}
+	}
+
+}
@@ -0,0 +1,481 @@
+package com.btasdemir.gitversioning.versioner;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.eclipse.jgit.api.errors.CanceledException;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.NullProgressMonitor;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectLoader;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.ProgressMonitor;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevSort;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.AndTreeFilter;
+import org.eclipse.jgit.treewalk.filter.PathFilterGroup;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+
+import com.btasdemir.gitversioning.constant.CommonConstants;
+import com.btasdemir.gitversioning.constant.MessageConstants;
+import com.btasdemir.gitversioning.metrics.Operation;
+import com.btasdemir.gitversioning.util.CheckValueUtil;
+
+/**
+ * Exports every historical version of a set of files or directories.
+ * 
+ * The history is walked once to find the blob of each version. Versions
+ * sharing a blob are inflated once: in a directory the first copy is written
+ * and the others are hard links to it, in a zip the inflated content is
+ * written to every entry. Blobs are inflated and written in parallel by a
+ * bounded fork join pool, each worker reading with its own object reader.
+ * 
+ * Files are exported with the same layout as getRevisionFileById uses under
+ * the local path. Progress is reported to a JGit progress monitor, which also
+ * cancels the export when it reports being cancelled.
+ * 
+ * @author bahadir.tasdemir@hotmail.com.tr
+ */
+public class VersionExporter {
+
+	protected final GitVersioner gitVersioner;
+	protected final ForkJoinPool pool;
+	protected static final Logger logger = LogManager.getLogger(VersionExporter.class);
+
+	/**
+	 * Create an exporter
+	 * 
+	 * @param gitVersioner
+	 *            Versioner of the repository
+	 * @param parallelism
+	 *            Number of threads inflating and writing blobs
+	 */
+	public VersionExporter(GitVersioner gitVersioner, int parallelism) {
+		if (parallelism <= 0) {
+			throw new IllegalArgumentException(CommonConstants.ERROR_EMPTY_ARGUMENT);
+		}
+		this.gitVersioner = gitVersioner;
+		this.pool = new ForkJoinPool(parallelism);
+	}
+
+	/**
+	 * Export all versions of the given paths to a directory
+	 * 
+	 * @param paths
+	 *            File or directory paths to export the versions of
+	 * @param directory
+	 *            Target folder, created if missing
+	 * @param monitor
+	 *            Progress monitor counting exported files, may be null
+	 * @return Number of exported files
+	 * @throws IOException
+	 *             Throws if an IO exception occurs
+	 * @throws CanceledException
+	 *             Throws if the monitor cancels the export
+	 */
+	public long exportToDirectory(Collection<String> paths, File directory, ProgressMonitor monitor)
+			throws IOException, CanceledException {
+		long startTime = gitVersioner.startOperation(Operation.EXPORT);
+		boolean failed = true;
+		try {
+			List<BlobVersions> blobs = this.collectVersions(paths);
+			ExportProgress progress = new ExportProgress(monitor, this.countFiles(blobs));
+			pool.invoke(new DirectoryExportTask(blobs, 0, blobs.size(), directory, progress));
+			long exported = progress.finish();
+			failed = false;
+			return exported;
+		} finally {
+			gitVersioner.completeOperation(Operation.EXPORT, startTime, failed);
+		}
+	}
+
+	/**
+	 * Export all versions of the given paths as a zip stream. Blobs are
+	 * inflated in parallel a window at a time and written in order, so only
+	 * a window of contents is held in memory.
+	 * 
+	 * @param paths
+	 *            File or directory paths to export the versions of
+	 * @param out
+	 *            Stream to write the zip to, not closed
+	 * @param monitor
+	 *            Progress monitor counting exported files, may be null
+	 * @return Number of exported files
+	 * @throws IOException
+	 *             Throws if an IO exception occurs
+	 * @throws CanceledException
+	 *             Throws if the monitor cancels the export
+	 */
+	public long exportToZip(Collection<String> paths, OutputStream out, ProgressMonitor monitor)
+			throws IOException, CanceledException {
+		long startTime = gitVersioner.startOperation(Operation.EXPORT);
+		boolean failed = true;
+		try {
+			List<BlobVersions> blobs = this.collectVersions(paths);
+			ExportProgress progress = new ExportProgress(monitor, this.countFiles(blobs));
+			ZipOutputStream zipOut = new ZipOutputStream(out);
+			ObjectReader reader = gitVersioner.localRepo.newObjectReader();
+			try {
+				int window = pool.getParallelism() * CommonConstants.EXPORT_BATCH_SIZE;
+				for (int from = 0; from < blobs.size() && !progress.isStopped(); from += window) {
+					int to = Math.min(blobs.size(), from + window);
+					List<ForkJoinTask<byte[]>> contents = new ArrayList<ForkJoinTask<byte[]>>(to - from);
+					for (int i = from; i < to; i++) {
+						contents.add(pool.submit(new InflateTask(blobs.get(i).blobId)));
+					}
+					for (int i = from; i < to && !progress.isStopped(); i++) {
+						this.writeZipEntries(zipOut, reader, blobs.get(i), this.join(contents.get(i - from)));
+						progress.update(blobs.get(i).paths.size());
+					}
+				}
+				zipOut.finish();
+			} finally {
+				reader.close();
+			}
+			long exported = progress.finish();
+			failed = false;
+			return exported;
+		} finally {
+			gitVersioner.completeOperation(Operation.EXPORT, startTime, failed);
+		}
+	}
+
+	/**
+	 * Stop the worker threads
+	 */
+	public void close() {
+		pool.shutdownNow();
+	}
+
+	/**
+	 * Walk the history once and group the versions of the given paths by
+	 * their blobs
+	 * 
+	 * @param paths
+	 *            File or directory paths
+	 * @return Blobs with the export paths of their versions, newest first
+	 * @throws IOException
+	 *             Throws if an IO exception occurs
+	 */
+	protected List<BlobVersions> collectVersions(Collection<String> paths) throws IOException {
+		CheckValueUtil.checkCollectionVal(paths);
+		gitVersioner.checkGit();
+		Map<ObjectId, BlobVersions> blobs = new LinkedHashMap<ObjectId, BlobVersions>();
+		ObjectId head = gitVersioner.localRepo.resolve(CommonConstants.GIT_TERM_HEAD);
+		if (head == null) {
+			return new ArrayList<BlobVersions>();
+		}
+		RevWalk revWalk = new RevWalk(gitVersioner.localRepo);
+		TreeWalk treeWalk = new TreeWalk(gitVersioner.localRepo);
+		try {
+			revWalk.sort(RevSort.COMMIT_TIME_DESC);
+			revWalk.markStart(revWalk.parseCommit(head));
+			treeWalk.setRecursive(true);
+			treeWalk.setFilter(AndTreeFilter.create(PathFilterGroup.createFromStrings(paths), TreeFilter.ANY_DIFF));
+			for (RevCommit revCommit : revWalk) {
+				treeWalk.reset();
+				treeWalk.addTree(revCommit.getTree());
+				int parentCount = revCommit.getParentCount();
+				for (int i = 0; i < parentCount; i++) {
+					treeWalk.addTree(revWalk.parseCommit(revCommit.getParent(i)).getTree());
+				}
+				while (treeWalk.next()) {
+					// Deleted paths and unchanged merge sides are no new versions
+					if (treeWalk.getRawMode(0) == FileMode.TYPE_MISSING
+							|| this.equalsAnyParent(treeWalk, parentCount)) {
+						continue;
+					}
+					ObjectId blobId = treeWalk.getObjectId(0);
+					BlobVersions blobVersions = blobs.get(blobId);
+					if (blobVersions == null) {
+						blobVersions = new BlobVersions(blobId);
+						blobs.put(blobId, blobVersions);
+					}
+					blobVersions.paths.add(gitVersioner.getRevisionPath(revCommit.getName(), treeWalk.getPathString()));
+				}
+				revCommit.disposeBody();
+			}
+		} finally {
+			treeWalk.close();
+			revWalk.close();
+		}
+		return new ArrayList<BlobVersions>(blobs.values());
+	}
+
+	protected boolean equalsAnyParent(TreeWalk treeWalk, int parentCount) {
+		for (int i = 1; i <= parentCount; i++) {
+			if (treeWalk.idEqual(0, i)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	protected long countFiles(List<BlobVersions> blobs) {
+		long count = 0;
+		for (BlobVersions blobVersions : blobs) {
+			count += blobVersions.paths.size();
+		}
+		return count;
+	}
+
+	/**
+	 * Write one entry per version of a blob
+	 * 
+	 * @param zipOut
+	 *            Zip stream
+	 * @param reader
+	 *            Reader used to stream large blobs that are not inflated
+	 * @param blobVersions
+	 *            Blob and the export paths of its versions
+	 * @param content
+	 *            Inflated content, null if the blob is too large to hold or
+	 *            points to the large file store
+	 * @throws IOException
+	 *             Throws if an IO exception occurs
+	 */
+	protected void writeZipEntries(ZipOutputStream zipOut, ObjectReader reader, BlobVersions blobVersions,
+			byte[] content) throws IOException {
+		for (String path : blobVersions.paths) {
+			zipOut.putNextEntry(new ZipEntry(path.replace(File.separatorChar, '/')));
+			File largeFile;
+			if (content != null) {
+				zipOut.write(content);
+			} else if ((largeFile = gitVersioner.findLargeFile(blobVersions.blobId)) != null) {
+				Files.copy(largeFile.toPath(), zipOut);
+			} else {
+				reader.open(blobVersions.blobId, Constants.OBJ_BLOB).copyTo(zipOut);
+			}
+			zipOut.closeEntry();
+		}
+	}
+
+	/**
+	 * Wait for an inflation task and unwrap its failure
+	 * 
+	 * @param task
+	 *            Inflation task
+	 * @return Inflated content
+	 * @throws IOException
+	 *             Throws if the blob cannot be read
+	 */
+	protected byte[] join(ForkJoinTask<byte[]> task) throws IOException {
+		try {
+			return task.join();
+		} catch (RuntimeException e) {
+			// The pool wraps the exception of the task, maybe more than once
+			for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+				if (cause instanceof IOException) {
+					throw (IOException) cause;
+				}
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * Write the first version of a blob and link the others to it
+	 * 
+	 * @param reader
+	 *            Reader of the worker thread
+	 * @param blobVersions
+	 *            Blob and the export paths of its versions
+	 * @param directory
+	 *            Target folder
+	 * @throws IOException
+	 *             Throws if an IO exception occurs
+	 */
+	protected void writeFiles(ObjectReader reader, BlobVersions blobVersions, File directory) throws IOException {
+		File first = null;
+		for (String path : blobVersions.paths) {
+			File file = new File(directory, path);
+			file.getParentFile().mkdirs();
+			if (first == null) {
+				File largeFile = gitVersioner.findLargeFile(blobVersions.blobId);
+				if (largeFile != null) {
+					Files.copy(largeFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+				} else {
+					ObjectLoader loader = reader.open(blobVersions.blobId, Constants.OBJ_BLOB);
+					FileOutputStream out = new FileOutputStream(file);
+					try {
+						loader.copyTo(out);
+					} finally {
+						out.close();
+					}
+				}
+				first = file;
+				continue;
+			}
+			Files.deleteIfExists(file.toPath());
+			try {
+				Files.createLink(file.toPath(), first.toPath());
+			} catch (UnsupportedOperationException e) {
+				Files.copy(first.toPath(), file.toPath());
+			} catch (FileSystemException e) {
+				// No link support on the target file system
+				Files.copy(first.toPath(), file.toPath());
+			}
+		}
+	}
+
+	/**
+	 * A blob and the export paths of the versions that have it as content
+	 */
+	protected static class BlobVersions {
+
+		protected final ObjectId blobId;
+		protected final List<String> paths = new ArrayList<String>(1);
+
+		protected BlobVersions(ObjectId blobId) {
+			this.blobId = blobId.copy();
+		}
+
+	}
+
+	/**
+	 * Thread safe progress shared by the workers. The first failure or a
+	 * cancel of the monitor stops the workers.
+	 */
+	protected static class ExportProgress {
+
+		protected final ProgressMonitor monitor;
+		protected long exported;
+		protected IOException failure;
+
+		protected ExportProgress(ProgressMonitor monitor, long total) {
+			this.monitor = monitor == null ? NullProgressMonitor.INSTANCE : monitor;
+			this.monitor.beginTask(MessageConstants.EXPORT_TASK_TITLE, (int) Math.min(total, Integer.MAX_VALUE));
+		}
+
+		protected synchronized void update(int files) {
+			exported += files;
+			monitor.update(files);
+		}
+
+		protected synchronized void fail(IOException e) {
+			if (failure == null) {
+				failure = e;
+			}
+		}
+
+		protected synchronized boolean isStopped() {
+			return failure != null || monitor.isCancelled();
+		}
+
+		/**
+		 * End the task of the monitor
+		 * 
+		 * @return Number of exported files
+		 * @throws IOException
+		 *             Throws the first failure of the workers
+		 * @throws CanceledException
+		 *             Throws if the monitor cancelled the export
+		 */
+		protected synchronized long finish() throws IOException, CanceledException {
+			monitor.endTask();
+			if (failure != null) {
+				throw failure;
+			}
+			if (monitor.isCancelled()) {
+				throw new CanceledException(MessageConstants.ERROR_EXPORT_CANCELED);
+			}
+			return exported;
+		}
+
+	}
+
+	/**
+	 * Inflate a blob into memory, large blobs are left to be streamed
+	 */
+	protected class InflateTask implements Callable<byte[]> {
+
+		protected final ObjectId blobId;
+
+		protected InflateTask(ObjectId blobId) {
+			this.blobId = blobId;
+		}
+
+		public byte[] call() throws IOException {
+			ObjectReader reader = gitVersioner.localRepo.newObjectReader();
+			try {
+				if (gitVersioner.findLargeFile(blobId) != null) {
+					// Pointers are resolved and streamed by the writer
+					return null;
+				}
+				ObjectLoader loader = reader.open(blobId, Constants.OBJ_BLOB);
+				return loader.isLarge() ? null : loader.getCachedBytes();
+			} finally {
+				reader.close();
+			}
+		}
+
+	}
+
+	/**
+	 * Split the blobs until a range is small enough to write by one worker
+	 */
+	protected class DirectoryExportTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		protected final List<BlobVersions> blobs;
+		protected final int from;
+		protected final int to;
+		protected final File directory;
+		protected final ExportProgress progress;
+
+		protected DirectoryExportTask(List<BlobVersions> blobs, int from, int to, File directory,
+				ExportProgress progress) {
+			this.blobs = blobs;
+			this.from = from;
+			this.to = to;
+			this.directory = directory;
+			this.progress = progress;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from > CommonConstants.EXPORT_BATCH_SIZE) {
+				int middle = (from + to) >>> 1;
+				invokeAll(new DirectoryExportTask(blobs, from, middle, directory, progress),
+						new DirectoryExportTask(blobs, middle, to, directory, progress));
+				return;
+			}
+			ObjectReader reader = gitVersioner.localRepo.newObjectReader();
+			try {
+				for (int i = from; i < to && !progress.isStopped(); i++) {
+					writeFiles(reader, blobs.get(i), directory);
+					progress.update(blobs.get(i).paths.size());
+				}
+			} catch (IOException e) {
+				logger.error(e.getMessage());
+				progress.fail(e);
+			} finally {
+				reader.close();
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,223 @@
+package com.btasdemir.gitversioning.versioner;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
+
+import com.btasdemir.gitversioning.constant.CommonConstants;
+import com.btasdemir.gitversioning.index.PathHistoryIndex;
+import com.btasdemir.gitversioning.model.Version;
+import com.btasdemir.gitversioning.model.VersionQuery;
+
+/**
+ * Lazy iterator over a page of versions of a file.
+ * 
+ * Commits are read one at a time, either from the path history index or
+ * from a revision walk without a tree filter: each walked commit is diffed
+ * against its parents and kept only if it changes the file, so reading stops
+ * as soon as the page is full instead of rewriting the whole history first. The iterator closes itself when it is
+ * exhausted, close must be called if it is abandoned earlier.
+ * 
+ * @author bahadir.tasdemir@hotmail.com.tr
+ */
+public class VersionIterator implements Iterator<Version>, Closeable {
+
+	protected final RevWalk revWalk;
+	protected final TreeWalk treeWalk;
+	protected final Iterator<PathHistoryIndex.Entry> entries;
+	protected final SimpleDateFormat simpleDateFormat = new SimpleDateFormat(CommonConstants.DATE_TIME_PATTERN);
+	protected final ObjectId cursorId;
+	protected final long sinceSeconds;
+	protected final long untilSeconds;
+	protected RevCommit cursorCommit;
+	protected boolean cursorPassed;
+	protected int toSkip;
+	protected int remaining;
+	protected RevCommit next;
+	protected boolean closed;
+
+	/**
+	 * Create an iterator
+	 * 
+	 * @param revWalk
+	 *            Walk to read commits with. When entries are null the walk
+	 *            must be started and limited by the time bounds of the query.
+	 * @param treeWalk
+	 *            Recursive tree walk filtered to the file, used to diff walked
+	 *            commits against their parents. Null if entries are given.
+	 * @param entries
+	 *            Index entries of the file newest first, null to read from the
+	 *            walk
+	 * @param query
+	 *            Query of the page
+	 * @param cursorId
+	 *            Commit the cursor of the query resolves to, null if the query
+	 *            has no cursor
+	 */
+	public VersionIterator(RevWalk revWalk, TreeWalk treeWalk, Iterator<PathHistoryIndex.Entry> entries,
+			VersionQuery query, ObjectId cursorId) {
+		this.revWalk = revWalk;
+		this.treeWalk = treeWalk;
+		this.entries = entries;
+		this.cursorId = cursorId;
+		this.cursorPassed = entries == null || cursorId == null;
+		this.sinceSeconds = query.getSince() == null ? Long.MIN_VALUE : query.getSince().getTime() / 1000L;
+		this.untilSeconds = query.getUntil() == null ? Long.MAX_VALUE : query.getUntil().getTime() / 1000L;
+		this.toSkip = Math.max(query.getOffset(), 0);
+		this.remaining = query.getLimit() < 0 ? Integer.MAX_VALUE : query.getLimit();
+	}
+
+	public boolean hasNext() {
+		if (next == null && !closed) {
+			try {
+				next = this.fetchNext();
+			} catch (IOException e) {
+				this.close();
+				throw new IllegalStateException(e);
+			}
+		}
+		return next != null;
+	}
+
+	public Version next() {
+		if (!this.hasNext()) {
+			throw new NoSuchElementException();
+		}
+		RevCommit revCommit = next;
+		next = null;
+		return new Version(revCommit.getAuthorIdent().getName(),
+				simpleDateFormat.format(new Date(revCommit.getCommitTime() * 1000L)), revCommit.getId().getName());
+	}
+
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Release the revision walk and the tree walk
+	 */
+	public void close() {
+		if (!closed) {
+			closed = true;
+			next = null;
+			revWalk.close();
+			if (treeWalk != null) {
+				treeWalk.close();
+			}
+		}
+	}
+
+	/**
+	 * Read the next commit of the page
+	 * 
+	 * @return Next commit, null if the page is complete
+	 * @throws IOException
+	 *             Throws if an IO exception occurs
+	 */
+	protected RevCommit fetchNext() throws IOException {
+		while (remaining > 0) {
+			RevCommit candidate;
+			if (entries != null) {
+				if (!entries.hasNext()) {
+					break;
+				}
+				PathHistoryIndex.Entry entry = entries.next();
+				if (!cursorPassed) {
+					// Same as the walk that starts from the cursor: the page
+					// begins with the first ancestor of the cursor, which may
+					// be a ref or a commit that did not change the file
+					if (entry.getCommitId().equals(cursorId)) {
+						cursorPassed = true;
+						continue;
+					}
+					if (!this.isCursorAncestor(entry)) {
+						continue;
+					}
+					cursorPassed = true;
+				}
+				if (entry.getCommitTime() > untilSeconds) {
+					continue;
+				}
+				if (entry.getCommitTime() < sinceSeconds) {
+					// Entries are newest first, nothing older can match
+					break;
+				}
+				candidate = revWalk.parseCommit(entry.getCommitId());
+			} else {
+				candidate = revWalk.next();
+				if (candidate == null) {
+					break;
+				}
+				if (candidate.equals(cursorId) || !this.changesFile(candidate)) {
+					candidate.disposeBody();
+					continue;
+				}
+			}
+			if (toSkip > 0) {
+				toSkip--;
+				continue;
+			}
+			remaining--;
+			return candidate;
+		}
+		this.close();
+		return null;
+	}
+
+	/**
+	 * Check if an index entry is older than the cursor in the history
+	 * 
+	 * @param entry
+	 *            Index entry of the file
+	 * @return True if the commit of the entry is an ancestor of the cursor
+	 * @throws IOException
+	 *             Throws if an IO exception occurs
+	 */
+	protected boolean isCursorAncestor(PathHistoryIndex.Entry entry) throws IOException {
+		if (cursorCommit == null) {
+			cursorCommit = revWalk.parseCommit(cursorId);
+		}
+		// A commit newer than the cursor cannot be its ancestor, the
+		// ancestry is checked only for the rest
+		return entry.getCommitTime() <= cursorCommit.getCommitTime()
+				&& revWalk.isMergedInto(revWalk.parseCommit(entry.getCommitId()), cursorCommit);
+	}
+
+	/**
+	 * Diff a walked commit against its parents
+	 * 
+	 * @param revCommit
+	 *            Commit to diff
+	 * @return True if the file differs from every parent of the commit, same
+	 *         as the path history index
+	 * @throws IOException
+	 *             Throws if an IO exception occurs
+	 */
+	protected boolean changesFile(RevCommit revCommit) throws IOException {
+		treeWalk.reset();
+		treeWalk.addTree(revCommit.getTree());
+		int parentCount = revCommit.getParentCount();
+		for (int i = 0; i < parentCount; i++) {
+			treeWalk.addTree(revWalk.parseCommit(revCommit.getParent(i)).getTree());
+		}
+		while (treeWalk.next()) {
+			boolean differsFromAllParents = true;
+			for (int i = 1; i <= parentCount && differsFromAllParents; i++) {
+				differsFromAllParents = !treeWalk.idEqual(0, i);
+			}
+			if (differsFromAllParents) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+}
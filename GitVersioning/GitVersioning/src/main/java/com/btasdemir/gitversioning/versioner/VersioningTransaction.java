@@ -0,0 +1,119 @@
+package com.btasdemir.gitversioning.versioner;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.revwalk.RevCommit;
+
+import com.btasdemir.gitversioning.constant.MessageConstants;
+import com.btasdemir.gitversioning.util.CheckValueUtil;
+
+/**
+ * Collects files to be versioned together and writes them as one commit.
+ * 
+ * Nothing touches the repository until commit is called, then all staged
+ * files are added with a single index update, committed once and pushed once.
+ * If any step fails the repository is restored to its previous state.
+ * 
+ * A transaction can be committed only once and is not thread safe.
+ * 
+ * @author bahadir.tasdemir@hotmail.com.tr
+ */
+public class VersioningTransaction {
+
+	protected final GitVersioner gitVersioner;
+	protected final boolean push;
+	protected final Set<String> stagedFiles = new LinkedHashSet<String>();
+	protected boolean finished;
+
+	public VersioningTransaction(GitVersioner gitVersioner, boolean push) {
+		this.gitVersioner = gitVersioner;
+		this.push = push;
+	}
+
+	/**
+	 * Stage a file to be versioned with this transaction
+	 * 
+	 * @param fileName
+	 *            File name relative to the local repository path
+	 * @return This transaction
+	 */
+	public VersioningTransaction stage(String fileName) {
+		CheckValueUtil.checkStringVal(fileName);
+		this.checkNotFinished();
+		stagedFiles.add(fileName);
+		return this;
+	}
+
+	/**
+	 * Stage several files to be versioned with this transaction
+	 * 
+	 * @param fileNames
+	 *            File names relative to the local repository path
+	 * @return This transaction
+	 */
+	public VersioningTransaction stageAll(Collection<String> fileNames) {
+		CheckValueUtil.checkCollectionVal(fileNames);
+		for (String fileName : fileNames) {
+			this.stage(fileName);
+		}
+		return this;
+	}
+
+	/**
+	 * Get the files staged so far
+	 * 
+	 * @return Unmodifiable view of the staged files
+	 */
+	public Set<String> getStagedFiles() {
+		return Collections.unmodifiableSet(stagedFiles);
+	}
+
+	/**
+	 * Version all staged files as a single commit
+	 * 
+	 * @param message
+	 *            Message to be put while committing
+	 * @return The commit that contains all staged files
+	 * @throws IOException
+	 *             Throws if any IO exception occurs
+	 * @throws GitAPIException
+	 *             Throws if any GIT API exception occurs
+	 */
+	public RevCommit commit(String message) throws IOException, GitAPIException {
+		this.checkNotFinished();
+		finished = true;
+		return gitVersioner.commitFiles(stagedFiles, message, push);
+	}
+
+	/**
+	 * Drop the staged files without touching the repository
+	 */
+	public void discard() {
+		finished = true;
+		stagedFiles.clear();
+	}
+
+	/**
+	 * Check if the transaction is committed or discarded
+	 * 
+	 * @return True if the transaction cannot be used anymore
+	 */
+	public boolean isFinished() {
+		return finished;
+	}
+
+	/**
+	 * Throw an exception if the transaction is already finished
+	 */
+	protected void checkNotFinished() {
+		if (finished) {
+			throw new IllegalStateException(MessageConstants.ERROR_TRANSACTION_FINISHED);
+		}
+	}
+
+}
@@ -0,0 +1,355 @@
+package com.btasdemir.gitversioning.index;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.btasdemir.gitversioning.constant.CommonConstants;
+import com.btasdemir.gitversioning.model.Version;
+import com.btasdemir.gitversioning.model.VersionList;
+import com.btasdemir.gitversioning.model.VersionQuery;
+import com.btasdemir.gitversioning.versioner.GitVersioner;
+import com.btasdemir.gitversioning.versioner.VersionIterator;
+
+/**
+ * JUnit test for the persistent path history index
+ * 
+ * @author bahadir.tasdemir@hotmail.com.tr
+ */
+public class PathHistoryIndexTest {
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Test
+	public void testIndexMatchesHistoryWalk() throws Exception {
+		File localPath = temporaryFolder.newFolder("local");
+		new File(localPath, "dir").mkdirs();
+		GitVersioner gitVersioner = new GitVersioner(localPath.getPath(), "", "", "", false);
+		gitVersioner.init();
+		for (int i = 0; i < 5; i++) {
+			write(new File(localPath, "a.txt"), "a" + i);
+			write(new File(localPath, "dir/b" + (i % 2) + ".txt"), "b" + i);
+			List<String> fileNames = i % 2 == 0 ? Arrays.asList("a.txt", "dir/b0.txt") : Arrays.asList("dir/b1.txt");
+			gitVersioner.commitFiles(fileNames, "Commit " + i, false);
+		}
+		gitVersioner.close();
+
+		// Reopen, the index is loaded from disc and caught up on init
+		gitVersioner = new GitVersioner(localPath.getPath(), "", "", "", false);
+		gitVersioner.init();
+		write(new File(localPath, "a.txt"), "a5");
+		gitVersioner.commitFiles(Arrays.asList("a.txt"), "Commit 5", false);
+		assertIndexMatchesWalk(gitVersioner);
+
+		// A rolled back batch must disappear from the index
+		write(new File(localPath, "a.txt"), "a6");
+		try {
+			gitVersioner.commitFiles(Arrays.asList("a.txt"), "Commit 6", true);
+			Assert.fail("Push without a remote must fail");
+		} catch (Exception e) {
+			// Expected, the batch is rolled back
+		}
+		assertIndexMatchesWalk(gitVersioner);
+		gitVersioner.close();
+	}
+
+	@Test
+	public void testSnapshotsShareUnchangedPaths() throws Exception {
+		File localPath = temporaryFolder.newFolder("local");
+		new File(localPath, "dir").mkdirs();
+		GitVersioner gitVersioner = new GitVersioner(localPath.getPath(), "", "", "", false);
+		// Only the index under test writes the index files
+		gitVersioner.setPathIndexEnabled(false);
+		gitVersioner.init();
+		File indexDirectory = new File(new File(localPath, ".git"), CommonConstants.GITVERSIONING_DIRECTORY);
+		Repository repository = Git.open(localPath).getRepository();
+		PathHistoryIndex index = new PathHistoryIndex(indexDirectory);
+		index.load();
+		int layered = 0;
+		for (int i = 0; i < 2 * CommonConstants.PATH_INDEX_MAX_SNAPSHOT_DEPTH + 3; i++) {
+			write(new File(localPath, "dir/b" + (i % 3) + ".txt"), "b" + i);
+			gitVersioner.commitFiles(Arrays.asList("dir/b" + (i % 3) + ".txt"), "Commit " + i, false);
+			PathHistoryIndex.Snapshot previous = index.getSnapshot();
+			index.catchUp(repository);
+			Assert.assertTrue(index.getSnapshot().depth <= CommonConstants.PATH_INDEX_MAX_SNAPSHOT_DEPTH);
+			if (i > 0 && index.getSnapshot().depth > 0) {
+				Assert.assertSame(previous, index.getSnapshot().base);
+				Assert.assertEquals("Only the changed path is copied", 1, index.getSnapshot().entries.size());
+				layered++;
+			}
+			Assert.assertEquals("Published snapshots do not change", i / 3,
+					previous.getHistory("dir/b" + (i % 3) + ".txt").size());
+		}
+		Assert.assertTrue(layered > CommonConstants.PATH_INDEX_MAX_SNAPSHOT_DEPTH);
+		// A snapshot chain lists the same as an index read from the files
+		PathHistoryIndex loaded = new PathHistoryIndex(indexDirectory);
+		loaded.load();
+		for (String path : Arrays.asList("dir", "dir/b0.txt", "dir/b1.txt", "dir/b2.txt", "missing.txt")) {
+			List<PathHistoryIndex.Entry> expected = loaded.getHistory(path);
+			List<PathHistoryIndex.Entry> actual = index.getHistory(path);
+			Assert.assertEquals(expected.size(), actual.size());
+			for (int i = 0; i < expected.size(); i++) {
+				Assert.assertEquals(expected.get(i).getCommitId(), actual.get(i).getCommitId());
+			}
+		}
+		repository.close();
+		gitVersioner.close();
+	}
+
+	@Test
+	public void testPagedListing() throws Exception {
+		File localPath = temporaryFolder.newFolder("local");
+		GitVersioner gitVersioner = new GitVersioner(localPath.getPath(), "", "", "", false);
+		gitVersioner.init();
+		for (int i = 0; i < 7; i++) {
+			write(new File(localPath, "paged.txt"), "version " + i);
+			gitVersioner.commitFiles(Arrays.asList("paged.txt"), "Commit " + i, false);
+		}
+		for (boolean pathIndexEnabled : new boolean[] { true, false }) {
+			gitVersioner.setPathIndexEnabled(pathIndexEnabled);
+			List<Version> all = gitVersioner.listVersions("paged.txt");
+			List<Version> paged = new ArrayList<Version>();
+			VersionQuery query = new VersionQuery(3);
+			for (int page = 0; page < 3; page++) {
+				VersionIterator versionIterator = gitVersioner.listVersions("paged.txt", query);
+				while (versionIterator.hasNext()) {
+					paged.add(versionIterator.next());
+				}
+				query.setCursor(paged.get(paged.size() - 1).getCommitId());
+			}
+			Assert.assertEquals(all.size(), paged.size());
+			for (int i = 0; i < all.size(); i++) {
+				Assert.assertEquals(all.get(i).getCommitId(), paged.get(i).getCommitId());
+			}
+			query = new VersionQuery(2);
+			query.setOffset(5);
+			VersionIterator versionIterator = gitVersioner.listVersions("paged.txt", query);
+			Assert.assertEquals(all.get(5).getCommitId(), versionIterator.next().getCommitId());
+			Assert.assertEquals(all.get(6).getCommitId(), versionIterator.next().getCommitId());
+			Assert.assertFalse(versionIterator.hasNext());
+			// Abbreviated ids are resolved, unknown ones are rejected
+			query = new VersionQuery(1);
+			query.setCursor(all.get(0).getCommitId().substring(0, 10));
+			Assert.assertEquals(all.get(1).getCommitId(),
+					gitVersioner.listVersions("paged.txt", query).next().getCommitId());
+			query.setCursor("0000000000000000000000000000000000000000");
+			try {
+				gitVersioner.listVersions("paged.txt", query);
+				Assert.fail("Unknown cursor must be rejected");
+			} catch (IllegalArgumentException e) {
+				// Expected
+			}
+			query = new VersionQuery();
+			query.setSince(new Date(System.currentTimeMillis() + 60000L));
+			Assert.assertFalse("Nothing is newer than now", gitVersioner.listVersions("paged.txt", query).hasNext());
+		}
+		gitVersioner.close();
+	}
+
+	@Test
+	public void testRefCursorOnBothPaths() throws Exception {
+		File localPath = temporaryFolder.newFolder("local");
+		GitVersioner gitVersioner = new GitVersioner(localPath.getPath(), "", "", "", false);
+		gitVersioner.init();
+		for (int i = 0; i < 3; i++) {
+			write(new File(localPath, "cursor.txt"), "version " + i);
+			gitVersioner.commitFiles(Arrays.asList("cursor.txt"), "Commit " + i, false);
+		}
+		// HEAD is a commit that does not change the file
+		write(new File(localPath, "other.txt"), "other");
+		gitVersioner.commitFiles(Arrays.asList("other.txt"), "Other", false);
+		for (boolean pathIndexEnabled : new boolean[] { true, false }) {
+			gitVersioner.setPathIndexEnabled(pathIndexEnabled);
+			List<Version> all = gitVersioner.listVersions("cursor.txt");
+			VersionQuery query = new VersionQuery();
+			query.setCursor(CommonConstants.GIT_TERM_HEAD);
+			VersionIterator versionIterator = gitVersioner.listVersions("cursor.txt", query);
+			for (Version version : all) {
+				Assert.assertEquals(version.getCommitId(), versionIterator.next().getCommitId());
+			}
+			Assert.assertFalse(versionIterator.hasNext());
+			// The page starts after the commit the cursor resolves to
+			query.setCursor(CommonConstants.GIT_TERM_HEAD + "~2");
+			versionIterator = gitVersioner.listVersions("cursor.txt", query);
+			Assert.assertEquals(all.get(2).getCommitId(), versionIterator.next().getCommitId());
+			Assert.assertFalse(versionIterator.hasNext());
+		}
+		gitVersioner.close();
+	}
+
+	@Test
+	public void testBulkListingMatchesSingleListing() throws Exception {
+		File localPath = temporaryFolder.newFolder("local");
+		new File(localPath, "dir").mkdirs();
+		GitVersioner gitVersioner = new GitVersioner(localPath.getPath(), "", "", "", false);
+		gitVersioner.init();
+		for (int i = 0; i < 6; i++) {
+			write(new File(localPath, "a.txt"), "a" + i);
+			write(new File(localPath, "dir/b" + (i % 3) + ".txt"), "b" + i);
+			List<String> fileNames = i % 2 == 0 ? Arrays.asList("a.txt", "dir/b" + (i % 3) + ".txt")
+					: Arrays.asList("dir/b" + (i % 3) + ".txt");
+			gitVersioner.commitFiles(fileNames, "Commit " + i, false);
+		}
+		List<String> paths = Arrays.asList("a.txt", "dir", "dir/b0.txt", "dir/b2.txt", "missing.txt");
+		for (boolean pathIndexEnabled : new boolean[] { true, false }) {
+			gitVersioner.setPathIndexEnabled(pathIndexEnabled);
+			Map<String, List<Version>> bulk = gitVersioner.listVersions(paths);
+			Assert.assertEquals(paths, new ArrayList<String>(bulk.keySet()));
+			Map<String, VersionList> compact = gitVersioner.listVersionLists(paths);
+			Assert.assertEquals(paths, new ArrayList<String>(compact.keySet()));
+			for (String path : paths) {
+				List<Version> single = gitVersioner.listVersions(path);
+				// Listings are mutable lists of their own
+				single.add(null);
+				single.remove(single.size() - 1);
+				Assert.assertEquals("Same number of versions for " + path, single.size(), bulk.get(path).size());
+				for (int i = 0; i < single.size(); i++) {
+					Assert.assertEquals(single.get(i).getCommitId(), bulk.get(path).get(i).getCommitId());
+					Assert.assertEquals(single.get(i).getCommitId(), compact.get(path).getCommitId(i));
+				}
+			}
+		}
+		gitVersioner.close();
+	}
+
+	@Test
+	public void testCorruptIndexIsRebuilt() throws Exception {
+		File localPath = temporaryFolder.newFolder("local");
+		GitVersioner gitVersioner = new GitVersioner(localPath.getPath(), "", "", "", false);
+		gitVersioner.init();
+		for (int i = 0; i < 3; i++) {
+			write(new File(localPath, "a.txt"), "a" + i);
+			gitVersioner.commitFiles(Arrays.asList("a.txt"), "Commit " + i, false);
+		}
+		gitVersioner.close();
+		// Same length, so only parsing can find out
+		File entryFile = new File(new File(new File(localPath, ".git"), CommonConstants.GITVERSIONING_DIRECTORY),
+				CommonConstants.PATH_INDEX_ENTRY_FILE);
+		byte[] content = Files.readAllBytes(entryFile.toPath());
+		Arrays.fill(content, 0, 40, (byte) 'z');
+		Files.write(entryFile.toPath(), content);
+
+		gitVersioner = new GitVersioner(localPath.getPath(), "", "", "", false);
+		gitVersioner.init();
+		Assert.assertEquals(3, gitVersioner.listVersions("a.txt").size());
+		assertIndexMatchesWalk(gitVersioner);
+		gitVersioner.close();
+	}
+
+	@Test
+	public void testIndexWithoutHeadIsRebuilt() throws Exception {
+		File localPath = temporaryFolder.newFolder("local");
+		GitVersioner gitVersioner = new GitVersioner(localPath.getPath(), "", "", "", false);
+		gitVersioner.init();
+		for (int i = 0; i < 3; i++) {
+			write(new File(localPath, "a.txt"), "a" + i);
+			gitVersioner.commitFiles(Arrays.asList("a.txt"), "Commit " + i, false);
+		}
+		gitVersioner.close();
+		File indexDirectory = new File(new File(localPath, ".git"), CommonConstants.GITVERSIONING_DIRECTORY);
+		Assert.assertTrue(new File(indexDirectory, CommonConstants.PATH_INDEX_HEAD_FILE).delete());
+
+		gitVersioner = new GitVersioner(localPath.getPath(), "", "", "", false);
+		gitVersioner.init();
+		write(new File(localPath, "a.txt"), "a3");
+		gitVersioner.commitFiles(Arrays.asList("a.txt"), "Commit 3", false);
+		gitVersioner.close();
+		// The rebuilt entries must not be read behind the stale ones
+		gitVersioner = new GitVersioner(localPath.getPath(), "", "", "", false);
+		gitVersioner.init();
+		Assert.assertEquals(4, gitVersioner.listVersions("a.txt").size());
+		assertIndexMatchesWalk(gitVersioner);
+		gitVersioner.close();
+	}
+
+	@Test
+	public void testIndexRecoversAfterFailure() throws Exception {
+		File localPath = temporaryFolder.newFolder("local");
+		GitVersioner gitVersioner = new GitVersioner(localPath.getPath(), "", "", "", false);
+		gitVersioner.init();
+		write(new File(localPath, "a.txt"), "a0");
+		gitVersioner.commitFiles(Arrays.asList("a.txt"), "Commit 0", false);
+		File indexDirectory = new File(new File(localPath, ".git"), CommonConstants.GITVERSIONING_DIRECTORY);
+		File lockFile = new File(indexDirectory, CommonConstants.PATH_INDEX_LOCK_FILE);
+		// A directory in place of the lock file fails the next update
+		lockFile.delete();
+		Assert.assertTrue(lockFile.mkdir());
+		write(new File(localPath, "a.txt"), "a1");
+		gitVersioner.commitFiles(Arrays.asList("a.txt"), "Commit 1", false);
+		Assert.assertTrue(lockFile.delete());
+		write(new File(localPath, "a.txt"), "a2");
+		RevCommit last = gitVersioner.commitFiles(Arrays.asList("a.txt"), "Commit 2", false);
+		String head = new String(
+				Files.readAllBytes(new File(indexDirectory, CommonConstants.PATH_INDEX_HEAD_FILE).toPath()),
+				Charset.forName("UTF-8"));
+		Assert.assertTrue("Index is caught up again", head.startsWith(last.getName()));
+		Assert.assertEquals(3, gitVersioner.listVersions("a.txt").size());
+		assertIndexMatchesWalk(gitVersioner);
+		gitVersioner.close();
+	}
+
+	@Test
+	public void testIndexSharedByVersioners() throws Exception {
+		File localPath = temporaryFolder.newFolder("local");
+		new File(localPath, "dir").mkdirs();
+		// Versioners of their own act like processes sharing the index files
+		GitVersioner first = new GitVersioner(localPath.getPath(), "", "", "", false);
+		first.init();
+		GitVersioner second = new GitVersioner(localPath.getPath(), "", "", "", false);
+		second.init();
+		for (int i = 0; i < 6; i++) {
+			GitVersioner writer = i % 2 == 0 ? first : second;
+			writer.versionContent(i % 3 == 0 ? "a.txt" : "dir/b" + (i % 2) + ".txt", ("content " + i).getBytes(),
+					"Commit " + i, false);
+		}
+		assertIndexMatchesWalk(first);
+		assertIndexMatchesWalk(second);
+		first.close();
+		second.close();
+
+		// The entry file holds the single changed path of each commit once
+		File entryFile = new File(new File(new File(localPath, ".git"), CommonConstants.GITVERSIONING_DIRECTORY),
+				CommonConstants.PATH_INDEX_ENTRY_FILE);
+		Assert.assertEquals(6, Files.readAllLines(entryFile.toPath(), Charset.forName("UTF-8")).size());
+		GitVersioner reopened = new GitVersioner(localPath.getPath(), "", "", "", false);
+		reopened.init();
+		assertIndexMatchesWalk(reopened);
+		reopened.close();
+	}
+
+	private static void assertIndexMatchesWalk(GitVersioner gitVersioner) throws Exception {
+		for (String path : Arrays.asList("a.txt", "dir", "dir/b0.txt", "dir/b1.txt", "missing.txt")) {
+			gitVersioner.setPathIndexEnabled(true);
+			List<Version> indexed = gitVersioner.listVersions(path);
+			gitVersioner.setPathIndexEnabled(false);
+			List<Version> walked = gitVersioner.listVersions(path);
+			Assert.assertEquals("Same number of versions for " + path, walked.size(), indexed.size());
+			for (int i = 0; i < walked.size(); i++) {
+				Assert.assertEquals(walked.get(i).getCommitId(), indexed.get(i).getCommitId());
+			}
+		}
+	}
+
+	private static void write(File file, String content) throws IOException {
+		FileWriter fileWriter = new FileWriter(file);
+		fileWriter.write(content);
+		fileWriter.close();
+	}
+
+}
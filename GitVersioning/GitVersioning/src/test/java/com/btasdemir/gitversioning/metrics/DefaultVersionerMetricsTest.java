@@ -0,0 +1,111 @@
+package com.btasdemir.gitversioning.metrics;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.btasdemir.gitversioning.cache.RevisionBlobCache;
+import com.btasdemir.gitversioning.model.VersionList;
+import com.btasdemir.gitversioning.versioner.GitVersioner;
+import com.btasdemir.gitversioning.versioner.GitVersionerWrapper;
+
+/**
+ * JUnit test for the versioner metrics
+ * 
+ * @author bahadir.tasdemir@hotmail.com.tr
+ */
+public class DefaultVersionerMetricsTest {
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Test
+	public void testHistogramPercentiles() {
+		LatencyHistogram latencyHistogram = new LatencyHistogram();
+		for (long micros = 1; micros <= 1000; micros++) {
+			latencyHistogram.record(micros);
+		}
+		Assert.assertEquals(1000, latencyHistogram.getCount());
+		Assert.assertEquals(1000, latencyHistogram.getMax());
+		Assert.assertEquals(500, latencyHistogram.getMean());
+		long p50 = latencyHistogram.getPercentile(50d);
+		long p99 = latencyHistogram.getPercentile(99d);
+		Assert.assertTrue("p50 " + p50, p50 >= 500 && p50 <= 500 * 1.125);
+		Assert.assertTrue("p99 " + p99, p99 >= 990 && p99 <= 1000);
+	}
+
+	@Test
+	public void testOperationsAreMeasured() throws Exception {
+		File localPath = temporaryFolder.newFolder("local");
+		GitVersionerWrapper gitVersionerWrapper = new GitVersionerWrapper(localPath.getPath(), "", "", "", false);
+		Assert.assertTrue(gitVersionerWrapper.registerMetricsMBeans());
+		FileWriter fileWriter = new FileWriter(new File(localPath, "metered.txt"));
+		fileWriter.write("metered");
+		fileWriter.close();
+		Assert.assertTrue(gitVersionerWrapper.versionFiles(Arrays.asList("metered.txt"), "Metered"));
+		VersionList versions = gitVersionerWrapper.getVersionListOfFile("metered.txt");
+		Assert.assertNotNull(gitVersionerWrapper.getRevisionContentOfFile(versions.getCommitId(0), "metered.txt"));
+		Assert.assertNull(gitVersionerWrapper.getRevisionOfFileByRevId(versions.getCommitId(0), "missing.txt"));
+
+		MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+		String prefix = "com.btasdemir.gitversioning:type=GitVersioner,name=" + ObjectName.quote(localPath.getPath());
+		Assert.assertEquals(1L, mBeanServer.getAttribute(new ObjectName(prefix + ",operation=commit"), "Count"));
+		Assert.assertEquals(1L, mBeanServer.getAttribute(new ObjectName(prefix + ",operation=add"), "Count"));
+		Assert.assertEquals(0, mBeanServer.getAttribute(new ObjectName(prefix + ",operation=commit"), "InFlight"));
+		Assert.assertEquals(1L,
+				mBeanServer.getAttribute(new ObjectName(prefix + ",operation=list_versions"), "Count"));
+		Assert.assertEquals(1L,
+				mBeanServer.getAttribute(new ObjectName(prefix + ",operation=get_revision_file"), "Count"));
+		Assert.assertEquals(7L,
+				mBeanServer.getAttribute(new ObjectName(prefix + ",operation=objectStore"), "BytesRead"));
+		Assert.assertEquals(2L,
+				mBeanServer.getAttribute(new ObjectName(prefix + ",operation=objectStore"), "ObjectsInserted"));
+		gitVersionerWrapper.finish();
+		Assert.assertFalse(mBeanServer.isRegistered(new ObjectName(prefix + ",operation=commit")));
+	}
+
+	@Test
+	public void testBlobTooLargeToCacheIsCountedOnce() throws Exception {
+		File localPath = temporaryFolder.newFolder("local");
+		GitVersioner gitVersioner = new GitVersioner(localPath.getPath(), "", "", "", false);
+		gitVersioner.init();
+		gitVersioner.setBlobCache(new RevisionBlobCache(1024L, 4L, false));
+		FileWriter fileWriter = new FileWriter(new File(localPath, "large.txt"));
+		fileWriter.write("1234567");
+		fileWriter.close();
+		gitVersioner.commitFiles(Arrays.asList("large.txt"), "Large", false);
+		DefaultVersionerMetrics metrics = (DefaultVersionerMetrics) gitVersioner.getMetrics();
+		long bytesRead = metrics.getBytesRead();
+		Assert.assertEquals("1234567", new String(gitVersioner.readRevision("HEAD", "large.txt"), "UTF-8"));
+		Assert.assertEquals(7L, metrics.getBytesRead() - bytesRead);
+		gitVersioner.close();
+	}
+
+	@Test
+	public void testFailuresAreCounted() throws Exception {
+		GitVersioner gitVersioner = new GitVersioner(temporaryFolder.newFolder("local").getPath(), "", "", "",
+				false);
+		gitVersioner.init();
+		try {
+			gitVersioner.push();
+			Assert.fail("Push without a remote must fail");
+		} catch (Exception e) {
+			// Expected
+		}
+		OperationStatistics push = ((DefaultVersionerMetrics) gitVersioner.getMetrics())
+				.getStatistics(Operation.PUSH);
+		Assert.assertEquals(1, push.getCount());
+		Assert.assertEquals(1, push.getErrorCount());
+		gitVersioner.close();
+	}
+
+}
@@ -0,0 +1,38 @@
+package com.btasdemir.gitversioning.model;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+import org.eclipse.jgit.lib.ObjectId;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.btasdemir.gitversioning.constant.CommonConstants;
+
+/**
+ * JUnit test for the compact version list
+ * 
+ * @author bahadir.tasdemir@hotmail.com.tr
+ */
+public class VersionListTest {
+
+	@Test
+	public void testVersionView() {
+		VersionList versionList = new VersionList(1);
+		long now = System.currentTimeMillis() / 1000L;
+		for (int i = 0; i < 100; i++) {
+			String commitId = String.format("%040x", i);
+			versionList.add(i % 2 == 0 ? "even" : "odd", now - i, ObjectId.fromString(commitId));
+		}
+		Assert.assertEquals(100, versionList.size());
+		Assert.assertEquals("Committer names are pooled", 2, versionList.getCommiterCount());
+		Version version = versionList.get(42);
+		Assert.assertEquals("even", version.getCommiterName());
+		Assert.assertEquals(String.format("%040x", 42), version.getCommitId());
+		Assert.assertEquals(new SimpleDateFormat(CommonConstants.DATE_TIME_PATTERN).format(new Date((now - 42) * 1000L)),
+				version.getCommitDate());
+		Assert.assertEquals(now - 99, versionList.getCommitTime(99));
+		Assert.assertSame(versionList.getCommiterName(1), versionList.getCommiterName(3));
+	}
+
+}
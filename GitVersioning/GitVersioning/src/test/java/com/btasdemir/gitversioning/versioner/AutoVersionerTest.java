@@ -0,0 +1,91 @@
+package com.btasdemir.gitversioning.versioner;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * JUnit test for automatic versioning of changed files
+ * 
+ * @author bahadir.tasdemir@hotmail.com.tr
+ */
+public class AutoVersionerTest {
+
+	private static final long TIMEOUT_MILLIS = 10000L;
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Test
+	public void testBurstIsOneCommitAndSameContentIsSkipped() throws Exception {
+		File localPath = temporaryFolder.newFolder("local");
+		GitVersionerWrapper gitVersionerWrapper = new GitVersionerWrapper(localPath.getPath(), "", "", "", false);
+		Assert.assertTrue(gitVersionerWrapper.enableAutoVersioning(300, 100));
+		AutoVersioner autoVersioner = gitVersionerWrapper.getAutoVersioner();
+		File file = new File(localPath, "config.txt");
+		for (int i = 0; i < 5; i++) {
+			write(file, "value=" + i);
+		}
+		waitFor(autoVersioner, 1);
+		Assert.assertEquals("Burst is versioned once", 1, gitVersionerWrapper.getVersionsOfFile("config.txt").size());
+
+		// Rewriting the committed content does not create a commit
+		write(file, "value=4");
+		write(new File(localPath, "other.txt"), "other");
+		waitFor(autoVersioner, 2);
+		gitVersionerWrapper.disableAutoVersioning();
+		Assert.assertEquals(1, gitVersionerWrapper.getVersionsOfFile("config.txt").size());
+		Assert.assertEquals(1, gitVersionerWrapper.getVersionsOfFile("other.txt").size());
+		Assert.assertTrue("Unchanged file is skipped", autoVersioner.getSkippedCount() >= 1);
+		gitVersionerWrapper.finish();
+	}
+
+	@Test
+	public void testUnchangedLargeFileIsSkipped() throws Exception {
+		File localPath = temporaryFolder.newFolder("local");
+		GitVersionerWrapper gitVersionerWrapper = new GitVersionerWrapper(localPath.getPath(), "", "", "", false);
+		Assert.assertTrue(gitVersionerWrapper.enableLargeFileStore(temporaryFolder.newFolder("large"), 64));
+		Assert.assertTrue(gitVersionerWrapper.enableAutoVersioning(300, 100));
+		AutoVersioner autoVersioner = gitVersionerWrapper.getAutoVersioner();
+		StringBuilder largeContent = new StringBuilder();
+		for (int i = 0; i < 100; i++) {
+			largeContent.append("Large line ").append(i).append('\n');
+		}
+		File file = new File(localPath, "large.txt");
+		write(file, largeContent.toString());
+		waitFor(autoVersioner, 1);
+
+		// The committed blob is a pointer, rewriting the same content must
+		// still be recognized as unchanged
+		write(file, largeContent.toString());
+		write(new File(localPath, "other.txt"), "other");
+		waitFor(autoVersioner, 2);
+		gitVersionerWrapper.disableAutoVersioning();
+		Assert.assertEquals(1, gitVersionerWrapper.getVersionsOfFile("large.txt").size());
+		Assert.assertEquals(1, gitVersionerWrapper.getVersionsOfFile("other.txt").size());
+		Assert.assertTrue("Unchanged large file is skipped", autoVersioner.getSkippedCount() >= 1);
+		Assert.assertEquals(largeContent.toString(),
+				new String(gitVersionerWrapper.gitVersioner.readRevision("HEAD", "large.txt"), "UTF-8"));
+		gitVersionerWrapper.finish();
+	}
+
+	private static void waitFor(AutoVersioner autoVersioner, long commitCount) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+		while (autoVersioner.getCommitCount() < commitCount && System.currentTimeMillis() < deadline) {
+			Thread.sleep(50);
+		}
+		Assert.assertEquals(commitCount, autoVersioner.getCommitCount());
+	}
+
+	private static void write(File file, String content) throws IOException {
+		FileWriter fileWriter = new FileWriter(file);
+		fileWriter.write(content);
+		fileWriter.close();
+	}
+
+}
@@ -0,0 +1,240 @@
+package com.btasdemir.gitversioning.versioner;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.btasdemir.gitversioning.constant.CommonConstants;
+import com.btasdemir.gitversioning.model.Version;
+
+/**
+ * JUnit test for batch versioning of several files
+ * 
+ * @author bahadir.tasdemir@hotmail.com.tr
+ */
+public class GitVersionerBatchTest {
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Test
+	public void testBatchIsOneCommit() throws Exception {
+		File localPath = temporaryFolder.newFolder("local");
+		GitVersionerWrapper gitVersionerWrapper = new GitVersionerWrapper(localPath.getPath(), "", "", "", false);
+		List<String> fileNames = Arrays.asList("a.txt", "b.txt", "c.txt");
+		for (String fileName : fileNames) {
+			write(new File(localPath, fileName), fileName);
+		}
+		VersioningTransaction transaction = gitVersionerWrapper.beginTransaction();
+		transaction.stageAll(fileNames);
+		RevCommit revCommit = transaction.commit("Batch commit");
+		for (String fileName : fileNames) {
+			List<Version> versions = gitVersionerWrapper.getVersionsOfFile(fileName);
+			Assert.assertEquals("Each file has one version", 1, versions.size());
+			Assert.assertEquals("All files share the commit", revCommit.getName(), versions.get(0).getCommitId());
+		}
+		gitVersionerWrapper.finish();
+	}
+
+	@Test
+	public void testFailedPushRollsBack() throws Exception {
+		File localPath = temporaryFolder.newFolder("local");
+		String remotePath = new File(temporaryFolder.getRoot(), "missing").toURI().toString();
+		GitVersioner gitVersioner = new GitVersioner(localPath.getPath(), remotePath, "", "", false);
+		gitVersioner.init();
+		write(new File(localPath, "first.txt"), "first");
+		RevCommit first = gitVersioner.commitFiles(Arrays.asList("first.txt"), "First", false);
+		write(new File(localPath, "second.txt"), "second");
+		try {
+			gitVersioner.commitFiles(Arrays.asList("second.txt"), "Second", true);
+			Assert.fail("Push to a missing remote must fail");
+		} catch (Exception e) {
+			// Expected, the batch must be rolled back
+		}
+		ObjectId head = gitVersioner.localRepo.resolve(CommonConstants.GIT_TERM_HEAD);
+		Assert.assertEquals("Branch is restored", first.getId(), head);
+		Assert.assertTrue("Index is restored", gitVersioner.localRepo.readDirCache().findEntry("second.txt") < 0);
+		gitVersioner.close();
+	}
+
+	@Test
+	public void testFailedPushRollsBackContents() throws Exception {
+		File localPath = temporaryFolder.newFolder("local");
+		String remotePath = new File(temporaryFolder.getRoot(), "missing").toURI().toString();
+		GitVersioner gitVersioner = new GitVersioner(localPath.getPath(), remotePath, "", "", false);
+		gitVersioner.init();
+		RevCommit first = gitVersioner.versionContents(Collections.singletonMap("first.txt", "first".getBytes()),
+				"First", false);
+		try {
+			gitVersioner.versionContents(Collections.singletonMap("second.txt", "second".getBytes()), "Second", true);
+			Assert.fail("Push to a missing remote must fail");
+		} catch (Exception e) {
+			// Expected, the commit must be rolled back
+		}
+		Assert.assertEquals("Branch is restored", first.getId(),
+				gitVersioner.localRepo.resolve(CommonConstants.GIT_TERM_HEAD));
+		Assert.assertTrue("Index is restored", gitVersioner.localRepo.readDirCache().findEntry("second.txt") < 0);
+		Assert.assertTrue(gitVersioner.listVersions("second.txt").isEmpty());
+		gitVersioner.close();
+	}
+
+	@Test
+	public void testRollbackKeepsCommitsOfOtherWriters() throws Exception {
+		File localPath = temporaryFolder.newFolder("local");
+		GitVersioner gitVersioner = new GitVersioner(localPath.getPath(), "", "", "", false);
+		gitVersioner.setPathIndexEnabled(false);
+		gitVersioner.init();
+		GitVersioner otherVersioner = new GitVersioner(localPath.getPath(), "", "", "", false);
+		otherVersioner.setPathIndexEnabled(false);
+		otherVersioner.init();
+		RevCommit first = gitVersioner.versionContent("a.txt", "first".getBytes(), "First", false);
+		RevCommit other = otherVersioner.versionContents(Collections.singletonMap("b.txt", "other".getBytes()),
+				"Other", false);
+		// HEAD moved past the commit of the batch, neither the branch nor the
+		// commit of the other writer may be dropped
+		gitVersioner.rollback(null, first, Arrays.asList("a.txt"));
+		Assert.assertEquals(other.getId(), gitVersioner.localRepo.resolve(CommonConstants.GIT_TERM_HEAD));
+		RevCommit second = gitVersioner.versionContent("a.txt", "second".getBytes(), "Second", false);
+		other = otherVersioner.versionContents(Collections.singletonMap("b.txt", "again".getBytes()), "Again",
+				false);
+		gitVersioner.rollback(first, second, Arrays.asList("a.txt"));
+		Assert.assertEquals(other.getId(), gitVersioner.localRepo.resolve(CommonConstants.GIT_TERM_HEAD));
+		otherVersioner.close();
+		gitVersioner.close();
+	}
+
+	@Test
+	public void testFailedPushKeepsCommitBuiltOnByOtherWriters() throws Exception {
+		File localPath = temporaryFolder.newFolder("local");
+		String remotePath = new File(temporaryFolder.getRoot(), "missing").toURI().toString();
+		final GitVersioner otherVersioner = new GitVersioner(localPath.getPath(), "", "", "", false);
+		otherVersioner.init();
+		GitVersioner gitVersioner = new GitVersioner(localPath.getPath(), remotePath, "", "", false) {
+			@Override
+			public void push() throws GitAPIException {
+				try {
+					// Another writer commits between the commit and the push
+					otherVersioner.versionContents(Collections.singletonMap("other.txt", "other".getBytes()),
+							"Other", false);
+				} catch (IOException e) {
+					throw new IllegalStateException(e);
+				}
+				super.push();
+			}
+		};
+		gitVersioner.init();
+		write(new File(localPath, "kept.txt"), "kept");
+		RevCommit kept = gitVersioner.commitFiles(Arrays.asList("kept.txt"), "Kept", true);
+		RevWalk revWalk = new RevWalk(gitVersioner.localRepo);
+		RevCommit head = revWalk.parseCommit(gitVersioner.localRepo.resolve(CommonConstants.GIT_TERM_HEAD));
+		revWalk.close();
+		Assert.assertEquals("Other writer is on top", 1, head.getParentCount());
+		Assert.assertEquals("Commit of the batch is kept", kept.getId(), head.getParent(0).getId());
+		Assert.assertTrue("Index is kept", gitVersioner.localRepo.readDirCache().findEntry("kept.txt") >= 0);
+		Assert.assertEquals(1, gitVersioner.listVersions("kept.txt").size());
+		otherVersioner.close();
+		gitVersioner.close();
+	}
+
+	@Test
+	public void testVersionFileKeepsCommitWhenPushFails() throws Exception {
+		File localPath = temporaryFolder.newFolder("local");
+		String remotePath = new File(temporaryFolder.getRoot(), "missing").toURI().toString();
+		GitVersioner gitVersioner = new GitVersioner(localPath.getPath(), remotePath, "", "", false);
+		gitVersioner.init();
+		// Bound to the unreachable remote, so versionFile pushes synchronously
+		gitVersioner.cloneIfRepoDoesNotExist = true;
+		GitVersionerWrapper gitVersionerWrapper = new GitVersionerWrapper(gitVersioner);
+		write(new File(localPath, "kept.txt"), "kept");
+		Assert.assertTrue(gitVersionerWrapper.versionFile("kept.txt", "Kept"));
+		Assert.assertEquals("Local version is kept", 1, gitVersioner.listVersions("kept.txt").size());
+		write(new File(localPath, "files.txt"), "files");
+		Assert.assertTrue(gitVersionerWrapper.versionFiles(Arrays.asList("files.txt"), "Files"));
+		Assert.assertTrue(gitVersionerWrapper.versionContent("content.txt", "content".getBytes(), "Content"));
+		Assert.assertTrue(gitVersionerWrapper.versionContents(
+				Collections.singletonMap("contents.txt", "contents".getBytes()), "Contents"));
+		gitVersionerWrapper.enableGroupCommit(10L, 10);
+		write(new File(localPath, "group.txt"), "group");
+		Assert.assertTrue(gitVersionerWrapper.versionFile("group.txt", "Group"));
+		gitVersionerWrapper.disableGroupCommit();
+		for (String fileName : Arrays.asList("files.txt", "content.txt", "contents.txt", "group.txt")) {
+			Assert.assertEquals("Local version is kept", 1, gitVersioner.listVersions(fileName).size());
+		}
+		gitVersioner.close();
+	}
+
+	@Test
+	public void testVersionContentWithoutWorkingTree() throws Exception {
+		File localPath = temporaryFolder.newFolder("local");
+		GitVersioner gitVersioner = new GitVersioner(localPath.getPath(), "", "", "", false);
+		gitVersioner.init();
+		RevCommit revCommit = gitVersioner.versionContent("api/content.txt", "From API".getBytes("UTF-8"),
+				"Content", false);
+		Assert.assertFalse("Working tree is not touched", new File(localPath, "api/content.txt").exists());
+		Assert.assertEquals("From API",
+				new String(gitVersioner.readRevision(revCommit.getName(), "api/content.txt"), "UTF-8"));
+		// A later regular commit keeps the versioned content
+		write(new File(localPath, "other.txt"), "other");
+		RevCommit other = gitVersioner.commitFiles(Arrays.asList("other.txt"), "Other", false);
+		Assert.assertEquals("From API",
+				new String(gitVersioner.readRevision(other.getName(), "api/content.txt"), "UTF-8"));
+		Assert.assertEquals(1, gitVersioner.listVersions("api/content.txt").size());
+		gitVersioner.close();
+	}
+
+	@Test
+	public void testGroupCommitCoalescesConcurrentCalls() throws Exception {
+		File localPath = temporaryFolder.newFolder("local");
+		final GitVersionerWrapper gitVersionerWrapper = new GitVersionerWrapper(localPath.getPath(), "", "", "",
+				false);
+		gitVersionerWrapper.enableGroupCommit(500, 100);
+		int changeCount = 8;
+		ExecutorService executorService = Executors.newFixedThreadPool(changeCount);
+		List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+		for (int i = 0; i < changeCount; i++) {
+			final String fileName = "file" + i + ".txt";
+			write(new File(localPath, fileName), fileName);
+			results.add(executorService.submit(new Callable<Boolean>() {
+				public Boolean call() {
+					return gitVersionerWrapper.versionFile(fileName, "Change of " + fileName);
+				}
+			}));
+		}
+		for (Future<Boolean> result : results) {
+			Assert.assertTrue("Each change is versioned", result.get());
+		}
+		executorService.shutdown();
+		int commitCount = 0;
+		for (RevCommit revCommit : Git.wrap(gitVersionerWrapper.gitVersioner.localRepo).log().call()) {
+			Assert.assertNotNull(revCommit);
+			commitCount++;
+		}
+		Assert.assertTrue("Changes are grouped into fewer commits", commitCount < changeCount);
+		gitVersionerWrapper.finish();
+	}
+
+	private static void write(File file, String content) throws IOException {
+		FileWriter fileWriter = new FileWriter(file);
+		fileWriter.write(content);
+		fileWriter.close();
+	}
+
+}
@@ -0,0 +1,91 @@
+package com.btasdemir.gitversioning.versioner;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jgit.api.Git;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.btasdemir.gitversioning.model.CloneOptions;
+
+/**
+ * JUnit test for cloning with a single branch and without checkout
+ * 
+ * @author bahadir.tasdemir@hotmail.com.tr
+ */
+public class GitVersionerCloneTest {
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Test
+	public void testSingleBranchWithoutCheckout() throws Exception {
+		File remotePath = temporaryFolder.newFolder("remote");
+		Git remoteGit = Git.init().setDirectory(remotePath).call();
+		write(new File(remotePath, "first.txt"), "First");
+		remoteGit.add().addFilepattern("first.txt").call();
+		remoteGit.commit().setMessage("First").call();
+		remoteGit.branchCreate().setName("other").call();
+		remoteGit.close();
+
+		File localPath = new File(temporaryFolder.getRoot(), "local");
+		GitVersioner gitVersioner = new GitVersioner(localPath.getPath(), remotePath.toURI().toString(), "", "",
+				new CloneOptions("master", true, true));
+		gitVersioner.init();
+		Assert.assertFalse("Working tree is not checked out", new File(localPath, "first.txt").exists());
+		Assert.assertEquals("First", new String(gitVersioner.readRevision("HEAD", "first.txt"), "UTF-8"));
+		Assert.assertNull("Other branches are not fetched",
+				gitVersioner.localRepo.resolve("refs/remotes/origin/other"));
+
+		write(new File(localPath, "second.txt"), "Second");
+		gitVersioner.commitFiles(Arrays.asList("second.txt"), "Second", false);
+		Assert.assertEquals("Files not checked out are kept", "First",
+				new String(gitVersioner.readRevision("HEAD", "first.txt"), "UTF-8"));
+		Assert.assertEquals(2, gitVersioner.listVersions("second.txt").size()
+				+ gitVersioner.listVersions("first.txt").size());
+		gitVersioner.close();
+	}
+
+	@Test
+	public void testDeferredInit() throws Exception {
+		File remotePath = temporaryFolder.newFolder("remote");
+		Git remoteGit = Git.init().setDirectory(remotePath).call();
+		write(new File(remotePath, "first.txt"), "First");
+		remoteGit.add().addFilepattern("first.txt").call();
+		remoteGit.commit().setMessage("First").call();
+		File localPath = new File(temporaryFolder.getRoot(), "local");
+		GitVersioner gitVersioner = new GitVersioner(localPath.getPath(), remotePath.toURI().toString(), "", "",
+				true);
+		gitVersioner.init();
+		gitVersioner.close();
+		write(new File(remotePath, "second.txt"), "Second");
+		remoteGit.add().addFilepattern("second.txt").call();
+		remoteGit.commit().setMessage("Second").call();
+		remoteGit.close();
+
+		gitVersioner = new GitVersioner(localPath.getPath(), remotePath.toURI().toString(), "", "", true);
+		Future<Void> readiness = gitVersioner.initAsync();
+		Assert.assertTrue("Local repository is open before the pull", gitVersioner.isOpen());
+		Assert.assertEquals("First", new String(gitVersioner.readRevision("HEAD", "first.txt"), "UTF-8"));
+		readiness.get(10, TimeUnit.SECONDS);
+		Assert.assertTrue(gitVersioner.isReady());
+		Assert.assertEquals("Second", new String(gitVersioner.readRevision("HEAD", "second.txt"), "UTF-8"));
+		Assert.assertTrue(gitVersioner.getStartupPhaseMillis().keySet()
+				.containsAll(Arrays.asList("open", "pull", "index")));
+		gitVersioner.close();
+	}
+
+	private static void write(File file, String content) throws IOException {
+		FileWriter fileWriter = new FileWriter(file);
+		fileWriter.write(content);
+		fileWriter.close();
+	}
+
+}
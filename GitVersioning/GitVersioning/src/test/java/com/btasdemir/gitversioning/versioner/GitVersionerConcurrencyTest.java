@@ -0,0 +1,186 @@
+package com.btasdemir.gitversioning.versioner;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.eclipse.jgit.api.errors.ConcurrentRefUpdateException;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.btasdemir.gitversioning.model.Version;
+
+/**
+ * JUnit stress test for concurrent reads and writes on one versioner
+ * 
+ * @author bahadir.tasdemir@hotmail.com.tr
+ */
+public class GitVersionerConcurrencyTest {
+
+	private static final int WRITERS = 2;
+	private static final int COMMITS_PER_WRITER = 15;
+	private static final int READERS = 4;
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Test
+	public void testConcurrentReadsAndWrites() throws Exception {
+		final File localPath = temporaryFolder.newFolder("local");
+		final GitVersioner gitVersioner = new GitVersioner(localPath.getPath(), "", "", "", false);
+		gitVersioner.init();
+		write(new File(localPath, "shared.txt"), "initial");
+		gitVersioner.commitFiles(Arrays.asList("shared.txt"), "Initial", false);
+
+		final AtomicBoolean writing = new AtomicBoolean(true);
+		ExecutorService executorService = Executors.newFixedThreadPool(WRITERS + READERS);
+		List<Future<Integer>> writers = new ArrayList<Future<Integer>>();
+		List<Future<Integer>> readers = new ArrayList<Future<Integer>>();
+		long start = System.nanoTime();
+		for (int w = 0; w < WRITERS; w++) {
+			final String fileName = "writer" + w + ".txt";
+			writers.add(executorService.submit(new Callable<Integer>() {
+				public Integer call() throws Exception {
+					for (int i = 0; i < COMMITS_PER_WRITER; i++) {
+						write(new File(localPath, fileName), fileName + i);
+						gitVersioner.commitFiles(Arrays.asList(fileName), fileName + " " + i, false);
+					}
+					return COMMITS_PER_WRITER;
+				}
+			}));
+		}
+		for (int r = 0; r < READERS; r++) {
+			readers.add(executorService.submit(new Callable<Integer>() {
+				public Integer call() throws Exception {
+					int reads = 0;
+					while (writing.get()) {
+						List<Version> versions = gitVersioner.listVersions("shared.txt");
+						Assert.assertEquals(1, versions.size());
+						Assert.assertEquals("initial", new String(
+								gitVersioner.readRevision(versions.get(0).getCommitId(), "shared.txt"), "UTF-8"));
+						reads++;
+					}
+					return reads;
+				}
+			}));
+		}
+		for (Future<Integer> writer : writers) {
+			writer.get();
+		}
+		writing.set(false);
+		long reads = 0;
+		for (Future<Integer> reader : readers) {
+			reads += reader.get();
+		}
+		long elapsedMillis = Math.max((System.nanoTime() - start) / 1000000L, 1L);
+		executorService.shutdown();
+
+		for (int w = 0; w < WRITERS; w++) {
+			Assert.assertEquals("Every commit of a writer is kept", COMMITS_PER_WRITER,
+					gitVersioner.listVersions("writer" + w + ".txt").size());
+		}
+		System.out.println("Concurrent versioning: " + (WRITERS * COMMITS_PER_WRITER * 1000L / elapsedMillis)
+				+ " commits/s, " + (reads * 1000L / elapsedMillis) + " reads/s");
+		gitVersioner.close();
+	}
+
+	@Test
+	public void testReadsDoNotWaitForWriter() throws Exception {
+		File localPath = temporaryFolder.newFolder("local");
+		final GitVersioner gitVersioner = new GitVersioner(localPath.getPath(), "", "", "", false);
+		gitVersioner.init();
+		write(new File(localPath, "read.txt"), "content");
+		gitVersioner.commitFiles(Arrays.asList("read.txt"), "Commit", false);
+		ExecutorService executorService = Executors.newSingleThreadExecutor();
+		// A writer holding the lock, like one waiting for a slow push
+		gitVersioner.writeLock.lock();
+		try {
+			Future<Integer> reader = executorService.submit(new Callable<Integer>() {
+				public Integer call() throws Exception {
+					return gitVersioner.listVersions("read.txt").size();
+				}
+			});
+			Assert.assertEquals(Integer.valueOf(1), reader.get(10, TimeUnit.SECONDS));
+		} finally {
+			gitVersioner.writeLock.unlock();
+			executorService.shutdown();
+		}
+		gitVersioner.close();
+	}
+
+	@Test
+	public void testOptimisticWritersOfSeparateVersioners() throws Exception {
+		File localPath = temporaryFolder.newFolder("shared");
+		// Versioners of their own act like processes sharing the repository
+		final List<GitVersioner> gitVersioners = new ArrayList<GitVersioner>();
+		for (int w = 0; w < WRITERS; w++) {
+			GitVersioner gitVersioner = new GitVersioner(localPath.getPath(), "", "", "", false);
+			gitVersioner.setPathIndexEnabled(false);
+			gitVersioner.init();
+			gitVersioners.add(gitVersioner);
+		}
+		ExecutorService executorService = Executors.newFixedThreadPool(WRITERS);
+		List<Future<Integer>> writers = new ArrayList<Future<Integer>>();
+		for (int w = 0; w < WRITERS; w++) {
+			final GitVersioner gitVersioner = gitVersioners.get(w);
+			final String fileName = "writer" + w + ".txt";
+			writers.add(executorService.submit(new Callable<Integer>() {
+				public Integer call() throws Exception {
+					for (int i = 0; i < COMMITS_PER_WRITER; i++) {
+						gitVersioner.versionContents(Collections.singletonMap(fileName, (fileName + i).getBytes()),
+								fileName + " " + i, false);
+					}
+					return COMMITS_PER_WRITER;
+				}
+			}));
+		}
+		for (Future<Integer> writer : writers) {
+			writer.get();
+		}
+		executorService.shutdown();
+		GitVersioner gitVersioner = gitVersioners.get(0);
+		for (int w = 0; w < WRITERS; w++) {
+			String fileName = "writer" + w + ".txt";
+			Assert.assertEquals("No commit is lost", COMMITS_PER_WRITER, gitVersioner.listVersions(fileName).size());
+			Assert.assertEquals(fileName + (COMMITS_PER_WRITER - 1),
+					new String(gitVersioner.readRevision("HEAD", fileName)));
+		}
+
+		RevCommit base = gitVersioner.versionContents(Collections.singletonMap("writer0.txt", "base".getBytes()),
+				"Base", false);
+		gitVersioners.get(1).versionContents(Collections.singletonMap("writer0.txt", "other".getBytes()), "Other",
+				false);
+		try {
+			gitVersioner.checkConcurrentChanges(base, gitVersioner.localRepo.resolve("HEAD"),
+					Arrays.asList("writer0.txt"));
+			Assert.fail("Change of the same path conflicts");
+		} catch (ConcurrentRefUpdateException e) {
+			// Expected
+		}
+		gitVersioner.checkConcurrentChanges(base, gitVersioner.localRepo.resolve("HEAD"),
+				Arrays.asList("writer1.txt"));
+		for (GitVersioner writerVersioner : gitVersioners) {
+			writerVersioner.close();
+		}
+	}
+
+	private static void write(File file, String content) throws IOException {
+		FileWriter fileWriter = new FileWriter(file);
+		fileWriter.write(content);
+		fileWriter.close();
+	}
+
+}
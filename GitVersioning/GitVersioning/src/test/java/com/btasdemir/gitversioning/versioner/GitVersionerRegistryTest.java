@@ -0,0 +1,67 @@
+package com.btasdemir.gitversioning.versioner;
+
+import java.io.File;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * JUnit test for the pooled versioner registry
+ * 
+ * @author bahadir.tasdemir@hotmail.com.tr
+ */
+public class GitVersionerRegistryTest {
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Test
+	public void testLeastRecentlyUsedEviction() throws Exception {
+		GitVersionerRegistry registry = new GitVersionerRegistry(2, 60000L);
+		File[] localPaths = new File[3];
+		for (int i = 0; i < localPaths.length; i++) {
+			localPaths[i] = temporaryFolder.newFolder("tenant" + i);
+		}
+		GitVersioner first = registry.acquire(localPaths[0].getPath());
+		registry.release(first);
+		registry.release(registry.acquire(localPaths[1].getPath()));
+		// A leased repository is never evicted
+		GitVersioner leased = registry.acquire(localPaths[1].getPath());
+		registry.release(registry.acquire(localPaths[2].getPath()));
+		Assert.assertEquals(2, registry.getOpenCount());
+		Assert.assertEquals(1, registry.getEvictedCount());
+		Assert.assertFalse("Least recently used one is closed", first.isOpen());
+		Assert.assertTrue(leased.isOpen());
+
+		// Evicted versioner is dropped, the repository is reopened with a new one
+		GitVersioner reopened = registry.acquire(localPaths[0].getPath());
+		Assert.assertNotSame(first, reopened);
+		Assert.assertTrue(reopened.isOpen());
+		Assert.assertNotNull(reopened.listVersions("any.txt"));
+		registry.release(reopened);
+		registry.release(leased);
+		Assert.assertEquals(4, registry.getOpenedCount());
+		registry.close();
+		Assert.assertFalse(leased.isOpen());
+	}
+
+	@Test
+	public void testIdleEviction() throws Exception {
+		GitVersionerRegistry registry = new GitVersionerRegistry(10, 50L);
+		GitVersioner gitVersioner = registry.acquire(temporaryFolder.newFolder("idle").getPath());
+		Thread.sleep(150L);
+		Assert.assertTrue("Leased versioner stays open", gitVersioner.isOpen());
+		registry.release(gitVersioner);
+		long deadline = System.currentTimeMillis() + 5000L;
+		while (gitVersioner.isOpen() && System.currentTimeMillis() < deadline) {
+			Thread.sleep(20L);
+		}
+		Assert.assertFalse("Idle versioner is closed", gitVersioner.isOpen());
+		Assert.assertEquals(0, registry.getOpenCount());
+		Assert.assertEquals(1, registry.getEvictedCount());
+		registry.close();
+	}
+
+}
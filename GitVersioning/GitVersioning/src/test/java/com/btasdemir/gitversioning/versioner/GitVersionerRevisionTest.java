@@ -0,0 +1,216 @@
+package com.btasdemir.gitversioning.versioner;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.eclipse.jgit.diff.EditList;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.ObjectLoader;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.btasdemir.gitversioning.cache.MaterializationStore;
+import com.btasdemir.gitversioning.cache.RevisionBlobCache;
+import com.btasdemir.gitversioning.store.LargeFileStore;
+
+/**
+ * JUnit test for reading old revisions of a file
+ * 
+ * @author bahadir.tasdemir@hotmail.com.tr
+ */
+public class GitVersionerRevisionTest {
+
+	private static final String FILE_NAME = "revision.txt";
+	private static final String FIRST_CONTENT = "First revision\n";
+	private static final String SECOND_CONTENT = "Second revision\n";
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private File localPath;
+	private GitVersioner gitVersioner;
+	private RevCommit first;
+	private RevCommit second;
+
+	@Before
+	public void setUp() throws Exception {
+		localPath = temporaryFolder.newFolder("local");
+		gitVersioner = new GitVersioner(localPath.getPath(), "", "", "", false);
+		gitVersioner.init();
+		write(FIRST_CONTENT);
+		first = gitVersioner.commitFiles(Arrays.asList(FILE_NAME), "First", false);
+		write(SECOND_CONTENT);
+		second = gitVersioner.commitFiles(Arrays.asList(FILE_NAME), "Second", false);
+	}
+
+	@After
+	public void tearDown() {
+		gitVersioner.close();
+	}
+
+	@Test
+	public void testStreamingReads() throws Exception {
+		Assert.assertEquals(FIRST_CONTENT, new String(gitVersioner.readRevision(first.getName(), FILE_NAME), "UTF-8"));
+		InputStream in = gitVersioner.openRevision(second.getName(), FILE_NAME);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[4];
+		for (int read = in.read(buffer); read >= 0; read = in.read(buffer)) {
+			out.write(buffer, 0, read);
+		}
+		in.close();
+		Assert.assertEquals(SECOND_CONTENT, out.toString("UTF-8"));
+		out.reset();
+		long copied = gitVersioner.copyRevisionTo(first.getName(), FILE_NAME, Channels.newChannel(out));
+		Assert.assertEquals(FIRST_CONTENT.length(), copied);
+		Assert.assertEquals(FIRST_CONTENT, out.toString("UTF-8"));
+		Assert.assertNull("Missing file has no revision", gitVersioner.openRevision(first.getName(), "missing.txt"));
+	}
+
+	@Test
+	public void testDiff() throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		EditList editList = gitVersioner.diff(FILE_NAME, first.getName(), second.getName(), out);
+		Assert.assertEquals(1, editList.size());
+		String unifiedDiff = out.toString("UTF-8");
+		Assert.assertTrue(unifiedDiff.startsWith("--- a/" + FILE_NAME + "\n+++ b/" + FILE_NAME + "\n@@"));
+		Assert.assertTrue(unifiedDiff.contains("-" + FIRST_CONTENT));
+		Assert.assertTrue(unifiedDiff.contains("+" + SECOND_CONTENT));
+		Assert.assertTrue("Same blob is not compared", gitVersioner.diff(FILE_NAME, second.getName(), "HEAD").isEmpty());
+
+		out.reset();
+		long hitCount = gitVersioner.getDiffCache().getHitCount();
+		EditList cached = gitVersioner.diffWithPrevious(FILE_NAME, second.getName(), out);
+		Assert.assertEquals("Edit list is cached", hitCount + 1, gitVersioner.getDiffCache().getHitCount());
+		Assert.assertEquals(editList, cached);
+		Assert.assertEquals(unifiedDiff, out.toString("UTF-8"));
+
+		// Callers get copies of their own, changing them leaves the cache intact
+		cached.get(0).extendA();
+		cached.clear();
+		Assert.assertEquals(editList, gitVersioner.diff(FILE_NAME, first.getName(), second.getName()));
+	}
+
+	@Test
+	public void testRevisionFile() throws Exception {
+		File file = gitVersioner.getRevisionFileById(first.getName(), FILE_NAME);
+		Assert.assertEquals(FIRST_CONTENT, new String(Files.readAllBytes(file.toPath()), "UTF-8"));
+	}
+
+	@Test
+	public void testBlobCache() throws Exception {
+		RevisionBlobCache blobCache = new RevisionBlobCache(FIRST_CONTENT.length() + 1, 1024, true);
+		gitVersioner.setBlobCache(blobCache);
+		for (int i = 0; i < 3; i++) {
+			Assert.assertEquals(FIRST_CONTENT,
+					new String(gitVersioner.readRevision(first.getName(), FILE_NAME), "UTF-8"));
+		}
+		Assert.assertEquals("First read is a miss", 1, blobCache.getMissCount());
+		Assert.assertEquals("Next reads are hits", 2, blobCache.getHitCount());
+		Assert.assertEquals(SECOND_CONTENT,
+				new String(gitVersioner.readRevision(second.getName(), FILE_NAME), "UTF-8"));
+		Assert.assertEquals("Older content is evicted to fit", 1, blobCache.getEvictionCount());
+		Assert.assertTrue(blobCache.getCurrentBytes() <= blobCache.getMaxBytes());
+	}
+
+	@Test
+	public void testMaterializationStore() throws Exception {
+		MaterializationStore materializationStore = new MaterializationStore(temporaryFolder.newFolder("blobs"), 1024);
+		gitVersioner.setMaterializationStore(materializationStore);
+		File file = gitVersioner.getRevisionFileById(first.getName(), FILE_NAME);
+		Assert.assertEquals(file, gitVersioner.getRevisionFileById(first.getName(), FILE_NAME));
+		Assert.assertEquals(FIRST_CONTENT, new String(Files.readAllBytes(file.toPath()), "UTF-8"));
+		Assert.assertEquals(1, materializationStore.getMissCount());
+		Assert.assertEquals(1, materializationStore.getHitCount());
+
+		write(FIRST_CONTENT);
+		RevCommit third = gitVersioner.commitFiles(Arrays.asList(FILE_NAME), "Third", false);
+		File sameContentFile = gitVersioner.getRevisionFileById(third.getName(), FILE_NAME);
+		Assert.assertNotEquals(file, sameContentFile);
+		Assert.assertTrue("Same blob is stored once", Files.isSameFile(file.toPath(), sameContentFile.toPath()));
+		Assert.assertEquals(FIRST_CONTENT.length(), materializationStore.getCurrentBytes());
+	}
+
+	@Test
+	public void testMaterializationStoreEvictsLeastRecentlyUsed() throws Exception {
+		MaterializationStore materializationStore = new MaterializationStore(temporaryFolder.newFolder("blobs"), 30);
+		ObjectInserter.Formatter formatter = new ObjectInserter.Formatter();
+		ObjectId[] blobIds = new ObjectId[3];
+		for (int i = 0; i < blobIds.length; i++) {
+			byte[] content = ("Blob content " + i).getBytes("UTF-8");
+			blobIds[i] = formatter.idFor(Constants.OBJ_BLOB, content);
+			if (i == 2) {
+				// Use the first blob, so the second one is the oldest
+				File used = materializationStore.get(blobIds[0]);
+				long lastModified = used.lastModified();
+				Assert.assertEquals(used, materializationStore.get(blobIds[0]));
+				Assert.assertEquals("Shared file is not touched", lastModified, used.lastModified());
+			}
+			materializationStore.put(blobIds[i], new ObjectLoader.SmallObject(Constants.OBJ_BLOB, content));
+		}
+		Assert.assertEquals(1, materializationStore.getEvictionCount());
+		Assert.assertNotNull(materializationStore.get(blobIds[0]));
+		Assert.assertNull(materializationStore.get(blobIds[1]));
+		Assert.assertNotNull(materializationStore.get(blobIds[2]));
+		Assert.assertTrue(materializationStore.getCurrentBytes() <= materializationStore.getMaxBytes());
+	}
+
+	@Test
+	public void testLargeFileStore() throws Exception {
+		gitVersioner.setLargeFileStore(new LargeFileStore(temporaryFolder.newFolder("large"), 64));
+		StringBuilder largeContent = new StringBuilder();
+		for (int i = 0; i < 100; i++) {
+			largeContent.append("Large revision line ").append(i).append('\n');
+		}
+		write(largeContent.toString());
+		RevCommit large = gitVersioner.commitFiles(Arrays.asList(FILE_NAME), "Large", false);
+		byte[] pointerContent = gitVersioner.openBlob(gitVersioner.findBlobId(large.getName(), FILE_NAME)).getBytes();
+		LargeFileStore.Pointer pointer = LargeFileStore.Pointer.parse(pointerContent);
+		Assert.assertNotNull("Pointer is versioned in place of the file", pointer);
+		Assert.assertEquals(largeContent.length(), pointer.getSize());
+
+		File file = gitVersioner.getRevisionFileById(large.getName(), FILE_NAME);
+		Assert.assertEquals(largeContent.toString(), new String(Files.readAllBytes(file.toPath()), "UTF-8"));
+		Assert.assertEquals(largeContent.toString(),
+				new String(gitVersioner.readRevision(large.getName(), FILE_NAME), "UTF-8"));
+		Assert.assertEquals("Small revisions are versioned as usual", FIRST_CONTENT,
+				new String(gitVersioner.readRevision(first.getName(), FILE_NAME), "UTF-8"));
+	}
+
+	@Test
+	public void testLargeFileStoreWithoutWorkingTree() throws Exception {
+		gitVersioner.setLargeFileStore(new LargeFileStore(temporaryFolder.newFolder("large"), 64));
+		byte[] largeContent = new byte[1000];
+		Arrays.fill(largeContent, (byte) 'l');
+		RevCommit single = gitVersioner.versionContent("single.bin", largeContent, "Single", false);
+		RevCommit batch = gitVersioner.versionContents(Collections.singletonMap("batch.bin", largeContent), "Batch",
+				false);
+		for (String[] revision : new String[][] { { single.getName(), "single.bin" },
+				{ batch.getName(), "batch.bin" } }) {
+			byte[] pointerContent = gitVersioner.openBlob(gitVersioner.findBlobId(revision[0], revision[1]))
+					.getBytes();
+			Assert.assertNotNull("Both paths version a pointer", LargeFileStore.Pointer.parse(pointerContent));
+			Assert.assertArrayEquals(largeContent, gitVersioner.readRevision(revision[0], revision[1]));
+		}
+	}
+
+	private void write(String content) throws IOException {
+		FileWriter fileWriter = new FileWriter(new File(localPath, FILE_NAME));
+		fileWriter.write(content);
+		fileWriter.close();
+	}
+
+}
@@ -0,0 +1,88 @@
+package com.btasdemir.gitversioning.versioner;
+
+import java.io.File;
+import java.util.Arrays;
+
+import org.eclipse.jgit.api.errors.InvalidRemoteException;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.btasdemir.gitversioning.model.VersionList;
+
+/**
+ * JUnit test for versioning in an in memory repository
+ * 
+ * @author bahadir.tasdemir@hotmail.com.tr
+ */
+public class InMemoryGitVersionerTest {
+
+	private static final String FILE_NAME = "docs/memory.txt";
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private InMemoryGitVersioner gitVersioner;
+
+	@Before
+	public void setUp() throws Exception {
+		gitVersioner = new InMemoryGitVersioner("memory");
+		gitVersioner.init();
+	}
+
+	@After
+	public void tearDown() {
+		gitVersioner.close();
+	}
+
+	@Test
+	public void testVersionsAndRevisions() throws Exception {
+		gitVersioner.writeFile(FILE_NAME, "First".getBytes("UTF-8"));
+		RevCommit first = gitVersioner.commitFiles(Arrays.asList(FILE_NAME), "First", false);
+		gitVersioner.writeFile(FILE_NAME, "Second".getBytes("UTF-8"));
+		gitVersioner.commitFiles(Arrays.asList(FILE_NAME), "Second", false);
+		VersionList versions = gitVersioner.listVersionList(FILE_NAME);
+		Assert.assertEquals(2, versions.size());
+		Assert.assertEquals("First", new String(gitVersioner.readRevision(first.getName(), FILE_NAME), "UTF-8"));
+
+		// The repository survives closing the versioner
+		gitVersioner.close();
+		gitVersioner.init();
+		Assert.assertEquals(2, gitVersioner.listVersions(FILE_NAME).size());
+	}
+
+	@Test
+	public void testFailedPushRollsBack() throws Exception {
+		gitVersioner.writeFile(FILE_NAME, "First".getBytes("UTF-8"));
+		try {
+			gitVersioner.commitFiles(Arrays.asList(FILE_NAME), "Pushed", true);
+			Assert.fail("In memory repository has no remote");
+		} catch (InvalidRemoteException e) {
+			// Expected, the commit is rolled back
+		}
+		Assert.assertNotNull(gitVersioner.commitFiles(Arrays.asList(FILE_NAME), "Local", false));
+		Assert.assertEquals("Rolled back commit is gone", 1, gitVersioner.listVersions(FILE_NAME).size());
+	}
+
+	@Test
+	public void testSnapshot() throws Exception {
+		gitVersioner.writeFile(FILE_NAME, "Saved".getBytes("UTF-8"));
+		gitVersioner.commitFiles(Arrays.asList(FILE_NAME), "Saved", false);
+		File directory = temporaryFolder.newFolder("snapshot");
+		gitVersioner.snapshotTo(directory);
+
+		GitVersioner diskVersioner = new GitVersioner(directory.getPath(), "", "", "", false);
+		diskVersioner.init();
+		try {
+			Assert.assertEquals(1, diskVersioner.listVersions(FILE_NAME).size());
+			Assert.assertTrue(new File(directory, FILE_NAME).isFile());
+		} finally {
+			diskVersioner.close();
+		}
+	}
+
+}
@@ -0,0 +1,103 @@
+package com.btasdemir.gitversioning.versioner;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.StoredConfig;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.btasdemir.gitversioning.model.RepositoryStatistics;
+
+/**
+ * JUnit test for background packing of the object store
+ * 
+ * @author bahadir.tasdemir@hotmail.com.tr
+ */
+public class MaintenanceSchedulerTest {
+
+	private static final long TIMEOUT_MILLIS = 10000L;
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Test
+	public void testLooseObjectsArePacked() throws Exception {
+		File localPath = temporaryFolder.newFolder("local");
+		GitVersioner gitVersioner = new GitVersioner(localPath.getPath(), "", "", "", false);
+		gitVersioner.init();
+		for (int i = 0; i < 10; i++) {
+			FileWriter fileWriter = new FileWriter(new File(localPath, "file.txt"));
+			fileWriter.write("content " + i);
+			fileWriter.close();
+			gitVersioner.commitFiles(Arrays.asList("file.txt"), "Commit " + i, false);
+		}
+		MaintenanceScheduler maintenanceScheduler = new MaintenanceScheduler(gitVersioner, 50, 0, 20, 10);
+		Assert.assertTrue(maintenanceScheduler.getStatistics().getLooseObjectCount() >= 20);
+		long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+		while (maintenanceScheduler.getStatistics().getGcCount() == 0 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(50);
+		}
+		maintenanceScheduler.close();
+		RepositoryStatistics statistics = maintenanceScheduler.getStatistics();
+		Assert.assertEquals(1, statistics.getGcCount());
+		Assert.assertEquals("Packed objects are pruned", 0, statistics.getLooseObjectCount());
+		Assert.assertEquals(1, statistics.getPackFileCount());
+		Assert.assertEquals(10, gitVersioner.listVersions("file.txt").size());
+		gitVersioner.close();
+	}
+
+	@Test
+	public void testCheckContinuesAfterFailure() throws Exception {
+		File localPath = temporaryFolder.newFolder("local");
+		GitVersioner gitVersioner = new GitVersioner(localPath.getPath(), "", "", "", false);
+		gitVersioner.init();
+		final AtomicInteger checks = new AtomicInteger();
+		MaintenanceScheduler maintenanceScheduler = new MaintenanceScheduler(gitVersioner, 10, 0, 20, 10) {
+			@Override
+			protected boolean isQuiet() {
+				if (checks.incrementAndGet() == 1) {
+					throw new IllegalStateException("Unexpected");
+				}
+				return false;
+			}
+		};
+		long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+		while (checks.get() < 2 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		maintenanceScheduler.close();
+		Assert.assertTrue("Checked again after the failure", checks.get() >= 2);
+		gitVersioner.close();
+	}
+
+	@Test
+	public void testUnreferencedNewObjectsAreKept() throws Exception {
+		File localPath = temporaryFolder.newFolder("local");
+		GitVersioner gitVersioner = new GitVersioner(localPath.getPath(), "", "", "", false);
+		gitVersioner.init();
+		gitVersioner.versionContent("file.txt", "committed".getBytes(), "Commit", false);
+		// Even with a configuration that prunes every unreferenced object
+		StoredConfig config = gitVersioner.localRepo.getConfig();
+		config.setString("gc", null, "pruneexpire", "now");
+		config.save();
+		// A blob of a commit that is still being written is not referenced yet
+		ObjectInserter objectInserter = gitVersioner.localRepo.newObjectInserter();
+		ObjectId pendingId = objectInserter.insert(Constants.OBJ_BLOB, "pending".getBytes());
+		objectInserter.flush();
+		objectInserter.close();
+		MaintenanceScheduler maintenanceScheduler = new MaintenanceScheduler(gitVersioner, 60000L, 0, 1000, 1000);
+		maintenanceScheduler.collectGarbage();
+		maintenanceScheduler.close();
+		Assert.assertTrue("Pending object survives", gitVersioner.localRepo.hasObject(pendingId));
+		gitVersioner.close();
+	}
+
+}
@@ -0,0 +1,74 @@
+package com.btasdemir.gitversioning.versioner;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.btasdemir.gitversioning.constant.CommonConstants;
+
+/**
+ * JUnit test for the asynchronous push scheduler against a local bare remote
+ * 
+ * @author bahadir.tasdemir@hotmail.com.tr
+ */
+public class PushSchedulerTest {
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Test
+	public void testPendingCommitsArePushedOnce() throws Exception {
+		File remotePath = temporaryFolder.newFolder("remote.git");
+		Git.init().setBare(true).setDirectory(remotePath).call().close();
+		File localPath = temporaryFolder.newFolder("local");
+		GitVersioner gitVersioner = new GitVersioner(localPath.getPath(), remotePath.toURI().toString(), "", "",
+				false);
+		gitVersioner.init();
+		PushScheduler pushScheduler = new PushScheduler(gitVersioner, 300, 50, 1000);
+		for (int i = 0; i < 3; i++) {
+			String fileName = "file" + i + ".txt";
+			write(new File(localPath, fileName), fileName);
+			gitVersioner.commitFiles(Arrays.asList(fileName), "Commit " + i, false);
+			pushScheduler.requestPush();
+		}
+		Assert.assertEquals("Remote lags three commits", 3, pushScheduler.getRemoteLag());
+		long deadline = System.currentTimeMillis() + 10000;
+		while (pushScheduler.isPushPending() && System.currentTimeMillis() < deadline) {
+			Thread.sleep(50);
+		}
+		Assert.assertEquals("Commits are pushed with one push", 1, pushScheduler.getPushCount());
+		Assert.assertEquals("Remote does not lag", 0, pushScheduler.getRemoteLag());
+		ObjectId localHead = gitVersioner.localRepo.resolve(CommonConstants.GIT_TERM_HEAD);
+		Repository remoteRepo = Git.open(remotePath).getRepository();
+		Assert.assertEquals("Remote has the local head", localHead, remoteRepo.resolve("refs/heads/master"));
+		remoteRepo.close();
+		pushScheduler.close();
+		gitVersioner.close();
+	}
+
+	@Test
+	public void testBackoffIsBounded() {
+		PushScheduler pushScheduler = new PushScheduler(new GitVersioner(temporaryFolder.getRoot().getPath(), "",
+				"", "", false), 0, 100, 1000);
+		Assert.assertEquals(100, pushScheduler.getBackoffMillis(1));
+		Assert.assertEquals(400, pushScheduler.getBackoffMillis(3));
+		Assert.assertEquals(1000, pushScheduler.getBackoffMillis(30));
+		pushScheduler.close();
+	}
+
+	private static void write(File file, String content) throws IOException {
+		FileWriter fileWriter = new FileWriter(file);
+		fileWriter.write(content);
+		fileWriter.close();
+	}
+
+}
@@ -0,0 +1,159 @@
+package com.btasdemir.gitversioning.versioner;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.RepositoryState;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.transport.RefSpec;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.btasdemir.gitversioning.constant.CommonConstants;
+
+/**
+ * JUnit test for the remote sync service against a local bare remote
+ * 
+ * @author bahadir.tasdemir@hotmail.com.tr
+ */
+public class RemoteSyncServiceTest {
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Test
+	public void testFetchOnlyWhenRemoteMoves() throws Exception {
+		File remotePath = temporaryFolder.newFolder("remote.git");
+		Git.init().setBare(true).setDirectory(remotePath).call().close();
+		String remoteUri = remotePath.toURI().toString();
+		File writerPath = temporaryFolder.newFolder("writer");
+		GitVersioner writer = new GitVersioner(writerPath.getPath(), remoteUri, "", "", false);
+		writer.init();
+		write(new File(writerPath, "sync.txt"), "First");
+		writer.commitFiles(Arrays.asList("sync.txt"), "First", false);
+		writer.push();
+
+		GitVersioner reader = new GitVersioner(new File(temporaryFolder.getRoot(), "reader").getPath(), remoteUri,
+				"", "", true);
+		reader.init();
+		RemoteSyncService remoteSyncService = new RemoteSyncService(reader, 60000, 120000);
+		Assert.assertFalse("Nothing to fetch right after the clone", remoteSyncService.syncNow());
+		Assert.assertEquals(0, remoteSyncService.getFetchCount());
+
+		write(new File(writerPath, "sync.txt"), "Second");
+		RevCommit second = writer.commitFiles(Arrays.asList("sync.txt"), "Second", false);
+		writer.push();
+		Assert.assertTrue(remoteSyncService.syncNow());
+		Assert.assertEquals("Reader is fast forwarded", second,
+				reader.localRepo.resolve(CommonConstants.GIT_TERM_HEAD));
+		Assert.assertEquals("Second", new String(reader.readRevision("HEAD", "sync.txt"), "UTF-8"));
+		Assert.assertEquals(1, remoteSyncService.getFetchCount());
+		Assert.assertTrue(remoteSyncService.getFetchedBytes() > 0);
+		Assert.assertEquals(2, remoteSyncService.getCheckCount());
+		remoteSyncService.close();
+		reader.close();
+		writer.close();
+	}
+
+	@Test
+	public void testDivergedBranchIsNotMerged() throws Exception {
+		File remotePath = temporaryFolder.newFolder("remote.git");
+		Git.init().setBare(true).setDirectory(remotePath).call().close();
+		String remoteUri = remotePath.toURI().toString();
+		File writerPath = temporaryFolder.newFolder("writer");
+		GitVersioner writer = new GitVersioner(writerPath.getPath(), remoteUri, "", "", false);
+		writer.init();
+		write(new File(writerPath, "sync.txt"), "First");
+		writer.commitFiles(Arrays.asList("sync.txt"), "First", false);
+		writer.push();
+
+		File readerPath = new File(temporaryFolder.getRoot(), "reader");
+		GitVersioner reader = new GitVersioner(readerPath.getPath(), remoteUri, "", "", true);
+		reader.init();
+		RemoteSyncService remoteSyncService = new RemoteSyncService(reader, 60000, 120000);
+		// Both sides change the same file, a merge would conflict
+		write(new File(readerPath, "sync.txt"), "Local");
+		RevCommit local = reader.commitFiles(Arrays.asList("sync.txt"), "Local", false);
+		write(new File(writerPath, "sync.txt"), "Remote");
+		writer.commitFiles(Arrays.asList("sync.txt"), "Remote", false);
+		writer.push();
+
+		Assert.assertTrue(remoteSyncService.syncNow());
+		Assert.assertEquals("Diverged branch is left alone", local,
+				reader.localRepo.resolve(CommonConstants.GIT_TERM_HEAD));
+		Assert.assertEquals(RepositoryState.SAFE, reader.localRepo.getRepositoryState());
+		Assert.assertEquals("Local",
+				new String(Files.readAllBytes(new File(readerPath, "sync.txt").toPath()), "UTF-8"));
+		Assert.assertNotNull("Divergence is reported", remoteSyncService.getLastError());
+		Assert.assertFalse(remoteSyncService.syncNow());
+		Assert.assertNotNull("Divergence is reported until resolved", remoteSyncService.getLastError());
+		remoteSyncService.close();
+		reader.close();
+		writer.close();
+	}
+
+	@Test(timeout = 30000)
+	public void testFailingCheckIsRescheduledAndStatsDoNotBlock() throws Exception {
+		File remotePath = temporaryFolder.newFolder("remote.git");
+		Git.init().setBare(true).setDirectory(remotePath).call().close();
+		String remoteUri = remotePath.toURI().toString();
+		File writerPath = temporaryFolder.newFolder("writer");
+		GitVersioner writer = new GitVersioner(writerPath.getPath(), remoteUri, "", "", false);
+		writer.init();
+		write(new File(writerPath, "sync.txt"), "First");
+		writer.commitFiles(Arrays.asList("sync.txt"), "First", false);
+		writer.push();
+
+		GitVersioner reader = new GitVersioner(new File(temporaryFolder.getRoot(), "reader").getPath(), remoteUri,
+				"", "", true);
+		reader.init();
+		final AtomicInteger calls = new AtomicInteger();
+		final CountDownLatch syncing = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		RemoteSyncService remoteSyncService = new RemoteSyncService(reader, 10, 10) {
+			@Override
+			protected List<RefSpec> getFetchRefSpecs() throws IOException {
+				if (calls.incrementAndGet() == 1) {
+					throw new IllegalStateException("Unexpected");
+				}
+				// Keep the second check busy like a slow remote
+				syncing.countDown();
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				return super.getFetchRefSpecs();
+			}
+		};
+		Assert.assertTrue("Checked again after the failure", syncing.await(10, TimeUnit.SECONDS));
+		// A running sync must not hold back the statistics
+		Assert.assertTrue(remoteSyncService.getLastError().contains("Unexpected"));
+		Assert.assertEquals(0, remoteSyncService.getCheckCount());
+		Assert.assertEquals(-1, remoteSyncService.getSyncLagMillis());
+		release.countDown();
+		while (remoteSyncService.getCheckCount() == 0) {
+			Thread.sleep(10);
+		}
+		remoteSyncService.close();
+		reader.close();
+		writer.close();
+	}
+
+	private static void write(File file, String content) throws IOException {
+		FileWriter fileWriter = new FileWriter(file);
+		fileWriter.write(content);
+		fileWriter.close();
+	}
+
+}
@@ -0,0 +1,107 @@
+package com.btasdemir.gitversioning.versioner;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import org.eclipse.jgit.api.errors.CanceledException;
+import org.eclipse.jgit.lib.EmptyProgressMonitor;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * JUnit test for exporting all versions of files
+ * 
+ * @author bahadir.tasdemir@hotmail.com.tr
+ */
+public class VersionExporterTest {
+
+	private static final String FILE_NAME = "export.txt";
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private File localPath;
+	private GitVersioner gitVersioner;
+	private VersionExporter exporter;
+	private RevCommit first;
+	private RevCommit second;
+	private RevCommit third;
+
+	@Before
+	public void setUp() throws Exception {
+		localPath = temporaryFolder.newFolder("local");
+		gitVersioner = new GitVersioner(localPath.getPath(), "", "", "", false);
+		gitVersioner.init();
+		exporter = new VersionExporter(gitVersioner, 2);
+		write("First\n");
+		first = gitVersioner.commitFiles(Arrays.asList(FILE_NAME), "First", false);
+		write("Second\n");
+		second = gitVersioner.commitFiles(Arrays.asList(FILE_NAME), "Second", false);
+		write("First\n");
+		third = gitVersioner.commitFiles(Arrays.asList(FILE_NAME), "Third", false);
+	}
+
+	@After
+	public void tearDown() {
+		exporter.close();
+		gitVersioner.close();
+	}
+
+	@Test
+	public void testExportToDirectory() throws Exception {
+		File directory = temporaryFolder.newFolder("export");
+		Assert.assertEquals(3, exporter.exportToDirectory(Arrays.asList(FILE_NAME), directory, null));
+		File firstFile = new File(directory, gitVersioner.getRevisionPath(first.getName(), FILE_NAME));
+		File secondFile = new File(directory, gitVersioner.getRevisionPath(second.getName(), FILE_NAME));
+		File thirdFile = new File(directory, gitVersioner.getRevisionPath(third.getName(), FILE_NAME));
+		Assert.assertEquals("First\n", new String(Files.readAllBytes(firstFile.toPath()), "UTF-8"));
+		Assert.assertEquals("Second\n", new String(Files.readAllBytes(secondFile.toPath()), "UTF-8"));
+		Assert.assertTrue("Same blob is written once", Files.isSameFile(firstFile.toPath(), thirdFile.toPath()));
+	}
+
+	@Test
+	public void testExportToZip() throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		Assert.assertEquals(3, exporter.exportToZip(Arrays.asList(FILE_NAME), out, null));
+		Set<String> names = new HashSet<String>();
+		ZipInputStream zipIn = new ZipInputStream(new ByteArrayInputStream(out.toByteArray()));
+		for (ZipEntry entry = zipIn.getNextEntry(); entry != null; entry = zipIn.getNextEntry()) {
+			names.add(entry.getName());
+		}
+		zipIn.close();
+		Assert.assertTrue(names.contains("export/" + second.getName() + ".txt"));
+		Assert.assertEquals(3, names.size());
+	}
+
+	@Test(expected = CanceledException.class)
+	public void testCancel() throws Exception {
+		exporter.exportToDirectory(Arrays.asList(FILE_NAME), temporaryFolder.newFolder("export"),
+				new EmptyProgressMonitor() {
+					@Override
+					public boolean isCancelled() {
+						return true;
+					}
+				});
+	}
+
+	private void write(String content) throws IOException {
+		FileWriter fileWriter = new FileWriter(new File(localPath, FILE_NAME));
+		fileWriter.write(content);
+		fileWriter.close();
+	}
+
+}